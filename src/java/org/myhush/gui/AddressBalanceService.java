@@ -0,0 +1,205 @@
+// Copyright (c) 2016-2017 Ivan Vaklinov <ivan@vaklinov.com>
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gathers the balances of all wallet addresses (T and Z) in one pass and serves the same
+ * immutable snapshot to every panel that needs it (own addresses, send cash etc.).
+ */
+class AddressBalanceService {
+    private final HushCommandLineBridge clientCaller;
+    private final AddressValidationCache validationCache;
+    private final DataGatheringThread<AddressBalanceSnapshot> gatheringThread;
+
+    // Last snapshot - either from the gathering thread or from an interactive refresh
+    private AddressBalanceSnapshot lastSnapshot;
+    // Gatherings may run concurrently - a snapshot is kept only if its gathering started later
+    private final AtomicLong gatheringSequence = new AtomicLong(0);
+    private long lastSnapshotSequence = 0;
+
+    // Cleared the first time z_listunspent fails - older daemons do not have it
+    private volatile boolean zListUnspentSupported = true;
+
+    AddressBalanceService(JFrame parentFrame, HushCommandLineBridge clientCaller, StatusUpdateErrorReporter errorReporter) {
+        this.clientCaller = clientCaller;
+        // Invalid or watch-only addresses should not be shown - they are remembered across runs
+        this.validationCache = new AddressValidationCache(parentFrame, clientCaller, errorReporter);
+
+        this.gatheringThread = new DataGatheringThread<>("address/balance", this::refresh, errorReporter, 10000);
+        // The balances shown stay those from before an import until its rescan is done
+        this.gatheringThread.setSkipCondition(clientCaller::isWalletImportRunning);
+    }
+
+    /**
+     * Obtains the last gathered snapshot.
+     *
+     * @return the last snapshot - may be null if nothing has been gathered yet
+     */
+    public synchronized AddressBalanceSnapshot getLastSnapshot() {
+        return this.lastSnapshot;
+    }
+
+    /**
+     * Gathers a fresh snapshot from the wallet immediately and makes it the last one - unless a
+     * gathering started after this one has finished first.
+     *
+     * @return the last snapshot - the new one or a newer one
+     */
+    public AddressBalanceSnapshot refresh()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        long sequence = this.gatheringSequence.incrementAndGet();
+        AddressBalanceSnapshot snapshot = this.gatherSnapshot();
+
+        synchronized (this) {
+            if (sequence > this.lastSnapshotSequence) {
+                this.lastSnapshot = snapshot;
+                this.lastSnapshotSequence = sequence;
+            }
+            return this.lastSnapshot;
+        }
+    }
+
+    public void stop() {
+        this.gatheringThread.setSuspended(true);
+    }
+
+    private AddressBalanceSnapshot gatherSnapshot()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        // Z Addresses - they are OK
+        String[] zAddresses = this.clientCaller.getWalletZAddresses();
+
+        // T Addresses listed with the list received by addr comamnd
+        String[] tAddresses = this.clientCaller.getWalletAllPublicAddresses();
+
+        // All T balances come from one listunspent call - addresses with unspent outputs are included
+        // just in case they are different from the ones above
+        Map<String, UnspentOutputAggregator.AddressTotals> tTotals =
+                UnspentOutputAggregator.aggregate(this.clientCaller.getWalletUnspentOutputs());
+
+        // Combine all known T addresses
+        Set<String> tAddressesCombined = new HashSet<>();
+        Collections.addAll(tAddressesCombined, tAddresses);
+        tAddressesCombined.addAll(tTotals.keySet());
+
+        Map<String, UnspentOutputAggregator.AddressTotals> zTotals = this.gatherZTotals();
+
+        List<AddressBalance> balances = new ArrayList<>(zAddresses.length + tAddressesCombined.size());
+
+        for (String address : tAddressesCombined) {
+            boolean watchOnlyOrInvalid = this.validationCache.isWatchOnlyOrInvalidAddress(address);
+            UnspentOutputAggregator.AddressTotals totals = tTotals.get(address);
+
+            balances.add(new AddressBalance(
+                    address, false, watchOnlyOrInvalid,
+                    HushAmount.ofZatoshis((totals != null) ? totals.confirmedZatoshis : 0),
+                    HushAmount.ofZatoshis((totals != null) ? totals.unconfirmedZatoshis : 0)));
+        }
+
+        for (String address : zAddresses) {
+            if (zTotals != null) {
+                UnspentOutputAggregator.AddressTotals totals = zTotals.get(address);
+                balances.add(new AddressBalance(
+                        address, true, false,
+                        HushAmount.ofZatoshis((totals != null) ? totals.confirmedZatoshis : 0),
+                        HushAmount.ofZatoshis((totals != null) ? totals.unconfirmedZatoshis : 0)));
+            } else {
+                balances.add(new AddressBalance(
+                        address, true, false,
+                        HushAmount.parse(this.clientCaller.getBalanceForAddress(address)),
+                        HushAmount.parse(this.clientCaller.getUnconfirmedBalanceForAddress(address))));
+            }
+        }
+
+        return new AddressBalanceSnapshot(balances);
+    }
+
+    // Z balances from one z_listunspent call - null if the daemon does not support it, then
+    // the balances are obtained per address
+    private Map<String, UnspentOutputAggregator.AddressTotals> gatherZTotals()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        if (!this.zListUnspentSupported) {
+            return null;
+        }
+
+        try {
+            return UnspentOutputAggregator.aggregate(this.clientCaller.getWalletZUnspentOutputs());
+        } catch (HushCommandLineBridge.WalletCallException wce) {
+            // Other errors (e.g. -28 while the daemon is loading) are temporary - the next gathering tries again
+            if (!isMethodNotFound(wce)) {
+                throw wce;
+            }
+            System.out.println("z_listunspent is not available, Z balances will be obtained per address: " +
+                                       wce.getMessage());
+            this.zListUnspentSupported = false;
+            return null;
+        }
+    }
+
+    // RPC error -32601 - the daemon does not know the command
+    private static boolean isMethodNotFound(HushCommandLineBridge.WalletCallException wce) {
+        String message = String.valueOf(wce.getMessage());
+        return message.contains("\"code\":-32601") || message.contains("error code: -32601");
+    }
+
+    /**
+     * Balance of a single address - immutable.
+     */
+    static class AddressBalance {
+        final String address;
+        final boolean isZAddress;
+        final boolean watchOnlyOrInvalid;
+        final HushAmount confirmedBalance;
+        final HushAmount unconfirmedBalance;
+
+        AddressBalance(String address, boolean isZAddress, boolean watchOnlyOrInvalid,
+                       HushAmount confirmedBalance, HushAmount unconfirmedBalance) {
+            this.address = address;
+            this.isZAddress = isZAddress;
+            this.watchOnlyOrInvalid = watchOnlyOrInvalid;
+            this.confirmedBalance = confirmedBalance;
+            this.unconfirmedBalance = unconfirmedBalance;
+        }
+
+        boolean isConfirmed() {
+            return this.confirmedBalance.equals(this.unconfirmedBalance);
+        }
+    }
+
+    /**
+     * Balances of all wallet addresses at one point in time - immutable. T addresses come first.
+     */
+    static class AddressBalanceSnapshot {
+        private final List<AddressBalance> allBalances;
+        private final List<AddressBalance> positiveBalances;
+
+        AddressBalanceSnapshot(List<AddressBalance> balances) {
+            List<AddressBalance> positive = new ArrayList<>();
+            for (AddressBalance balance : balances) {
+                if (!balance.watchOnlyOrInvalid && balance.confirmedBalance.isPositive()) {
+                    positive.add(balance);
+                }
+            }
+
+            this.allBalances = Collections.unmodifiableList(new ArrayList<>(balances));
+            this.positiveBalances = Collections.unmodifiableList(positive);
+        }
+
+        // All known addresses
+        List<AddressBalance> getAllBalances() {
+            return this.allBalances;
+        }
+
+        // Only addresses with a positive confirmed balance - usable as a source for sending
+        List<AddressBalance> getPositiveBalances() {
+            return this.positiveBalances;
+        }
+    }
+}
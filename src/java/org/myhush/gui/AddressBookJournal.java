@@ -0,0 +1,337 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent storage of the address book as an append-only journal. Every change appends one record
+ * and is forced to disk, so it costs O(1) I/O. A record is a line:
+ * <pre>
+ * A|D,crc32,address,name
+ * </pre>
+ * A adds (or replaces) the contact with the name and D deletes it - the name may contain commas. The
+ * CRC is of the text without it (e.g. "A,address,name") in UTF-8. When a write is interrupted
+ * (e.g. by a crash) the incomplete last record is dropped on loading and damaged records are skipped.
+ * Once most records are obsolete the journal is rewritten into a new file which replaces the old
+ * one by an atomic rename. An old addressBook.csv is migrated on first use.
+ * <p>
+ * Not thread-safe - used from the EDT.
+ */
+class AddressBookJournal {
+    static final String JOURNAL_FILE_NAME = "addressBook.journal";
+    private static final String LEGACY_FILE_NAME = "addressBook.csv";
+
+    private static final char ADD = 'A';
+    private static final char DELETE = 'D';
+
+    // The journal is compacted once it has at least this many records and more than twice the contacts
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+
+    private final File directory;
+    private final File journalFile;
+
+    // Current contacts in the order of adding: name -> address
+    private final Map<String, String> entries = new LinkedHashMap<>();
+    private int recordCount = 0;
+    private FileChannel channel;
+
+    AddressBookJournal(File directory) {
+        this.directory = directory;
+        this.journalFile = new File(directory, JOURNAL_FILE_NAME);
+    }
+
+    /**
+     * Loads the journal - migrating the old CSV address book if there is no journal yet - and
+     * opens it for appending.
+     *
+     * @return the contacts: name -> address
+     */
+    public Map<String, String> load()
+            throws IOException {
+        this.entries.clear();
+        this.recordCount = 0;
+
+        if (!this.journalFile.exists()) {
+            this.migrateLegacyFile();
+        }
+
+        long validLength = 0;
+        int damagedRecords = 0;
+        if (this.journalFile.exists()) {
+            byte[] data = Files.readAllBytes(this.journalFile.toPath());
+            int lineStart = 0;
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != '\n') {
+                    continue;
+                }
+
+                String line = new String(data, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                if (this.replay(line)) {
+                    this.recordCount++;
+                } else if (line.trim().length() > 0) {
+                    System.out.println("Skipping damaged address book record: " + line);
+                    damagedRecords++;
+                }
+                lineStart = i + 1;
+                validLength = lineStart;
+            }
+
+            if (validLength < data.length) {
+                // The last record has not been written completely - it is dropped
+                System.out.println("Dropping incomplete last address book record (" +
+                                           (data.length - validLength) + " bytes)");
+            }
+        }
+
+        this.channel = FileChannel.open(this.journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (this.channel.size() > validLength) {
+            this.channel.truncate(validLength);
+            this.channel.force(true);
+        }
+        this.channel.position(validLength);
+
+        System.out.println("Loaded " + this.entries.size() + " address book entries from " +
+                                   this.recordCount + " journal records (" + damagedRecords + " damaged)");
+
+        if ((damagedRecords > 0) || this.isCompactionDue()) {
+            this.compact();
+        }
+
+        return this.getEntries();
+    }
+
+    // Current contacts: name -> address - read only
+    public Map<String, String> getEntries() {
+        return Collections.unmodifiableMap(this.entries);
+    }
+
+    public void add(String name, String address)
+            throws IOException {
+        this.append(ADD, address, name);
+        this.entries.put(name, address);
+        this.compactIfDue();
+    }
+
+    public void delete(String name)
+            throws IOException {
+        String address = this.entries.get(name);
+        if (address == null) {
+            return;
+        }
+
+        this.append(DELETE, address, name);
+        this.entries.remove(name);
+        this.compactIfDue();
+    }
+
+    /**
+     * Rewrites the journal with one record per contact into a new file which then replaces the
+     * journal by an atomic rename - so there is a complete journal on disk at any time.
+     */
+    public void compact()
+            throws IOException {
+        File newJournalFile = new File(this.directory, JOURNAL_FILE_NAME + ".tmp");
+        writeJournal(newJournalFile, this.entries);
+
+        this.close();
+        replaceFile(newJournalFile, this.journalFile);
+
+        this.channel = FileChannel.open(this.journalFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.recordCount = this.entries.size();
+        System.out.println("Address book journal compacted to " + this.recordCount + " records");
+    }
+
+    public void close()
+            throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    private void append(char type, String address, String name)
+            throws IOException {
+        checkValue(address);
+        checkValue(name);
+        if (address.indexOf(',') >= 0) {
+            throw new IOException("An address may not contain a comma: " + address);
+        }
+
+        ByteBuffer record = ByteBuffer.wrap(formatRecord(type, address, name).getBytes(StandardCharsets.UTF_8));
+        while (record.hasRemaining()) {
+            this.channel.write(record);
+        }
+        this.channel.force(false);
+        this.recordCount++;
+    }
+
+    private boolean isCompactionDue() {
+        return (this.recordCount >= MIN_COMPACTION_RECORDS) && (this.recordCount > 2 * this.entries.size());
+    }
+
+    // Called after the contacts have been updated - the compacted journal is written from them
+    private void compactIfDue()
+            throws IOException {
+        if (this.isCompactionDue()) {
+            this.compact();
+        }
+    }
+
+    // Applies a record to the contacts - false if it is damaged
+    private boolean replay(String line) {
+        // E.g. A,0123abcd,t1...,Name
+        if ((line.length() < 13) || (line.charAt(1) != ',') || (line.charAt(10) != ',')) {
+            return false;
+        }
+
+        char type = line.charAt(0);
+        String payload = line.substring(11);
+        int addressEnd = payload.indexOf(',');
+        if (((type != ADD) && (type != DELETE)) || (addressEnd <= 0)) {
+            return false;
+        }
+
+        long crc;
+        try {
+            crc = Long.parseLong(line.substring(2, 10), 16);
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+        if (crc != checksum(type + "," + payload)) {
+            return false;
+        }
+
+        String address = payload.substring(0, addressEnd);
+        String name = payload.substring(addressEnd + 1);
+        if (type == ADD) {
+            this.entries.put(name, address);
+        } else {
+            this.entries.remove(name);
+        }
+
+        return true;
+    }
+
+    // Converts an old addressBook.csv (address,name lines) into a journal - the old file is kept as .bak
+    private void migrateLegacyFile()
+            throws IOException {
+        File legacyFile = new File(this.directory, LEGACY_FILE_NAME);
+        if (!legacyFile.exists()) {
+            return;
+        }
+
+        // The legacy file was written in the platform charset - a line that cannot be decoded is skipped
+        CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                                         .onMalformedInput(CodingErrorAction.REPORT)
+                                         .onUnmappableCharacter(CodingErrorAction.REPORT);
+        Map<String, String> legacyEntries = new LinkedHashMap<>();
+        byte[] data = Files.readAllBytes(legacyFile.toPath());
+        int lineStart = 0;
+        int lineNumber = 0;
+        for (int i = 0; i <= data.length; i++) {
+            if ((i < data.length) && (data[i] != '\n')) {
+                continue;
+            }
+
+            lineNumber++;
+            int start = lineStart;
+            int end = ((i > start) && (data[i - 1] == '\r')) ? (i - 1) : i;
+            lineStart = i + 1;
+            String line;
+            try {
+                line = decoder.decode(ByteBuffer.wrap(data, start, end - start)).toString();
+            } catch (CharacterCodingException e) {
+                System.out.println("Skipping address book line " + lineNumber +
+                                           " that is not valid in charset " + decoder.charset());
+                continue;
+            }
+
+            if (line.length() <= 0) {
+                continue;
+            }
+            int addressEnd = line.indexOf(',');
+            if (addressEnd <= 0) {
+                System.out.println("Skipping malformed address book line: " + line);
+                continue;
+            }
+            String name = line.substring(addressEnd + 1);
+            if (!legacyEntries.containsKey(name)) {
+                legacyEntries.put(name, line.substring(0, addressEnd));
+            }
+        }
+
+        File newJournalFile = new File(this.directory, JOURNAL_FILE_NAME + ".tmp");
+        writeJournal(newJournalFile, legacyEntries);
+        replaceFile(newJournalFile, this.journalFile);
+        replaceFile(legacyFile, new File(this.directory, LEGACY_FILE_NAME + ".bak"));
+
+        System.out.println("Migrated " + legacyEntries.size() + " address book entries to " + JOURNAL_FILE_NAME);
+    }
+
+    private static void writeJournal(File file, Map<String, String> entries)
+            throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            data.write(formatRecord(ADD, entry.getValue(), entry.getKey()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data.toByteArray());
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer);
+            }
+            fileChannel.force(true);
+        }
+    }
+
+    private static void replaceFile(File source, File target)
+            throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String formatRecord(char type, String address, String name) {
+        String text = type + "," + address + "," + name;
+        return type + "," + String.format("%08x", checksum(text)) + text.substring(1) + "\n";
+    }
+
+    private static long checksum(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    // A line break would split the record
+    private static void checkValue(String value)
+            throws IOException {
+        if ((value.indexOf('\n') >= 0) || (value.indexOf('\r') >= 0)) {
+            throw new IOException("Address book values may not contain line breaks: " + value);
+        }
+    }
+}
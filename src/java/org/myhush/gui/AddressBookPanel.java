@@ -8,6 +8,8 @@ package org.myhush.gui;
 
 import javax.swing.*;
 import javax.swing.border.EtchedBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.AbstractTableModel;
@@ -20,30 +22,80 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.*;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
-class AddressBookPanel extends JPanel {
+class AddressBookPanel extends JPanel implements LazyLoadingTab {
+    // Filtering shows at most this many contacts - enough for any screen
+    private static final int MAX_SHOWN_MATCHES = 10000;
 
-    private final List<AddressBookEntry> entries = new ArrayList<>();
-    private final Set<String> names = new HashSet<>();
+    private final AddressBookStore addressBook;
+    // The contacts shown in the table - all of them or the ones matching the filter
+    private List<AddressBookStore.Contact> shownContacts = new ArrayList<>();
     private final SendCashPanel sendCashPanel;
     private final JTabbedPane tabs;
     private JTable table;
+    private JTextField filterField;
     private JButton sendCashButton, deleteContactButton, copyToClipboardButton;
+    private boolean loadingStarted = false;
 
-    AddressBookPanel(SendCashPanel sendCashPanel, JTabbedPane tabs) throws IOException {
+    AddressBookPanel(AddressBookStore addressBook, SendCashPanel sendCashPanel, JTabbedPane tabs) {
+        this.addressBook = addressBook;
         this.sendCashPanel = sendCashPanel;
         this.tabs = tabs;
         BoxLayout boxLayout = new BoxLayout(this, BoxLayout.Y_AXIS);
         setLayout(boxLayout);
+        add(buildFilterPanel());
         add(buildTablePanel());
         add(buildButtonsPanel());
+    }
+
+    @Override
+    public void startLoading() {
+        if (loadingStarted) {
+            return;
+        }
+        loadingStarted = true;
+
+        // The store is in memory - only filling the table is postponed
+        updateShownContacts();
+    }
+
+    private JPanel buildFilterPanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 3, 3));
+        panel.add(new JLabel("Search:"));
+        panel.add(filterField = new JTextField(40));
+        filterField.setToolTipText("Part of the name or the beginning of the address");
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateShownContacts();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateShownContacts();
+            }
 
-        loadEntriesFromDisk();
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateShownContacts();
+            }
+        });
+        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, panel.getPreferredSize().height));
+        return panel;
+    }
+
+    // Applies the filter - the indexes of the store make this fast enough for every key stroke
+    private void updateShownContacts() {
+        if (!loadingStarted) {
+            return;
+        }
+        String filter = (filterField != null) ? filterField.getText() : "";
+        shownContacts = (filter.trim().length() > 0) ?
+                                addressBook.search(filter, MAX_SHOWN_MATCHES) : addressBook.getContacts();
+        ((AbstractTableModel) table.getModel()).fireTableDataChanged();
     }
 
     private JPanel buildButtonsPanel() {
@@ -85,54 +137,13 @@ class AddressBookPanel extends JPanel {
         return new JScrollPane(table);
     }
 
-    private void loadEntriesFromDisk() throws IOException {
-        File addressBookFile = new File(OSUtil.getSettingsDirectory(), "addressBook.csv");
-        if (!addressBookFile.exists()) {
-            return;
-        }
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(addressBookFile))) {
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                // format is address,name - this way name can contain commas ;-)
-                int addressEnd = line.indexOf(',');
-                if (addressEnd < 0) {
-                    throw new IOException("Address Book is corrupted!");
-                }
-                String address = line.substring(0, addressEnd);
-                String name = line.substring(addressEnd + 1);
-                if (!names.add(name)) {
-                    continue; // duplicate
-                }
-                entries.add(new AddressBookEntry(name, address));
-            }
-        }
-
-        System.out.println("loaded " + entries.size() + " address book entries");
-    }
-
-    private void saveEntriesToDisk() {
-        System.out.println("Saving " + entries.size() + " addresses");
-        try {
-            File addressBookFile = new File(OSUtil.getSettingsDirectory(), "addressBook.csv");
-            try (PrintWriter printWriter = new PrintWriter(new FileWriter(addressBookFile))) {
-                for (AddressBookEntry entry : entries) {
-                    printWriter.println(entry.address + "," + entry.name);
-                }
-            }
-        } catch (IOException bad) {
-            // TODO: report error to the user!
-            bad.printStackTrace();
-            System.out.println("Saving Address Book Failed!!!!");
-        }
-    }
-
-    private static class AddressBookEntry {
-        final String name, address;
-
-        AddressBookEntry(String name, String address) {
-            this.name = name;
-            this.address = address;
-        }
+    // Reports a failure to save a change - the change is not made then
+    private void reportSaveError(IOException bad) {
+        bad.printStackTrace();
+        System.out.println("Saving Address Book Failed!!!!");
+        JOptionPane.showMessageDialog(AddressBookPanel.this,
+                "The change could not be saved to the address book:\n" + bad.getMessage(),
+                "Error saving address book", JOptionPane.ERROR_MESSAGE);
     }
 
     private class DeleteAddressActionListener implements ActionListener {
@@ -141,14 +152,17 @@ class AddressBookPanel extends JPanel {
             if (row < 0) {
                 return;
             }
-            AddressBookEntry entry = entries.get(row);
-            entries.remove(row);
-            names.remove(entry.name);
+            AddressBookStore.Contact entry = shownContacts.get(row);
+            try {
+                addressBook.delete(entry.name);
+            } catch (IOException bad) {
+                reportSaveError(bad);
+                return;
+            }
             deleteContactButton.setEnabled(false);
             sendCashButton.setEnabled(false);
             copyToClipboardButton.setEnabled(false);
-            table.repaint();
-            SwingUtilities.invokeLater(() -> saveEntriesToDisk());
+            updateShownContacts();
         }
     }
 
@@ -158,7 +172,7 @@ class AddressBookPanel extends JPanel {
             if (row < 0) {
                 return;
             }
-            AddressBookEntry entry = entries.get(row);
+            AddressBookStore.Contact entry = shownContacts.get(row);
             Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
             clipboard.setContents(new StringSelection(entry.address), null);
         }
@@ -177,8 +191,12 @@ class AddressBookPanel extends JPanel {
                 return; // cancelled
             }
 
-            // TODO: check for dupes
-            names.add(name);
+            if (addressBook.getContact(name) != null) {
+                JOptionPane.showMessageDialog(AddressBookPanel.this,
+                        "There is already a contact named " + name + " in the address book.",
+                        "Duplicate contact", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
             String address = (String) JOptionPane.showInputDialog(AddressBookPanel.this,
                     "Pleae enter the t-address or z-address of " + name,
@@ -190,15 +208,14 @@ class AddressBookPanel extends JPanel {
             if (address == null || "".equals(address)) {
                 return; // cancelled
             }
-            entries.add(new AddressBookEntry(name, address));
-
-            SwingUtilities.invokeLater(() -> {
-                table.invalidate();
-                table.revalidate();
-                table.repaint();
+            try {
+                addressBook.add(name, address.trim());
+            } catch (IOException bad) {
+                reportSaveError(bad);
+                return;
+            }
 
-                saveEntriesToDisk();
-            });
+            updateShownContacts();
         }
     }
 
@@ -208,7 +225,7 @@ class AddressBookPanel extends JPanel {
             if (row < 0) {
                 return;
             }
-            AddressBookEntry entry = entries.get(row);
+            AddressBookStore.Contact entry = shownContacts.get(row);
             sendCashPanel.prepareForSending(entry.address);
             tabs.setSelectedIndex(2);
         }
@@ -225,7 +242,7 @@ class AddressBookPanel extends JPanel {
             int row = table.rowAtPoint(e.getPoint());
             int column = table.columnAtPoint(e.getPoint());
             table.changeSelection(row, column, false, false);
-            AddressBookEntry entry = entries.get(row);
+            AddressBookStore.Contact entry = shownContacts.get(row);
 
             JPopupMenu menu = new JPopupMenu();
 
@@ -257,7 +274,7 @@ class AddressBookPanel extends JPanel {
                 copyToClipboardButton.setEnabled(false);
                 return;
             }
-            String name = entries.get(row).name;
+            String name = shownContacts.get(row).name;
             sendCashButton.setText("Send HUSH to " + name);
             sendCashButton.setEnabled(true);
             deleteContactButton.setText("Delete contact " + name);
@@ -271,7 +288,7 @@ class AddressBookPanel extends JPanel {
 
         @Override
         public int getRowCount() {
-            return entries.size();
+            return shownContacts.size();
         }
 
         @Override
@@ -303,7 +320,7 @@ class AddressBookPanel extends JPanel {
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            AddressBookEntry entry = entries.get(rowIndex);
+            AddressBookStore.Contact entry = shownContacts.get(rowIndex);
             switch (columnIndex) {
                 case 0:
                     return entry.name;
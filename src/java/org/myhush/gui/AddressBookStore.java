@@ -0,0 +1,253 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The contacts of the address book with indexes for fast lookup and search - persisted by an
+ * {@link AddressBookJournal}. Contacts are found by exact name or address (hash indexes), by
+ * the beginning of the name or address (sorted indexes) and by any part of the name of at least
+ * three characters (index of the three character sequences of the names). Addresses are not
+ * indexed by their parts - that would need about a hundred index entries per contact.
+ * <p>
+ * Used from the EDT - the methods are synchronized nevertheless.
+ */
+class AddressBookStore {
+    // Length of the name parts in the substring index
+    private static final int GRAM_LENGTH = 3;
+
+    private static final Comparator<Contact> BY_NAME =
+            (c1, c2) -> c1.lowerCaseName.compareTo(c2.lowerCaseName);
+
+    private final AddressBookJournal journal;
+
+    // In the order of adding
+    private final Map<String, Contact> byName = new LinkedHashMap<>();
+    // Several contacts may share an address
+    private final Map<String, Set<Contact>> byAddress = new HashMap<>();
+    private final NavigableMap<String, Set<Contact>> byLowerCaseName = new TreeMap<>();
+    private final NavigableMap<String, Set<Contact>> byLowerCaseAddress = new TreeMap<>();
+    private final Map<String, Set<Contact>> byNameGram = new HashMap<>();
+
+    AddressBookStore(AddressBookJournal journal) {
+        this.journal = journal;
+    }
+
+    public synchronized void load()
+            throws IOException {
+        this.byName.clear();
+        this.byAddress.clear();
+        this.byLowerCaseName.clear();
+        this.byLowerCaseAddress.clear();
+        this.byNameGram.clear();
+
+        for (Map.Entry<String, String> entry : this.journal.load().entrySet()) {
+            this.index(new Contact(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Adds a contact.
+     *
+     * @param name    the name - must not be in the address book yet
+     * @param address the address
+     * @return the new contact
+     * @throws IllegalArgumentException if there is a contact with the name already
+     */
+    public synchronized Contact add(String name, String address)
+            throws IOException {
+        if (this.byName.containsKey(name)) {
+            throw new IllegalArgumentException("There is already a contact named " + name + " in the address book.");
+        }
+
+        this.journal.add(name, address);
+        Contact contact = new Contact(name, address);
+        this.index(contact);
+        return contact;
+    }
+
+    public synchronized void delete(String name)
+            throws IOException {
+        Contact contact = this.byName.get(name);
+        if (contact == null) {
+            return;
+        }
+
+        this.journal.delete(name);
+        this.byName.remove(name);
+        removeFromIndex(this.byAddress, contact.address, contact);
+        removeFromIndex(this.byLowerCaseName, contact.lowerCaseName, contact);
+        removeFromIndex(this.byLowerCaseAddress, contact.lowerCaseAddress, contact);
+        for (String gram : grams(contact.lowerCaseName)) {
+            removeFromIndex(this.byNameGram, gram, contact);
+        }
+    }
+
+    // Null if there is no such contact
+    public synchronized Contact getContact(String name) {
+        return this.byName.get(name);
+    }
+
+    public synchronized List<Contact> getContactsWithAddress(String address) {
+        Set<Contact> contacts = this.byAddress.get(address);
+        return (contacts != null) ? new ArrayList<>(contacts) : new ArrayList<>();
+    }
+
+    // All contacts in the order of adding
+    public synchronized List<Contact> getContacts() {
+        return new ArrayList<>(this.byName.values());
+    }
+
+    public synchronized int size() {
+        return this.byName.size();
+    }
+
+    /**
+     * Finds the contacts whose name contains the text or whose name or address starts with it -
+     * case insensitive.
+     *
+     * @param text     the text to search for
+     * @param maxCount maximum number of contacts returned
+     * @return the matching contacts sorted by name
+     */
+    public synchronized List<Contact> search(String text, int maxCount) {
+        String query = text.trim().toLowerCase(Locale.ROOT);
+        if (query.length() <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Only the first contacts by name are kept - broad queries may match the whole book
+        PriorityQueue<Contact> matches = new PriorityQueue<>(maxCount + 1, BY_NAME.reversed());
+
+        if (query.length() >= GRAM_LENGTH) {
+            // Candidates are the contacts having the rarest part of the query in their name
+            Set<Contact> candidates = null;
+            for (String gram : grams(query)) {
+                Set<Contact> contacts = this.byNameGram.get(gram);
+                if (contacts == null) {
+                    candidates = null;
+                    break;
+                }
+                if ((candidates == null) || (contacts.size() < candidates.size())) {
+                    candidates = contacts;
+                }
+            }
+
+            if (candidates != null) {
+                for (Contact contact : candidates) {
+                    if (contact.lowerCaseName.contains(query)) {
+                        addMatch(matches, contact, maxCount);
+                    }
+                }
+            }
+        } else {
+            for (Set<Contact> contacts : prefixMatches(this.byLowerCaseName, query)) {
+                for (Contact contact : contacts) {
+                    addMatch(matches, contact, maxCount);
+                }
+            }
+        }
+
+        // Contacts already matched by their name are skipped
+        for (Set<Contact> contacts : prefixMatches(this.byLowerCaseAddress, query)) {
+            for (Contact contact : contacts) {
+                boolean nameMatches = (query.length() >= GRAM_LENGTH) ?
+                                              contact.lowerCaseName.contains(query) :
+                                              contact.lowerCaseName.startsWith(query);
+                if (!nameMatches) {
+                    addMatch(matches, contact, maxCount);
+                }
+            }
+        }
+
+        List<Contact> result = new ArrayList<>(matches);
+        result.sort(BY_NAME);
+        return result;
+    }
+
+    private void index(Contact contact) {
+        this.byName.put(contact.name, contact);
+        addToIndex(this.byAddress, contact.address, contact);
+        addToIndex(this.byLowerCaseName, contact.lowerCaseName, contact);
+        addToIndex(this.byLowerCaseAddress, contact.lowerCaseAddress, contact);
+        for (String gram : grams(contact.lowerCaseName)) {
+            addToIndex(this.byNameGram, gram, contact);
+        }
+    }
+
+    private static Collection<Set<Contact>> prefixMatches(NavigableMap<String, Set<Contact>> index, String prefix) {
+        return index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+    // Keeps the first maxCount contacts by name - the last one of them is at the head of the queue
+    private static void addMatch(PriorityQueue<Contact> matches, Contact contact, int maxCount) {
+        if (matches.size() < maxCount) {
+            matches.add(contact);
+        } else if (BY_NAME.compare(contact, matches.peek()) < 0) {
+            matches.poll();
+            matches.add(contact);
+        }
+    }
+
+    private static void addToIndex(Map<String, Set<Contact>> index, String key, Contact contact) {
+        index.computeIfAbsent(key, k -> new HashSet<>()).add(contact);
+    }
+
+    private static void removeFromIndex(Map<String, Set<Contact>> index, String key, Contact contact) {
+        Set<Contact> contacts = index.get(key);
+        if (contacts != null) {
+            contacts.remove(contact);
+            if (contacts.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // All distinct parts of GRAM_LENGTH characters
+    private static Set<String> grams(String text) {
+        if (text.length() < GRAM_LENGTH) {
+            return Collections.emptySet();
+        }
+
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+
+    /**
+     * One contact - immutable.
+     */
+    static class Contact {
+        final String name;
+        final String address;
+        private final String lowerCaseName;
+        private final String lowerCaseAddress;
+
+        Contact(String name, String address) {
+            this.name = name;
+            this.address = address;
+            this.lowerCaseName = name.toLowerCase(Locale.ROOT);
+            this.lowerCaseAddress = address.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Offline check of the format of HUSH addresses - the encoding, length and checksum, without
+ * asking the daemon. Transparent (t...) and Sprout (zc...) addresses are base58check encoded,
+ * Sapling (zs1...) addresses are bech32 encoded.
+ */
+class AddressFormat {
+    private static final String BASE58_ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+    private static final String BECH32_ALPHABET = "qpzry9x8gf2tvdw0s3jn54khce6mua7l";
+    private static final BigInteger BASE = BigInteger.valueOf(58);
+
+    // Decoded lengths including the 2 version bytes and the 4 checksum bytes
+    private static final int T_ADDRESS_BYTES = 2 + 20 + 4;
+    private static final int SPROUT_ADDRESS_BYTES = 2 + 32 + 32 + 4;
+    // Diversifier and transmission key of a Sapling address
+    private static final int SAPLING_ADDRESS_BYTES = 11 + 32;
+    private static final String[] SAPLING_PREFIXES = { "zs", "ztestsapling" };
+
+    private AddressFormat() {
+    }
+
+    /**
+     * Checks the format of an address.
+     *
+     * @param address the address to check
+     * @return null if the address is well formed, otherwise the reason why it is not
+     */
+    static String check(String address) {
+        for (String prefix : SAPLING_PREFIXES) {
+            if (address.startsWith(prefix + "1")) {
+                byte[] data = decodeBech32(address, prefix);
+                if (data == null) {
+                    return "has an invalid checksum or characters.";
+                }
+                return (data.length == SAPLING_ADDRESS_BYTES) ? null : "has an invalid length.";
+            }
+        }
+
+        int expectedBytes;
+        if (address.startsWith("t")) {
+            expectedBytes = T_ADDRESS_BYTES;
+        } else if (address.startsWith("z")) {
+            expectedBytes = SPROUT_ADDRESS_BYTES;
+        } else {
+            return "is neither a T (Transparent) nor a Z (Private) address.";
+        }
+
+        byte[] data = decodeBase58Check(address);
+        if (data == null) {
+            return "has an invalid checksum or characters.";
+        }
+        return (data.length == expectedBytes) ? null : "has an invalid length.";
+    }
+
+    // The decoded bytes including the checksum - null if not valid base58 or the checksum does not match
+    private static byte[] decodeBase58Check(String text) {
+        BigInteger value = BigInteger.ZERO;
+        for (int i = 0; i < text.length(); i++) {
+            int digit = BASE58_ALPHABET.indexOf(text.charAt(i));
+            if (digit < 0) {
+                return null;
+            }
+            value = value.multiply(BASE).add(BigInteger.valueOf(digit));
+        }
+
+        // Each leading 1 is a leading zero byte
+        int leadingZeros = 0;
+        while ((leadingZeros < text.length()) && (text.charAt(leadingZeros) == '1')) {
+            leadingZeros++;
+        }
+        byte[] magnitude = value.toByteArray();
+        int signByte = ((magnitude.length > 1) && (magnitude[0] == 0)) ? 1 : 0;
+        if (value.signum() == 0) {
+            magnitude = new byte[0];
+            signByte = 0;
+        }
+        byte[] data = new byte[leadingZeros + magnitude.length - signByte];
+        System.arraycopy(magnitude, signByte, data, leadingZeros, magnitude.length - signByte);
+
+        if (data.length < 4) {
+            return null;
+        }
+        byte[] hash = sha256(sha256(Arrays.copyOf(data, data.length - 4)));
+        for (int i = 0; i < 4; i++) {
+            if (hash[i] != data[data.length - 4 + i]) {
+                return null;
+            }
+        }
+        return data;
+    }
+
+    // The data bytes (without the checksum) - null if not valid bech32 with the given prefix
+    private static byte[] decodeBech32(String text, String prefix) {
+        if (!text.equals(text.toLowerCase()) || !text.startsWith(prefix + "1")) {
+            return null;
+        }
+
+        String dataPart = text.substring(prefix.length() + 1);
+        if (dataPart.length() < 6) {
+            return null;
+        }
+        int[] values = new int[dataPart.length()];
+        for (int i = 0; i < dataPart.length(); i++) {
+            values[i] = BECH32_ALPHABET.indexOf(dataPart.charAt(i));
+            if (values[i] < 0) {
+                return null;
+            }
+        }
+
+        // Checksum over the expanded prefix and the data
+        int[] checked = new int[(prefix.length() * 2) + 1 + values.length];
+        for (int i = 0; i < prefix.length(); i++) {
+            checked[i] = prefix.charAt(i) >> 5;
+            checked[prefix.length() + 1 + i] = prefix.charAt(i) & 31;
+        }
+        System.arraycopy(values, 0, checked, (prefix.length() * 2) + 1, values.length);
+        if (bech32Polymod(checked) != 1) {
+            return null;
+        }
+
+        // Regroup the 5 bit values (without the 6 checksum values) into bytes
+        int groups = values.length - 6;
+        byte[] data = new byte[groups * 5 / 8];
+        int accumulator = 0;
+        int bits = 0;
+        int index = 0;
+        for (int i = 0; i < groups; i++) {
+            accumulator = (accumulator << 5) | values[i];
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                data[index++] = (byte) (accumulator >> bits);
+            }
+        }
+        // Padding must be less than a byte and all zero
+        if ((bits >= 5) || ((accumulator & ((1 << bits) - 1)) != 0)) {
+            return null;
+        }
+        return data;
+    }
+
+    private static int bech32Polymod(int[] values) {
+        final int[] generator = { 0x3b6a57b2, 0x26508e6d, 0x1ea119fa, 0x3d4233dd, 0x2a1462b3 };
+        int checksum = 1;
+        for (int value : values) {
+            int top = checksum >>> 25;
+            checksum = ((checksum & 0x1ffffff) << 5) ^ value;
+            for (int i = 0; i < 5; i++) {
+                if (((top >>> i) & 1) != 0) {
+                    checksum ^= generator[i];
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
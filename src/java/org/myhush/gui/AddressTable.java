@@ -24,6 +24,10 @@ class AddressTable extends DataTable {
         popupMenu.add(obtainPrivateKey);
 
         obtainPrivateKey.addActionListener(e -> {
+            if (WalletImportJob.refuseWhileImporting(AddressTable.this.getRootPane().getParent(), caller)) {
+                return;
+            }
+
             if ((lastRow >= 0) && (lastColumn >= 0)) {
                 try {
                     String address = AddressTable.this.getModel().getValueAt(lastRow, 2).toString();
@@ -31,9 +35,10 @@ class AddressTable extends DataTable {
                     // TODO: We need a much more precise criterion to distinguish T/Z adresses;
                     boolean isZAddress = address.startsWith("z") && address.length() > 40;
 
-                    // Check for encrypted wallet
-                    final boolean bEncryptedWallet = caller.isWalletEncrypted();
-                    if (bEncryptedWallet) {
+                    // Check for encrypted wallet - no password is needed while it is unlocked anyway (e.g. for queued sends)
+                    final boolean bUnlockWallet = caller.isWalletEncrypted() &&
+                                                  (!caller.getSecurityState().isUnlockedFor(WalletSecurityState.SHORT_OPERATION_MS));
+                    if (bUnlockWallet) {
                         PasswordDialog pd = new PasswordDialog((JFrame) (AddressTable.this.getRootPane().getParent()));
                         pd.setVisible(true);
 
@@ -48,7 +53,7 @@ class AddressTable extends DataTable {
                                                 caller.getZPrivateKey(address) : caller.getTPrivateKey(address);
 
                     // Lock the wallet again
-                    if (bEncryptedWallet) {
+                    if (bUnlockWallet) {
                         caller.lockWallet();
                     }
 
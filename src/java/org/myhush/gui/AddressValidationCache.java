@@ -0,0 +1,144 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which wallet T addresses are invalid or watch-only. Addresses found valid are persisted
+ * in the settings directory so that validateaddress is called only once per address - not on every
+ * start. Invalid or watch-only addresses are remembered only until keys are imported, as an import
+ * may make them spendable. They are reported to the user (once per run) on the event dispatch thread.
+ */
+class AddressValidationCache {
+    private static final String CACHE_FILE_NAME = "addressValidation.csv";
+
+    private final JFrame parentFrame;
+    private final HushCommandLineBridge clientCaller;
+    private final StatusUpdateErrorReporter errorReporter;
+
+    // Address -> true if the address is invalid or watch-only - only valid ones are persisted
+    private final Map<String, Boolean> validationMap = new ConcurrentHashMap<>();
+    // The number of finished imports when the invalid or watch-only results were obtained
+    private int validationImportCount;
+    // Invalid addresses already reported to the user in this run
+    private final Set<String> reportedAddresses = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    AddressValidationCache(JFrame parentFrame, HushCommandLineBridge clientCaller,
+                           StatusUpdateErrorReporter errorReporter) {
+        this.parentFrame = parentFrame;
+        this.clientCaller = clientCaller;
+        this.errorReporter = errorReporter;
+        this.validationImportCount = clientCaller.getFinishedImportCount();
+
+        try {
+            this.loadFromDisk();
+        } catch (IOException ioe) {
+            // The cache is only an optimization - validation will be done again
+            ioe.printStackTrace();
+            System.out.println("Could not load the address validation cache: " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Checks if a T address is watch-only or invalid. Only addresses not seen before are validated by the wallet.
+     *
+     * @param address the T address to check
+     * @return true if the address is invalid or watch-only
+     */
+    public boolean isWatchOnlyOrInvalidAddress(String address)
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        this.forgetInvalidAfterImport();
+
+        Boolean cached = this.validationMap.get(address);
+        if (cached != null) {
+            WalletMetrics.getInstance().cacheHit("address validation");
+        } else {
+            WalletMetrics.getInstance().cacheMiss("address validation");
+            cached = this.clientCaller.isWatchOnlyOrInvalidAddress(address);
+            if ((this.validationMap.putIfAbsent(address, cached) == null) && !cached) {
+                this.appendToDisk(address);
+            }
+        }
+
+        if (cached && this.reportedAddresses.add(address)) {
+            this.reportInvalidAddress(address);
+        }
+
+        return cached;
+    }
+
+    // Keys imported since the invalid or watch-only results were obtained may make the addresses valid
+    private synchronized void forgetInvalidAfterImport() {
+        int importCount = this.clientCaller.getFinishedImportCount();
+        if (importCount != this.validationImportCount) {
+            this.validationImportCount = importCount;
+            this.validationMap.values().removeIf(watchOnlyOrInvalid -> watchOnlyOrInvalid);
+            this.reportedAddresses.clear();
+        }
+    }
+
+    private void reportInvalidAddress(final String address) {
+        System.out.println("The following address is invalid or a watch-only address: " + address +
+                                   ". It will not be displayed!");
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+                AddressValidationCache.this.parentFrame,
+                "An invalid or watch-only address exists in the wallet:" + "\n" +
+                        address + "\n\n" +
+                        "The GUI wallet software cannot operate properly with addresses that are invalid or\n" +
+                        "exist in the wallet as watch-only addresses. Do NOT use this address as a destination\n" +
+                        "address for payment operations!",
+                "Error: invalid or watch-only address exists!",
+                JOptionPane.ERROR_MESSAGE));
+    }
+
+    private void loadFromDisk()
+            throws IOException {
+        File cacheFile = new File(OSUtil.getSettingsDirectory(), CACHE_FILE_NAME);
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // format is address,0|1 - a partially written last line is just skipped
+                int separator = line.indexOf(',');
+                if ((separator <= 0) || (separator != line.length() - 2)) {
+                    continue;
+                }
+
+                // Invalid or watch-only results written by older versions are validated again
+                if (line.charAt(separator + 1) == '0') {
+                    this.validationMap.put(line.substring(0, separator), false);
+                }
+            }
+        }
+
+        System.out.println("Loaded " + this.validationMap.size() + " cached address validation results");
+    }
+
+    // Appends an address found valid
+    private synchronized void appendToDisk(String address) {
+        try {
+            File cacheFile = new File(OSUtil.getSettingsDirectory(), CACHE_FILE_NAME);
+            try (Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(cacheFile, true), StandardCharsets.UTF_8)) {
+                writer.write(address + ",0\n");
+            }
+        } catch (IOException ioe) {
+            // The address is validated again on the next start
+            System.out.println("Saving address validation result failed for: " + address);
+            SwingUtilities.invokeLater(() -> AddressValidationCache.this.errorReporter.reportError(ioe));
+        }
+    }
+}
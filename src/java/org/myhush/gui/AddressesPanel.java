@@ -11,31 +11,34 @@ import javax.swing.border.EtchedBorder;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.text.DecimalFormat;
 import java.util.*;
+import java.util.List;
 
 /**
  * Addresses panel - shows T/Z addresses and their balances.
  */
-class AddressesPanel extends WalletTabPanel {
+class AddressesPanel extends WalletTabPanel implements LazyLoadingTab {
+    private static final String LOADING_CARD = "loading";
+    private static final String TABLE_CARD = "table";
+
     private String[][] lastAddressBalanceData;
     private final JFrame parentFrame;
     private final HushCommandLineBridge clientCaller;
     private final StatusUpdateErrorReporter errorReporter;
-    private JTable addressBalanceTable;
-    private JScrollPane addressBalanceTablePane;
-    private DataGatheringThread<String[][]> balanceGatheringThread;
+    private DataTable addressBalanceTable;
+    private final AddressBalanceService balanceService;
 
     private long lastInteractiveRefresh;
 
-    // Table of validated addresses with their validation result. An invalid or watch-only address should not be shown
-    // and should be remembered as invalid here
-    private final Map<String, Boolean> validationMap = new HashMap<>();
+    // Shows a placeholder until the addresses are loaded
+    private final JPanel tableCards;
+    private boolean loadingStarted = false;
 
-    AddressesPanel(JFrame parentFrame, HushCommandLineBridge clientCaller, StatusUpdateErrorReporter errorReporter)
-            throws IOException, InterruptedException, HushCommandLineBridge.WalletCallException {
+    AddressesPanel(JFrame parentFrame, HushCommandLineBridge clientCaller,
+                   AddressBalanceService balanceService, StatusUpdateErrorReporter errorReporter) {
         this.parentFrame = parentFrame;
         this.clientCaller = clientCaller;
+        this.balanceService = balanceService;
         this.errorReporter = errorReporter;
 
         this.lastInteractiveRefresh = System.currentTimeMillis();
@@ -60,11 +63,14 @@ class AddressesPanel extends WalletTabPanel {
 
         addressesPanel.add(buttonPanel, BorderLayout.SOUTH);
 
-        // Table of addresses
-        lastAddressBalanceData = getAddressBalanceDataFromWallet();
-        addressesPanel.add(addressBalanceTablePane = new JScrollPane(
-                        addressBalanceTable = this.createAddressBalanceTable(lastAddressBalanceData)),
-                BorderLayout.CENTER);
+        // Table of addresses - empty until startLoading() has obtained the balances
+        tableCards = new JPanel(new CardLayout());
+        JLabel loadingLabel = new JLabel("Loading addresses and balances...", SwingConstants.CENTER);
+        tableCards.add(loadingLabel, LOADING_CARD);
+        tableCards.add(new JScrollPane(
+                        addressBalanceTable = this.createAddressBalanceTable(new String[0][])),
+                TABLE_CARD);
+        addressesPanel.add(tableCards, BorderLayout.CENTER);
 
         JPanel warningPanel = new JPanel();
         warningPanel.setLayout(new BorderLayout(3, 3));
@@ -79,20 +85,7 @@ class AddressesPanel extends WalletTabPanel {
         warningPanel.add(warningL, BorderLayout.NORTH);
         addressesPanel.add(warningPanel, BorderLayout.NORTH);
 
-        // Thread and timer to update the address/balance table
-        this.balanceGatheringThread = new DataGatheringThread<>(
-                () -> {
-                    long start = System.currentTimeMillis();
-                    String[][] data = AddressesPanel.this.getAddressBalanceDataFromWallet();
-                    long end = System.currentTimeMillis();
-                    System.out.println("Gathering of address/balance table data done in " + (end - start) + "ms.");
-
-                    return data;
-                },
-                this.errorReporter, 25000
-        );
-        this.threads.add(this.balanceGatheringThread);
-
+        // Timer to update the address/balance table - the data is gathered by the balance service
         ActionListener alBalances = actionEvent -> {
             try {
                 AddressesPanel.this.updateWalletAddressBalanceTableAutomated();
@@ -101,12 +94,18 @@ class AddressesPanel extends WalletTabPanel {
                 AddressesPanel.this.errorReporter.reportError(e);
             }
         };
-        final Timer timer = new Timer(5000, alBalances);
+        final Timer timer = new Timer(5000, WalletMetrics.getInstance().timedEdtUpdate("address balances", alBalances));
         timer.start();
         this.timers.add(timer);
 
         // Button actions
         refreshButton.addActionListener(e -> {
+            // The daemon does not answer during an import - the last gathered balances are shown meanwhile
+            if (AddressesPanel.this.clientCaller.isWalletImportRunning()) {
+                AddressesPanel.this.updateWalletAddressBalanceTableFromSnapshot();
+                return;
+            }
+
             Cursor oldCursor = null;
             try {
                 // TODO: dummy progress bar ... maybe
@@ -130,6 +129,37 @@ class AddressesPanel extends WalletTabPanel {
         newZAddressButton.addActionListener(actionEvent -> createNewAddress(true));
     }
 
+    @Override
+    public void startLoading() {
+        if (this.loadingStarted) {
+            return;
+        }
+        this.loadingStarted = true;
+
+        // The balance service may have gathered the balances already - for big wallets that takes long
+        new Thread(() -> {
+            try {
+                AddressBalanceService.AddressBalanceSnapshot snapshot = AddressesPanel.this.balanceService.getLastSnapshot();
+                if (snapshot == null) {
+                    long start = System.currentTimeMillis();
+                    snapshot = AddressesPanel.this.balanceService.refresh();
+                    System.out.println("Initial loading of address/balance data done in " +
+                                               (System.currentTimeMillis() - start) + "ms.");
+                }
+
+                final String[][] data = AddressesPanel.this.getAddressBalanceData(snapshot);
+                SwingUtilities.invokeLater(() -> AddressesPanel.this.showLoadedData(data));
+            } catch (Exception e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    // The table is shown anyway - the timer or a refresh fills it later
+                    ((CardLayout) AddressesPanel.this.tableCards.getLayout()).show(AddressesPanel.this.tableCards, TABLE_CARD);
+                    AddressesPanel.this.errorReporter.reportError(e);
+                });
+            }
+        }, "Address balances loading").start();
+    }
+
     // Null if not selected
     public String getSelectedAddress() {
         final int selectedRow = this.addressBalanceTable.getSelectedRow();
@@ -140,10 +170,15 @@ class AddressesPanel extends WalletTabPanel {
     }
 
     private void createNewAddress(boolean isZAddress) {
+        if (WalletImportJob.refuseWhileImporting(this.getRootPane().getParent(), this.clientCaller)) {
+            return;
+        }
+
         try {
-            // Check for encrypted wallet
-            final boolean bEncryptedWallet = this.clientCaller.isWalletEncrypted();
-            if (bEncryptedWallet && isZAddress) {
+            // Check for encrypted wallet - no password is needed while it is unlocked anyway (e.g. for queued sends)
+            final boolean bUnlockWallet = this.clientCaller.isWalletEncrypted() &&
+                                          (!this.clientCaller.getSecurityState().isUnlockedFor(WalletSecurityState.SHORT_OPERATION_MS));
+            if (bUnlockWallet && isZAddress) {
                 PasswordDialog pd = new PasswordDialog((JFrame) (this.getRootPane().getParent()));
                 pd.setVisible(true);
 
@@ -157,7 +192,7 @@ class AddressesPanel extends WalletTabPanel {
             String address = this.clientCaller.createNewAddress(isZAddress);
 
             // Lock the wallet again
-            if (bEncryptedWallet && isZAddress) {
+            if (bUnlockWallet && isZAddress) {
                 this.clientCaller.lockWallet();
             }
 
@@ -174,24 +209,28 @@ class AddressesPanel extends WalletTabPanel {
         }
     }
 
+    private synchronized void showLoadedData(String[][] data) {
+        // An interactive refresh may have been faster
+        if (lastAddressBalanceData == null) {
+            this.addressBalanceTable.setRows(data);
+            lastAddressBalanceData = data;
+        }
+        ((CardLayout) this.tableCards.getLayout()).show(this.tableCards, TABLE_CARD);
+    }
+
     // Interactive and non-interactive are mutually exclusive
     private synchronized void updateWalletAddressBalanceTableInteractive()
             throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
         this.lastInteractiveRefresh = System.currentTimeMillis();
 
-        String[][] newAddressBalanceData = this.getAddressBalanceDataFromWallet();
+        String[][] newAddressBalanceData = this.getAddressBalanceData(this.balanceService.refresh());
 
         if (!Arrays.deepEquals(lastAddressBalanceData, newAddressBalanceData)) {
             System.out.println("Updating table of addresses/balances I...");
-            this.remove(addressBalanceTablePane);
-            this.add(addressBalanceTablePane = new JScrollPane(
-                            addressBalanceTable = this.createAddressBalanceTable(newAddressBalanceData)),
-                    BorderLayout.CENTER);
+            this.addressBalanceTable.setRows(newAddressBalanceData);
             lastAddressBalanceData = newAddressBalanceData;
-
-            this.validate();
-            this.repaint();
         }
+        ((CardLayout) this.tableCards.getLayout()).show(this.tableCards, TABLE_CARD);
     }
 
 
@@ -202,24 +241,27 @@ class AddressesPanel extends WalletTabPanel {
             return;
         }
 
-        String[][] newAddressBalanceData = this.balanceGatheringThread.getLastData();
+        this.updateWalletAddressBalanceTableFromSnapshot();
+    }
+
+
+    // Shows the balances last gathered by the balance service - does not call the wallet
+    private synchronized void updateWalletAddressBalanceTableFromSnapshot() {
+        AddressBalanceService.AddressBalanceSnapshot snapshot = this.balanceService.getLastSnapshot();
+        String[][] newAddressBalanceData = (snapshot != null) ? this.getAddressBalanceData(snapshot) : null;
 
         if ((newAddressBalanceData != null) && !Arrays.deepEquals(lastAddressBalanceData, newAddressBalanceData)) {
             System.out.println("Updating table of addresses/balances A...");
-            this.remove(addressBalanceTablePane);
-            this.add(addressBalanceTablePane = new JScrollPane(
-                            addressBalanceTable = this.createAddressBalanceTable(newAddressBalanceData)),
-                    BorderLayout.CENTER);
+            this.addressBalanceTable.setRows(newAddressBalanceData);
             lastAddressBalanceData = newAddressBalanceData;
-            this.validate();
-            this.repaint();
         }
     }
 
 
-    private JTable createAddressBalanceTable(String rowData[][]) {
+    private DataTable createAddressBalanceTable(String rowData[][]) {
         String columnNames[] = { "Balance", "Confirmed?", "Address" };
-        JTable table = new AddressTable(rowData, columnNames, this.clientCaller);
+        DataTable table = new AddressTable(rowData, columnNames, this.clientCaller);
+        table.setNumericSortKey(0, row -> HushAmount.parseZatoshis(row[0].toString()));
         table.setAutoResizeMode(JTable.AUTO_RESIZE_SUBSEQUENT_COLUMNS);
         table.getColumnModel().getColumn(0).setPreferredWidth(160);
         table.getColumnModel().getColumn(1).setPreferredWidth(140);
@@ -229,30 +271,9 @@ class AddressesPanel extends WalletTabPanel {
     }
 
 
-    private String[][] getAddressBalanceDataFromWallet()
-            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
-        // Z Addresses - they are OK
-        String[] zAddresses = clientCaller.getWalletZAddresses();
-
-        // T Addresses listed with the list received by addr comamnd
-        String[] tAddresses = this.clientCaller.getWalletAllPublicAddresses();
-        Set<String> tStoredAddressSet = new HashSet<>();
-        Collections.addAll(tStoredAddressSet, tAddresses);
-
-        // T addresses with unspent outputs - just in case they are different
-        String[] tAddressesWithUnspentOuts = this.clientCaller.getWalletPublicAddressesWithUnspentOutputs();
-        Set<String> tAddressSetWithUnspentOuts = new HashSet<>();
-        Collections.addAll(tAddressSetWithUnspentOuts, tAddressesWithUnspentOuts);
-
-        // Combine all known T addresses
-        Set<String> tAddressesCombined = new HashSet<>();
-        tAddressesCombined.addAll(tStoredAddressSet);
-        tAddressesCombined.addAll(tAddressSetWithUnspentOuts);
-
-        String[][] addressBalances = new String[zAddresses.length + tAddressesCombined.size()][];
-
-        // Format double numbers - else sometimes we get exponential notation 1E-4 ZEC
-        DecimalFormat df = new DecimalFormat("########0.00######");
+    private String[][] getAddressBalanceData(AddressBalanceService.AddressBalanceSnapshot snapshot) {
+        List<AddressBalanceService.AddressBalance> balances = snapshot.getAllBalances();
+        String[][] addressBalances = new String[balances.size()][];
 
         String confirmed = "\u2690";
         String notConfirmed = "\u2691";
@@ -267,57 +288,15 @@ class AddressesPanel extends WalletTabPanel {
 
         int i = 0;
 
-        for (String address : tAddressesCombined) {
-            String addressToDisplay = address;
-            // Make sure the current address is not watch-only or invalid
-            if (!this.validationMap.containsKey(address)) {
-                boolean validationResult = this.clientCaller.isWatchOnlyOrInvalidAddress(address);
-                this.validationMap.put(address, validationResult);
-
-                if (validationResult) {
-                    JOptionPane.showMessageDialog(
-                            this.parentFrame,
-                            "An invalid or watch-only address exists in the wallet:" + "\n" +
-                                    address + "\n\n" +
-                                    "The GUI wallet software cannot operate properly with addresses that are invalid or\n" +
-                                    "exist in the wallet as watch-only addresses. Do NOT use this address as a destination\n" +
-                                    "address for payment operations!",
-                            "Error: invalid or watch-only address exists!",
-                            JOptionPane.ERROR_MESSAGE);
-                }
-            }
-
-            boolean watchOnlyOrInvalid = this.validationMap.get(address);
-            if (watchOnlyOrInvalid) {
-                System.out.println("The following address is invalid or a watch-only address: {0}. It will not be displayed!" + address);
-                addressToDisplay = "<INVALID OR WATCH-ONLY ADDRESS> !!!";
-            }
-            // End of check for invalid/watch only addresses
-
-            String confirmedBalance = this.clientCaller.getBalanceForAddress(address);
-            String unconfirmedBalance = this.clientCaller.getUnconfirmedBalanceForAddress(address);
-            boolean isConfirmed = (confirmedBalance.equals(unconfirmedBalance));
-            String balanceToShow = df.format(Double.valueOf(
-                    isConfirmed ? confirmedBalance : unconfirmedBalance));
-
-            addressBalances[i++] = new String[] {
-                   balanceToShow,
-                   isConfirmed ? ("Yes " + confirmed) : ("No  " + notConfirmed),
-                   addressToDisplay
-            };
-        }
-
-        for (String address : zAddresses) {
-            String confirmedBalance = this.clientCaller.getBalanceForAddress(address);
-            String unconfirmedBalance = this.clientCaller.getUnconfirmedBalanceForAddress(address);
-            boolean isConfirmed = (confirmedBalance.equals(unconfirmedBalance));
-            String balanceToShow = df.format(Double.valueOf(
-                    isConfirmed ? confirmedBalance : unconfirmedBalance));
+        for (AddressBalanceService.AddressBalance balance : balances) {
+            boolean isConfirmed = balance.isConfirmed();
+            String balanceToShow =
+                    (isConfirmed ? balance.confirmedBalance : balance.unconfirmedBalance).toDisplayString();
 
             addressBalances[i++] = new String[] {
                     balanceToShow,
                     isConfirmed ? ("Yes " + confirmed) : ("No  " + notConfirmed),
-                    address
+                    balance.watchOnlyOrInvalid ? "<INVALID OR WATCH-ONLY ADDRESS> !!!" : balance.address
             };
         }
 
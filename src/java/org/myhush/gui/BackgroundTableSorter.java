@@ -0,0 +1,205 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import javax.swing.table.TableColumn;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sorts the rows of a {@link DataTable} when a column header is clicked. The sort keys are computed
+ * once per row (numbers for numeric columns, lower case text otherwise) and the rows are sorted in a
+ * background thread - in parallel for large tables. The sorted rows replace the table rows at once
+ * on the EDT, so the UI stays responsive while large tables are sorted.
+ */
+class BackgroundTableSorter {
+    // Tables with more rows than this are sorted in parallel
+    private static final int PARALLEL_SORT_THRESHOLD = 10000;
+
+    private static final String ASCENDING_MARKER = " \u25B2";
+    private static final String DESCENDING_MARKER = " \u25BC";
+
+    private final DataTable table;
+    // Model column -> numeric sort key of a row. Other columns are sorted as text.
+    private final Map<Integer, ToLongFunction<Object[]>> numericKeys = new HashMap<>();
+
+    // Model column the rows are sorted by - -1 if they are shown in the original order
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    // Incremented for each sort - results of outdated ones are dropped
+    private final AtomicInteger generation = new AtomicInteger();
+
+    BackgroundTableSorter(DataTable table) {
+        this.table = table;
+
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if ((e.getButton() != MouseEvent.BUTTON1) || (e.getClickCount() != 1)) {
+                    return;
+                }
+
+                int viewColumn = BackgroundTableSorter.this.table.columnAtPoint(e.getPoint());
+                if (viewColumn >= 0) {
+                    BackgroundTableSorter.this.toggleSortOrder(
+                            BackgroundTableSorter.this.table.convertColumnIndexToModel(viewColumn));
+                }
+            }
+        });
+    }
+
+    // The column is sorted by the number the function returns for a row instead of by its text
+    public void setNumericKey(int column, ToLongFunction<Object[]> key) {
+        this.numericKeys.put(column, key);
+    }
+
+    /**
+     * Replaces the rows of the table, sorting them first (in the background) if a sort order has been
+     * chosen. Called on the EDT.
+     *
+     * @param rows the new rows in their original order
+     */
+    public void setRows(Object[][] rows) {
+        if (this.sortColumn < 0) {
+            this.generation.incrementAndGet();
+            this.table.getDataModel().setRows(rows);
+        } else {
+            this.sortInBackground(rows);
+        }
+    }
+
+    // Ascending, then descending order for a column - called on the EDT
+    private void toggleSortOrder(int column) {
+        if (column == this.sortColumn) {
+            this.ascending = !this.ascending;
+        } else {
+            this.sortColumn = column;
+            this.ascending = true;
+        }
+
+        this.updateHeaders();
+        this.sortInBackground(this.table.getDataModel().getRows());
+    }
+
+    private void sortInBackground(final Object[][] rows) {
+        final int sortGeneration = this.generation.incrementAndGet();
+        final int column = this.sortColumn;
+        final boolean sortAscending = this.ascending;
+        final ToLongFunction<Object[]> numericKey = this.numericKeys.get(column);
+
+        new Thread(() -> {
+            long start = System.currentTimeMillis();
+            final Object[][] sortedRows = Arrays.copyOf(rows, rows.length);
+            if (numericKey != null) {
+                sortRows(sortedRows, numericKey, sortAscending);
+            } else {
+                sortRowsByText(sortedRows, column, sortAscending);
+            }
+            System.out.println("Sorted " + rows.length + " rows in " + (System.currentTimeMillis() - start) + "ms.");
+
+            SwingUtilities.invokeLater(() -> {
+                // Newer rows or a different order have been requested meanwhile
+                if (sortGeneration == BackgroundTableSorter.this.generation.get()) {
+                    BackgroundTableSorter.this.table.getDataModel().setRows(sortedRows);
+                }
+            });
+        }).start();
+    }
+
+    private void updateHeaders() {
+        DataTable.DataTableModel model = this.table.getDataModel();
+        for (int i = 0; i < this.table.getColumnCount(); i++) {
+            TableColumn column = this.table.getColumnModel().getColumn(i);
+            String name = model.getColumnName(column.getModelIndex());
+            if (column.getModelIndex() == this.sortColumn) {
+                name += this.ascending ? ASCENDING_MARKER : DESCENDING_MARKER;
+            }
+            column.setHeaderValue(name);
+        }
+        this.table.getTableHeader().repaint();
+    }
+
+    /**
+     * Sorts rows by a numeric key - computed once per row. The sort is stable.
+     *
+     * @param rows      the rows to sort in place
+     * @param key       returns the sort key of a row
+     * @param ascending true for ascending order
+     */
+    static void sortRows(Object[][] rows, ToLongFunction<Object[]> key, boolean ascending) {
+        NumericSortEntry[] entries = new NumericSortEntry[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            entries[i] = new NumericSortEntry(key.applyAsLong(rows[i]), rows[i]);
+        }
+
+        Comparator<NumericSortEntry> comparator = (e1, e2) -> Long.compare(e1.key, e2.key);
+        sortEntries(entries, ascending ? comparator : comparator.reversed());
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = entries[i].row;
+        }
+    }
+
+    // Sorts rows by the case insensitive text of a column - the text is computed once per row
+    static void sortRowsByText(Object[][] rows, int column, boolean ascending) {
+        TextSortEntry[] entries = new TextSortEntry[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            Object value = rows[i][column];
+            entries[i] = new TextSortEntry(
+                    (value != null) ? value.toString().trim().toLowerCase(Locale.ROOT) : "", rows[i]);
+        }
+
+        Comparator<TextSortEntry> comparator = (e1, e2) -> e1.key.compareTo(e2.key);
+        sortEntries(entries, ascending ? comparator : comparator.reversed());
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = entries[i].row;
+        }
+    }
+
+    private static <T> void sortEntries(T[] entries, Comparator<? super T> comparator) {
+        if (entries.length > PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(entries, comparator);
+        } else {
+            Arrays.sort(entries, comparator);
+        }
+    }
+
+
+    /**
+     * A row with its precomputed numeric sort key.
+     */
+    private static class NumericSortEntry {
+        final long key;
+        final Object[] row;
+
+        NumericSortEntry(long key, Object[] row) {
+            this.key = key;
+            this.row = row;
+        }
+    }
+
+
+    /**
+     * A row with its precomputed text sort key.
+     */
+    private static class TextSortEntry {
+        final String key;
+        final Object[] row;
+
+        TextSortEntry(String key, Object[] row) {
+            this.key = key;
+            this.row = row;
+        }
+    }
+}
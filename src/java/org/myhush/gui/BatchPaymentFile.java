@@ -0,0 +1,230 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch payout file - a CSV with one recipient per line in the form:
+ * <p>
+ * address,amount[,memo]
+ * <p>
+ * The memo is the rest of the line, so it may contain commas. Empty lines, lines starting
+ * with # and a header line (address,amount,...) are ignored. All lines are validated in bulk
+ * and the recipients are packed into as few z_sendmany operations as allowed. A destination
+ * address may appear only once, since z_sendmany rejects an operation paying an address twice.
+ */
+class BatchPaymentFile {
+    // z_sendmany accepts at most 54 Z outputs per operation - all the transaction size allows
+    static final int MAX_Z_OUTPUTS_PER_OPERATION = 54;
+    // Limit of all outputs per operation - reached only with few or no Z outputs
+    static final int MAX_OUTPUTS_PER_OPERATION = 400;
+
+    // Transaction size estimate as z_sendmany makes it: a JoinSplit description per Z output and a
+    // regular output per T output, plus room for the header, the inputs and the change
+    static final int MAX_TRANSACTION_BYTES = 100000;
+    private static final int Z_OUTPUT_BYTES = 1802;
+    private static final int T_OUTPUT_BYTES = 34;
+    // About 13 transparent inputs and a change output
+    private static final int BASE_TRANSACTION_BYTES = 2000;
+
+    private final List<Entry> entries;
+    private final List<String> errors;
+
+    private BatchPaymentFile(List<Entry> entries, List<String> errors) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Loads and validates a batch payment file. Invalid lines do not stop the loading - they are
+     * all collected as errors.
+     *
+     * @param file the CSV file
+     * @return the loaded file
+     */
+    static BatchPaymentFile load(File file)
+            throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return parse(reader);
+        }
+    }
+
+    static BatchPaymentFile parse(BufferedReader reader)
+            throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        // Line number of each destination address seen
+        Map<String, Integer> addressLines = new HashMap<>();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            // Skip a UTF-8 BOM as written by some spreadsheet programs
+            if ((lineNumber == 1) && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+
+            if ((line.trim().length() <= 0) || line.trim().startsWith("#")) {
+                continue;
+            }
+
+            int addressEnd = line.indexOf(',');
+            if (addressEnd < 0) {
+                errors.add("Line " + lineNumber + ": expected address,amount[,memo]");
+                continue;
+            }
+            int amountEnd = line.indexOf(',', addressEnd + 1);
+
+            String address = line.substring(0, addressEnd).trim();
+            String amountText = (amountEnd < 0) ?
+                                        line.substring(addressEnd + 1).trim() :
+                                        line.substring(addressEnd + 1, amountEnd).trim();
+            String memo = (amountEnd < 0) ? "" : line.substring(amountEnd + 1);
+
+            if ((entries.isEmpty()) && (errors.isEmpty()) && address.equalsIgnoreCase("address")) {
+                continue; // header
+            }
+
+            String error = validate(address, amountText, memo);
+            if (error != null) {
+                errors.add("Line " + lineNumber + ": " + error);
+                continue;
+            }
+
+            Integer firstLine = addressLines.putIfAbsent(address, lineNumber);
+            if (firstLine != null) {
+                errors.add("Line " + lineNumber + ": destination address " + address +
+                                   " already appears on line " + firstLine + ".");
+                continue;
+            }
+
+            entries.add(new Entry(lineNumber, address, HushAmount.parse(amountText), memo));
+        }
+
+        return new BatchPaymentFile(entries, errors);
+    }
+
+    // Null if OK, otherwise the error message
+    private static String validate(String address, String amountText, String memo) {
+        if (address.length() <= 0) {
+            return "destination address is missing.";
+        } else if (address.length() <= 20) {
+            return "destination address " + address + " is too short.";
+        } else if (address.length() > 512) {
+            return "destination address is too long.";
+        }
+        String addressError = AddressFormat.check(address);
+        if (addressError != null) {
+            return "destination address " + address + " " + addressError;
+        }
+
+        HushAmount amount;
+        try {
+            amount = HushAmount.parse(amountText);
+        } catch (NumberFormatException e) {
+            return "amount " + amountText + " is not a valid number.";
+        }
+        if (!amount.isPositive()) {
+            return "amount " + amountText + " must be positive.";
+        }
+
+        if (memo.length() > 0) {
+            if (!isZAddress(address)) {
+                return "a memo may be specified only if the destination is a Z (Private) address.";
+            }
+            if (memo.getBytes(StandardCharsets.UTF_8).length > SendManyRecipients.MAX_MEMO_BYTES) {
+                return "memo is longer than " + SendManyRecipients.MAX_MEMO_BYTES + " bytes.";
+            }
+        }
+
+        return null;
+    }
+
+    // TODO: We need a much more precise criterion to distinguish T/Z adresses;
+    static boolean isZAddress(String address) {
+        return address.startsWith("z") && address.length() > 40;
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    // Validation errors - one per invalid line
+    public List<String> getErrors() {
+        return this.errors;
+    }
+
+    public HushAmount getTotal() {
+        HushAmount total = HushAmount.ZERO;
+        for (Entry entry : this.entries) {
+            total = total.add(entry.amount);
+        }
+        return total;
+    }
+
+    /**
+     * Packs the recipients into as few z_sendmany operations as possible. Recipients keep the file
+     * order and an operation is closed when it reaches the Z output or total output limit or the next
+     * recipient would make its transaction too big.
+     *
+     * @return the recipients of each operation
+     */
+    public List<SendManyRecipients> toOperations() {
+        List<SendManyRecipients> operations = new ArrayList<>();
+
+        SendManyRecipients current = null;
+        int currentZOutputs = 0;
+        int currentBytes = 0;
+        for (Entry entry : this.entries) {
+            boolean isZ = isZAddress(entry.address);
+            int outputBytes = isZ ? Z_OUTPUT_BYTES : T_OUTPUT_BYTES;
+            if ((current == null) ||
+                        (current.size() >= MAX_OUTPUTS_PER_OPERATION) ||
+                        (isZ && (currentZOutputs >= MAX_Z_OUTPUTS_PER_OPERATION)) ||
+                        (currentBytes + outputBytes > MAX_TRANSACTION_BYTES)) {
+                current = new SendManyRecipients();
+                currentZOutputs = 0;
+                currentBytes = BASE_TRANSACTION_BYTES;
+                operations.add(current);
+            }
+
+            current.add(entry.address, entry.amount, entry.memo);
+            currentBytes += outputBytes;
+            if (isZ) {
+                currentZOutputs++;
+            }
+        }
+
+        return operations;
+    }
+
+
+    /**
+     * One valid line of the file - immutable.
+     */
+    static class Entry {
+        final int lineNumber;
+        final String address;
+        final HushAmount amount;
+        final String memo;
+
+        Entry(int lineNumber, String address, HushAmount amount, String memo) {
+            this.lineNumber = lineNumber;
+            this.address = address;
+            this.amount = amount;
+            this.memo = memo;
+        }
+    }
+}
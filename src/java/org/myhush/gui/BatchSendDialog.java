@@ -0,0 +1,357 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Dialog to send cash from one address to all recipients of a CSV payout file. The recipients
+ * are packed into as few z_sendmany operations as possible which are handed to the send queue
+ * as one batch and tracked together. The queue sends them one after another, since all of them
+ * spend from the same address - they go on when the dialog is closed.
+ */
+class BatchSendDialog extends JDialog {
+    private static final int COLUMN_OPERATION_ID = 3;
+    private static final int COLUMN_STATUS = 4;
+
+    private final SendQueue sendQueue;
+    private final String sourceAddress;
+    private final HushAmount sourceBalance;
+
+    private final JTextField fileField;
+    private final JTextField transactionFeeField;
+    private final JLabel summaryLabel;
+    private final JTextArea errorsArea;
+    private final DefaultTableModel operationsModel;
+    private final JProgressBar progress;
+
+    private final JButton browseButton;
+    private final JButton sendButton;
+    private final JButton closeButton;
+
+    private BatchPaymentFile paymentFile = null;
+    private List<SendManyRecipients> operations = null;
+
+    // The queued operations in the order of the table rows - only accessed on the EDT
+    private List<SendQueue.PendingSend> batch = null;
+    private boolean finishReported = false;
+
+    BatchSendDialog(JFrame parent, SendQueue sendQueue, String sourceAddress, HushAmount sourceBalance) {
+        super(parent);
+        this.sendQueue = sendQueue;
+        this.sourceAddress = sourceAddress;
+        this.sourceBalance = sourceBalance;
+
+        this.setTitle("Batch send from CSV...");
+        this.setLocation(parent.getLocation().x + 50, parent.getLocation().y + 50);
+        // Not modal - a batch may take many blocks and the wallet stays usable meanwhile
+        this.setModal(false);
+        this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        JPanel controlsPanel = new JPanel();
+        controlsPanel.setLayout(new BoxLayout(controlsPanel, BoxLayout.Y_AXIS));
+        controlsPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JPanel tempPanel = new JPanel(new BorderLayout(0, 0));
+        tempPanel.add(new JLabel(
+                "<html>Send cash from address:<br/>" + sourceAddress + " (" + sourceBalance + " HUSH)<br/><br/>" +
+                        "The payout file has one recipient per line in the form " +
+                        "<span style=\"font-weight:bold\">address,amount[,memo]</span>. " +
+                        "A memo may be specified only if the destination is a Z (Private) address.</html>"),
+                BorderLayout.CENTER);
+        controlsPanel.add(tempPanel);
+
+        JLabel dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(new JLabel("Payout file: "));
+        tempPanel.add(fileField = new JTextField(50));
+        fileField.setEditable(false);
+        tempPanel.add(new JLabel(" "));
+        tempPanel.add(browseButton = new JButton("Browse..."));
+        controlsPanel.add(tempPanel);
+
+        dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(new JLabel("Transaction fee per operation: "));
+        tempPanel.add(transactionFeeField = new JTextField(13));
+        transactionFeeField.setText("0.0001"); // Default value
+        transactionFeeField.setHorizontalAlignment(SwingConstants.RIGHT);
+        tempPanel.add(new JLabel(" HUSH"));
+        controlsPanel.add(tempPanel);
+
+        dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(summaryLabel = new JLabel("No payout file is loaded."));
+        controlsPanel.add(tempPanel);
+
+        // Validation errors and operations
+        JPanel centerPanel = new JPanel(new BorderLayout(0, 8));
+        centerPanel.setBorder(BorderFactory.createEmptyBorder(0, 8, 0, 8));
+        errorsArea = new JTextArea(5, 60);
+        errorsArea.setEditable(false);
+        errorsArea.setForeground(Color.RED);
+        centerPanel.add(new JScrollPane(errorsArea), BorderLayout.NORTH);
+
+        operationsModel = new DefaultTableModel(
+                new String[]{ "#", "Recipients", "Amount", "Operation ID", "Status" }, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable operationsTable = new JTable(operationsModel);
+        operationsTable.getColumnModel().getColumn(0).setPreferredWidth(30);
+        operationsTable.getColumnModel().getColumn(1).setPreferredWidth(80);
+        operationsTable.getColumnModel().getColumn(2).setPreferredWidth(120);
+        operationsTable.getColumnModel().getColumn(COLUMN_OPERATION_ID).setPreferredWidth(330);
+        operationsTable.getColumnModel().getColumn(COLUMN_STATUS).setPreferredWidth(200);
+        centerPanel.add(new JScrollPane(operationsTable), BorderLayout.CENTER);
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(new JLabel("Progress: "));
+        tempPanel.add(progress = new JProgressBar(0, 1));
+        progress.setPreferredSize(new Dimension(250, 17));
+        centerPanel.add(tempPanel, BorderLayout.SOUTH);
+
+        this.getContentPane().setLayout(new BorderLayout(0, 0));
+        this.getContentPane().add(controlsPanel, BorderLayout.NORTH);
+        this.getContentPane().add(centerPanel, BorderLayout.CENTER);
+
+        // Form buttons
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setLayout(new FlowLayout(FlowLayout.CENTER, 3, 3));
+        sendButton = new JButton("Send   \u27A4\u27A4\u27A4");
+        sendButton.setEnabled(false);
+        buttonPanel.add(sendButton);
+        buttonPanel.add(new JLabel("   "));
+        closeButton = new JButton("Close");
+        buttonPanel.add(closeButton);
+        this.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+
+        browseButton.addActionListener(e -> BatchSendDialog.this.chooseFile());
+
+        sendButton.addActionListener(e -> BatchSendDialog.this.processSend());
+
+        closeButton.addActionListener(e -> {
+            BatchSendDialog.this.setVisible(false);
+            BatchSendDialog.this.dispose();
+        });
+
+        this.setSize(800, 560);
+        this.validate();
+        this.repaint();
+    }
+
+
+    private void chooseFile() {
+        final JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Load payout file...");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File file = fileChooser.getSelectedFile();
+        try {
+            this.paymentFile = BatchPaymentFile.load(file);
+        } catch (Exception e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(
+                    this,
+                    "An error occurred when loading the payout file:\n" +
+                            file.getAbsolutePath() + "\n" +
+                            e.getMessage(),
+                    "Error in loading payout file", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        this.fileField.setText(file.getAbsolutePath());
+        this.operations = this.paymentFile.toOperations();
+
+        StringBuilder errors = new StringBuilder();
+        for (String error : this.paymentFile.getErrors()) {
+            errors.append(error).append("\n");
+        }
+        this.errorsArea.setText(errors.toString());
+        this.errorsArea.setCaretPosition(0);
+
+        this.summaryLabel.setText(
+                this.paymentFile.getEntries().size() + " valid recipient(s), total " +
+                        this.paymentFile.getTotal() + " HUSH in " + this.operations.size() + " operation(s). " +
+                        this.paymentFile.getErrors().size() + " invalid line(s).");
+
+        this.operationsModel.setRowCount(0);
+        for (int i = 0; i < this.operations.size(); i++) {
+            SendManyRecipients recipients = this.operations.get(i);
+            this.operationsModel.addRow(new Object[]{
+                    i + 1, recipients.size(), recipients.getTotal().toDisplayString(), "", "Not sent"
+            });
+        }
+
+        this.progress.setMaximum(Math.max(1, this.operations.size()));
+        this.progress.setValue(0);
+
+        this.sendButton.setEnabled(this.paymentFile.getErrors().isEmpty() && (!this.operations.isEmpty()));
+    }
+
+
+    private void processSend() {
+        HushAmount fee;
+        try {
+            fee = HushAmount.parse(this.transactionFeeField.getText());
+            if (fee.isNegative()) {
+                throw new NumberFormatException("Negative fee");
+            }
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "Transaction fee is invalid; it is not a number.",
+                    "Sending parameters are incorrect", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        HushAmount fees = HushAmount.ofZatoshis(fee.getZatoshis() * this.operations.size());
+        HushAmount required = this.paymentFile.getTotal().add(fees);
+        if (required.compareTo(this.sourceBalance) > 0) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "The total amount to send including fees is " + required + " HUSH\n" +
+                            "but the confirmed balance of the source address is only " + this.sourceBalance + " HUSH.",
+                    "Insufficient funds", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        int reply = JOptionPane.showConfirmDialog(
+                this,
+                "Send " + this.paymentFile.getTotal() + " HUSH to " + this.paymentFile.getEntries().size() +
+                        " recipient(s)\n" +
+                        "in " + this.operations.size() + " operation(s) with total fees of " + fees + " HUSH?\n\n" +
+                        ((this.operations.size() > 1) ?
+                                 "The operations are sent one after another. Each operation waits until the\n" +
+                                         "change of the previous one is confirmed - about one block per operation.\n" +
+                                         "They go on when this dialog is closed - the Send cash tab shows their status." :
+                                 ""),
+                "Confirm batch send", JOptionPane.YES_NO_OPTION);
+        if (reply != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        // The password is needed only if the wallet is encrypted and not unlocked for earlier sends. It is
+        // given to the queue for the first operation only - the queue asks for it again if a later
+        // operation finds the wallet locked.
+        String password = null;
+        try {
+            if (this.sendQueue.isPasswordNeeded()) {
+                PasswordDialog pd = new PasswordDialog((JFrame) this.getParent());
+                pd.setVisible(true);
+
+                if (!pd.isOKPressed()) {
+                    return;
+                }
+                password = pd.getPassword();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            this.showSendError(e);
+            return;
+        }
+
+        // Start sending
+        this.sendButton.setEnabled(false);
+        this.browseButton.setEnabled(false);
+        this.transactionFeeField.setEditable(false);
+
+        this.finishReported = false;
+        this.batch = this.sendQueue.enqueueBatch(this.sourceAddress, this.operations, fee, password,
+                BatchSendDialog.this::operationUpdated);
+    }
+
+
+    // Shows the state of an operation - notifications see the current state, so a finished operation
+    // may be reported more than once
+    private void operationUpdated(SendQueue.PendingSend send) {
+        int row = this.batch.indexOf(send);
+        String status;
+        switch (send.state) {
+            case WAITING:
+                status = "WAITING FOR CONFIRMED CHANGE";
+                break;
+            case QUEUED:
+                status = "QUEUED";
+                break;
+            case SUBMITTED:
+                status = "IN PROGRESS";
+                break;
+            case SUCCESSFUL:
+                status = "SUCCESSFUL";
+                break;
+            default:
+                status = "ERROR: " + send.errorMessage;
+        }
+        this.operationsModel.setValueAt((send.operationID != null) ? send.operationID : "", row, COLUMN_OPERATION_ID);
+        this.operationsModel.setValueAt(status, row, COLUMN_STATUS);
+
+        int successfulCount = 0;
+        int failedCount = 0;
+        for (SendQueue.PendingSend operation : this.batch) {
+            if (operation.state == SendQueue.State.SUCCESSFUL) {
+                successfulCount++;
+            } else if (operation.state == SendQueue.State.FAILED) {
+                failedCount++;
+            }
+        }
+        this.progress.setValue(successfulCount + failedCount);
+
+        if (((successfulCount + failedCount) == this.batch.size()) && (!this.finishReported)) {
+            this.finishReported = true;
+            this.finishSending(successfulCount, failedCount);
+        }
+    }
+
+
+    private void finishSending(int successfulCount, int failedCount) {
+        // The dialog may have been closed meanwhile - the Send cash tab shows the outcome then
+        if (!this.isDisplayable()) {
+            return;
+        }
+
+        JOptionPane.showMessageDialog(
+                this,
+                "Batch send finished.\n" +
+                        successfulCount + " operation(s) successful, " + failedCount + " failed or not sent.",
+                "Batch send finished",
+                (failedCount > 0) ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+    }
+
+
+    private void showSendError(Exception e) {
+        String errMessage = "";
+        if (e instanceof HushCommandLineBridge.WalletCallException) {
+            errMessage = e.getMessage().replace(",", ",\n");
+        }
+
+        JOptionPane.showMessageDialog(
+                this,
+                "An unexpected error occurred when sending cash!\n" +
+                        "Please ensure that the HUSH daemon is running and\n" +
+                        "parameters are correct. You may try again later...\n" +
+                        errMessage,
+                "Error in sending cash", JOptionPane.ERROR_MESSAGE);
+    }
+}
@@ -0,0 +1,278 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Dialog to import many private keys at once - pasted or loaded from a file. The blockchain is
+ * rescanned only once, after the last key.
+ */
+class BulkKeyImportDialog extends JDialog {
+    // Errors shown at most in the summary
+    private static final int MAX_SHOWN_ERRORS = 20;
+
+    private final JTextArea keysArea;
+    private final JTextField startHeightField;
+    private final JProgressBar progress;
+    private final JLabel statusLabel;
+    private final HushCommandLineBridge caller;
+    private final JButton loadButton;
+    private final JButton okButton;
+    private final JButton cancelButon;
+
+    // Follows the rescan after the last key - used in the importing thread only
+    private RescanProgressMonitor rescanMonitor;
+
+    BulkKeyImportDialog(JFrame parent, HushCommandLineBridge caller) {
+        super(parent);
+        this.caller = caller;
+
+        this.setTitle("Import private keys in bulk...");
+        this.setLocation(parent.getLocation().x + 50, parent.getLocation().y + 50);
+        this.setModal(true);
+        this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        JPanel controlsPanel = new JPanel();
+        controlsPanel.setLayout(new BoxLayout(controlsPanel, BoxLayout.Y_AXIS));
+        controlsPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JPanel tempPanel = new JPanel(new BorderLayout(0, 0));
+        tempPanel.add(new JLabel(
+                        "<html>Please enter the T and Z private keys to import - one per line - or load them from a " +
+                                "file. Lines starting with # are ignored.</html>"),
+                BorderLayout.CENTER);
+        controlsPanel.add(tempPanel);
+
+        JLabel dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        keysArea = new JTextArea(10, 60);
+        keysArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, keysArea.getFont().getSize()));
+        controlsPanel.add(new JScrollPane(keysArea));
+
+        dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(new JLabel("Rescan from block height: "));
+        tempPanel.add(startHeightField = new JTextField("0", 10));
+        tempPanel.add(new JLabel(
+                "<html><span style=\"font-size:8px;\">" +
+                        "  * The height before the first transaction of the keys, if known. " +
+                        "Applies only if there are Z keys and no T keys.</span></html>"));
+        controlsPanel.add(tempPanel);
+
+        dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        tempPanel = new JPanel(new BorderLayout(0, 0));
+        tempPanel.add(new JLabel(
+                        "<html><span style=\"font-weight:bold\">" +
+                                "Warning:</span> The keys are imported without rescanning the blockchain and one " +
+                                "rescan is made after the last key. The rescan may take many minutes.</html>"),
+                BorderLayout.CENTER);
+        controlsPanel.add(tempPanel);
+
+        dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(progress = new JProgressBar());
+        tempPanel.add(new JLabel("  "));
+        tempPanel.add(statusLabel = new JLabel(" "));
+        controlsPanel.add(tempPanel);
+
+        this.getContentPane().setLayout(new BorderLayout(0, 0));
+        this.getContentPane().add(controlsPanel, BorderLayout.CENTER);
+
+        // Form buttons
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setLayout(new FlowLayout(FlowLayout.CENTER, 3, 3));
+        loadButton = new JButton("Load from file...");
+        buttonPanel.add(loadButton);
+        buttonPanel.add(new JLabel("   "));
+        okButton = new JButton("Import");
+        buttonPanel.add(okButton);
+        buttonPanel.add(new JLabel("   "));
+        cancelButon = new JButton("Cancel");
+        buttonPanel.add(cancelButon);
+        this.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+
+        loadButton.addActionListener(e -> BulkKeyImportDialog.this.loadFromFile());
+        okButton.addActionListener(e -> BulkKeyImportDialog.this.processOK());
+        cancelButon.addActionListener(e -> {
+            BulkKeyImportDialog.this.setVisible(false);
+            BulkKeyImportDialog.this.dispose();
+        });
+
+        this.setSize(740, 420);
+        this.validate();
+        this.repaint();
+    }
+
+    private void loadFromFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Load private keys from file...");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File f = fileChooser.getSelectedFile();
+        try {
+            this.keysArea.setText(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+            this.keysArea.setCaretPosition(0);
+        } catch (Exception e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(
+                    this,
+                    "The file " + f.getName() + " could not be read:\n" + e.getMessage(),
+                    "Error loading keys", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void processOK() {
+        final List<String> keys = BulkKeyImporter.parseKeys(this.keysArea.getText());
+        if (keys.isEmpty()) {
+            JOptionPane.showMessageDialog(
+                    BulkKeyImportDialog.this.getParent(),
+                    "There are no keys. Please enter them into the text area.", "Empty...",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        final int startHeight;
+        try {
+            startHeight = Integer.parseInt(this.startHeightField.getText().trim());
+            if (startHeight < 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException nfe) {
+            JOptionPane.showMessageDialog(
+                    BulkKeyImportDialog.this.getParent(),
+                    "The block height to rescan from is not valid: " + this.startHeightField.getText(),
+                    "Invalid block height...", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Start import
+        this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        this.progress.setMaximum(keys.size());
+        this.progress.setValue(0);
+        this.loadButton.setEnabled(false);
+        this.okButton.setEnabled(false);
+        this.cancelButon.setEnabled(false);
+        this.keysArea.setEditable(false);
+        this.startHeightField.setEditable(false);
+
+        // The wallet rescans from the height given only for Z keys without T keys
+        final int rescanStartHeight = BulkKeyImporter.getRescanStartHeight(keys, startHeight);
+
+        final BulkKeyImporter importer = new BulkKeyImporter(this.caller, keys, startHeight,
+                new BulkKeyImporter.ProgressListener() {
+                    @Override
+                    public void keyProcessed(final int done, final int total) {
+                        SwingUtilities.invokeLater(() -> {
+                            BulkKeyImportDialog.this.progress.setValue(done);
+                            if (!BulkKeyImportDialog.this.progress.isIndeterminate()) {
+                                BulkKeyImportDialog.this.statusLabel.setText("Imported " + done + " of " + total + " keys");
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void rescanStarted() {
+                        SwingUtilities.invokeLater(() -> {
+                            BulkKeyImportDialog.this.progress.setIndeterminate(true);
+                            BulkKeyImportDialog.this.statusLabel.setText("Rescanning the blockchain...");
+                        });
+
+                        if (BulkKeyImportDialog.this.rescanMonitor == null) {
+                            BulkKeyImportDialog.this.rescanMonitor = WalletImportJob.startProgressMonitor(
+                                    BulkKeyImportDialog.this.caller, rescanStartHeight,
+                                    (block, endHeight, percent) -> {
+                                        BulkKeyImportDialog.this.progress.setIndeterminate(false);
+                                        BulkKeyImportDialog.this.progress.setMaximum(100);
+                                        BulkKeyImportDialog.this.progress.setValue(percent);
+                                        BulkKeyImportDialog.this.statusLabel.setText(
+                                                "Rescanning - at block " + block + " of " + endHeight +
+                                                        " (" + percent + "%)");
+                                    });
+                        }
+                    }
+                });
+
+        // Marked as running for the whole import - the single key imports leave gaps
+        this.caller.beginWalletImport();
+        new Thread(() -> {
+            try {
+                final BulkKeyImporter.Result result = importer.run();
+                SwingUtilities.invokeLater(() -> BulkKeyImportDialog.this.showResult(result));
+            } catch (final Exception e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    JOptionPane.showMessageDialog(
+                            BulkKeyImportDialog.this.getRootPane().getParent(),
+                            "An error occurred when importing private keys. Error message is:\n" +
+                                    e.getClass().getName() + ":\n" + e.getMessage() + "\n\n" +
+                                    "Please ensure that hushd is running. You may try again later...\n",
+                            "Error in importing private keys", JOptionPane.ERROR_MESSAGE);
+                    BulkKeyImportDialog.this.setVisible(false);
+                    BulkKeyImportDialog.this.dispose();
+                });
+            } finally {
+                if (BulkKeyImportDialog.this.rescanMonitor != null) {
+                    BulkKeyImportDialog.this.rescanMonitor.stop();
+                }
+                BulkKeyImportDialog.this.caller.endWalletImport();
+            }
+        }).start();
+    }
+
+    private void showResult(BulkKeyImporter.Result result) {
+        StringBuilder message = new StringBuilder();
+        message.append(result.imported).append(" private key(s) have been imported");
+        message.append(result.rescanned ? " and the blockchain has been rescanned.\n" : ".\n");
+        if ((result.imported > 0) && result.rescanUncertain) {
+            message.append("\nThe wallet rescans the blockchain for T keys only if the last key was not in\n" +
+                                   "the wallet already. If the balances or transactions of the imported keys are\n" +
+                                   "missing, please restart the HUSH daemon with the -rescan option.\n");
+        } else if ((result.imported > 0) && (!result.rescanned)) {
+            message.append("\nThe blockchain has NOT been rescanned since the import of the last key failed.\n" +
+                                   "The balances and transactions of the imported keys are not shown until\n" +
+                                   "the HUSH daemon is restarted with the -rescan option.\n");
+        }
+
+        if (!result.errors.isEmpty()) {
+            message.append("\n").append(result.errors.size()).append(" key(s) could not be imported:\n");
+            for (int i = 0; (i < result.errors.size()) && (i < MAX_SHOWN_ERRORS); i++) {
+                message.append(result.errors.get(i)).append("\n");
+            }
+            if (result.errors.size() > MAX_SHOWN_ERRORS) {
+                message.append("...\n");
+            }
+        }
+
+        JOptionPane.showMessageDialog(
+                this,
+                message.toString(),
+                "Private key import finished...",
+                result.errors.isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+
+        this.setVisible(false);
+        this.dispose();
+    }
+}
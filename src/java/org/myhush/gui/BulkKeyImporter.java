@@ -0,0 +1,216 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Imports many private keys with a single blockchain rescan. The keys are classified (T or Z) by
+ * their form, so no import has to be tried and failed first. All keys but the last one are imported
+ * without a rescan, the last one with it - the rescan covers the whole wallet. Z keys are imported
+ * last since the wallet can rescan from a given height for them, while for T keys it rescans from
+ * the genesis block. If there are T keys, the Z key rescan starts at the genesis block as well, so
+ * that it covers the T keys too.
+ * <p>
+ * {@link #run()} blocks - it is to be called in a background thread.
+ */
+class BulkKeyImporter {
+    enum KeyType {
+        T,
+        Z,
+        UNKNOWN
+    }
+
+    private final HushCommandLineBridge clientCaller;
+    private final List<String> keys;
+    private final int rescanStartHeight;
+    private final ProgressListener listener;
+
+    /**
+     * @param clientCaller      the wallet
+     * @param keys              the keys to import
+     * @param rescanStartHeight block height to rescan from - the height before the first transaction
+     *                          of any of the keys (0 if not known). Ignored if there are T keys.
+     * @param listener          notified of the progress in the importing thread
+     */
+    BulkKeyImporter(HushCommandLineBridge clientCaller, List<String> keys, int rescanStartHeight,
+                    ProgressListener listener) {
+        this.clientCaller = clientCaller;
+        this.keys = keys;
+        this.rescanStartHeight = rescanStartHeight;
+        this.listener = listener;
+    }
+
+    /**
+     * Classifies a private key by its form: WIF for T keys (5, K, L on the main network, 9, c on the
+     * test network) and Sprout or Sapling spending keys for Z.
+     *
+     * @param key the key
+     * @return the type of the key
+     */
+    static KeyType classify(String key) {
+        if ((key.length() == 52) && (key.startsWith("SK") || key.startsWith("ST"))) {
+            return KeyType.Z;
+        }
+        if (key.startsWith("secret-extended-key-main1") || key.startsWith("secret-extended-key-test1")) {
+            return KeyType.Z;
+        }
+
+        char first = key.charAt(0);
+        if ((key.length() == 51) && ((first == '5') || (first == '9'))) {
+            return KeyType.T;
+        }
+        if ((key.length() == 52) && ((first == 'K') || (first == 'L') || (first == 'c'))) {
+            return KeyType.T;
+        }
+
+        return KeyType.UNKNOWN;
+    }
+
+    /**
+     * The height the rescan starts at - the given height only if there are Z keys and no T keys, since
+     * the wallet rescans from the genesis block for T keys.
+     *
+     * @param keys                 the keys to import
+     * @param requestedStartHeight the height given by the user
+     * @return the start height of the rescan
+     */
+    static int getRescanStartHeight(List<String> keys, int requestedStartHeight) {
+        boolean hasZKeys = false;
+        for (String key : keys) {
+            KeyType type = classify(key);
+            if (type == KeyType.T) {
+                return 0;
+            }
+            hasZKeys |= (type == KeyType.Z);
+        }
+        return hasZKeys ? requestedStartHeight : 0;
+    }
+
+    /**
+     * Extracts the keys from text - separated by white space, duplicates removed and lines starting
+     * with # ignored.
+     *
+     * @param text the text, e.g. the contents of a file
+     * @return the keys in the order of the text
+     */
+    static List<String> parseKeys(String text) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String line : text.split("\\r?\\n")) {
+            line = line.trim();
+            if (line.startsWith("#")) {
+                continue;
+            }
+            for (String key : line.split("\\s+")) {
+                if (key.length() > 0) {
+                    keys.add(key);
+                }
+            }
+        }
+
+        return new ArrayList<>(keys);
+    }
+
+    // Imports the keys - the key errors are collected, wallet communication errors end the import
+    public Result run()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        Result result = new Result();
+
+        // T keys first, then Z keys - the last key imported triggers the rescan
+        List<String> tKeys = new ArrayList<>();
+        List<String> zKeys = new ArrayList<>();
+        for (String key : this.keys) {
+            switch (classify(key)) {
+                case T:
+                    tKeys.add(key);
+                    break;
+                case Z:
+                    zKeys.add(key);
+                    break;
+                default:
+                    result.errors.add(shorten(key) + ": not a recognized T or Z private key");
+            }
+        }
+
+        List<String> orderedKeys = new ArrayList<>(tKeys);
+        orderedKeys.addAll(zKeys);
+        int total = this.keys.size();
+        int done = result.errors.size();
+        // The Z key rescan is the only one, so it has to cover the history of the T keys too
+        int startHeight = getRescanStartHeight(this.keys, this.rescanStartHeight);
+        String lastImportedZKey = null;
+
+        for (int i = 0; i < orderedKeys.size(); i++) {
+            String key = orderedKeys.get(i);
+            boolean isZKey = (classify(key) == KeyType.Z);
+            boolean rescan = (i == orderedKeys.size() - 1);
+
+            if (rescan) {
+                this.listener.rescanStarted();
+            }
+
+            try {
+                if (isZKey) {
+                    this.clientCaller.importZPrivateKey(key, rescan, startHeight);
+                    lastImportedZKey = key;
+                } else {
+                    this.clientCaller.importTPrivateKey(key, rescan);
+                }
+                result.imported++;
+                // importprivkey returns without rescanning if the wallet has the key already (e.g. when
+                // a partly failed import is run again) - so a rescan by a T key is not certain
+                result.rescanned = rescan && isZKey;
+                result.rescanUncertain = rescan && (!isZKey);
+            } catch (HushCommandLineBridge.WalletCallException wce) {
+                result.errors.add(shorten(key) + ": " + wce.getMessage());
+            }
+
+            this.listener.keyProcessed(++done, total);
+        }
+
+        // The key meant to trigger the rescan has failed - an imported Z key is imported again to rescan.
+        // The wallet ignores a T key that it has already, so with T keys only no rescan is possible.
+        if ((result.imported > 0) && (!result.rescanned) && (lastImportedZKey != null)) {
+            this.listener.rescanStarted();
+            this.clientCaller.importZPrivateKey(lastImportedZKey, true, startHeight);
+            result.rescanned = true;
+        }
+
+        return result;
+    }
+
+    // Keys are secret - they are not shown in full in messages
+    private static String shorten(String key) {
+        return (key.length() > 8) ? (key.substring(0, 6) + "...") : "...";
+    }
+
+
+    /**
+     * Outcome of an import.
+     */
+    static class Result {
+        int imported = 0;
+        // True if the blockchain has been rescanned for the imported keys
+        boolean rescanned = false;
+        // True if the rescan was requested with a T key - the wallet skips it if it had the key already
+        boolean rescanUncertain = false;
+        final List<String> errors = new ArrayList<>();
+    }
+
+
+    /**
+     * Notified in the importing thread.
+     */
+    interface ProgressListener {
+        void keyProcessed(int done, int total);
+
+        // The last import - the one rescanning the blockchain - is starting
+        void rescanStarted();
+    }
+}
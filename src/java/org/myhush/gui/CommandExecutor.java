@@ -5,6 +5,7 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package org.myhush.gui;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -22,6 +23,7 @@ class CommandExecutor {
 
     public Process startChildProcess()
             throws IOException {
+        WalletMetrics.getInstance().processSpawns(this.getProgramName()).increment();
         return Runtime.getRuntime().exec(args);
     }
 
@@ -30,6 +32,12 @@ class CommandExecutor {
             throws IOException, InterruptedException {
         final StringBuffer result = new StringBuffer();
 
+        // hush-cli calls are measured per RPC command
+        String programName = this.getProgramName();
+        String rpcCommand = (programName.equals(OSUtil.getHushCli()) && (args.length > 1)) ? args[1] : null;
+        WalletMetrics.getInstance().processSpawns(programName).increment();
+        long start = System.nanoTime();
+
         Runtime rt = Runtime.getRuntime();
         Process proc = rt.exec(args);
 
@@ -69,6 +77,19 @@ class CommandExecutor {
         inThread.join();
         errThread.join();
 
+        if (rpcCommand != null) {
+            WalletMetrics.getInstance().rpcDuration(rpcCommand).recordNanos(System.nanoTime() - start);
+            // hush-cli exits with an error code if the wallet has answered with an error
+            if (proc.exitValue() != 0) {
+                WalletMetrics.getInstance().rpcErrors(rpcCommand).increment();
+            }
+        }
+
         return result.toString();
     }
+
+    // E.g. hush-cli or ps
+    private String getProgramName() {
+        return new File(args[0]).getName();
+    }
 }
@@ -0,0 +1,171 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes table data to a CSV file (RFC 4180, UTF-8 with a BOM so spreadsheets detect the encoding)
+ * in a background thread. A progress monitor is shown for large exports, which may be cancelled -
+ * the partial file is deleted then.
+ */
+class CsvExporter {
+    // Progress is reported (and cancellation checked) once per this many rows
+    private static final int PROGRESS_STEP = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LINE_END = "\r\n";
+
+    private final Component parent;
+    private final File file;
+    private final Object[] columnNames;
+    // Not modified by the tables once shown - the rows are replaced as a whole
+    private final Object[][] rows;
+    private final int columnCount;
+
+    private final ProgressMonitor progressMonitor;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param parent      parent of the dialogs
+     * @param file        the file to write
+     * @param columnNames the column names - only these columns of the rows are exported
+     * @param rows        all rows to export
+     */
+    CsvExporter(Component parent, File file, Object[] columnNames, Object[][] rows) {
+        this.parent = parent;
+        this.file = file;
+        this.columnNames = columnNames;
+        this.rows = rows;
+        this.columnCount = columnNames.length;
+
+        this.progressMonitor = new ProgressMonitor(
+                parent, "Exporting data to " + file.getName() + "...", null, 0, rows.length);
+        this.progressMonitor.setMillisToDecideToPopup(300);
+    }
+
+    // Starts the export - called on the EDT
+    public void start() {
+        new Thread(this::export, "CSV export").start();
+    }
+
+    private void export() {
+        long start = System.currentTimeMillis();
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(this.file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                writer.write('\uFEFF');
+                writeRow(writer, this.columnNames, this.columnCount);
+
+                for (int row = 0; row < this.rows.length; row++) {
+                    writeRow(writer, this.rows[row], this.columnCount);
+
+                    if ((row % PROGRESS_STEP) == 0) {
+                        this.reportProgress(row);
+                        if (this.cancelled) {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (this.cancelled) {
+                System.out.println("CSV export cancelled - deleting " + this.file.getAbsolutePath());
+                if (!this.file.delete()) {
+                    System.out.println("Could not delete partial export: " + this.file.getAbsolutePath());
+                }
+                SwingUtilities.invokeLater(this.progressMonitor::close);
+                return;
+            }
+
+            System.out.println("Exported " + this.rows.length + " rows to CSV in " +
+                                       (System.currentTimeMillis() - start) + "ms.");
+            final String path = this.file.getCanonicalPath();
+            SwingUtilities.invokeLater(() -> {
+                CsvExporter.this.progressMonitor.close();
+                JOptionPane.showMessageDialog(
+                        CsvExporter.this.parent,
+                        "The data has been exported successfully as CSV to location:\n" + path,
+                        "Export successful...", JOptionPane.INFORMATION_MESSAGE);
+            });
+        } catch (final IOException ioe) {
+            ioe.printStackTrace();
+            SwingUtilities.invokeLater(() -> {
+                CsvExporter.this.progressMonitor.close();
+                JOptionPane.showMessageDialog(
+                        CsvExporter.this.parent,
+                        "An unexpected error occurred when exporting data to CSV file.\n" +
+                                "\n" +
+                                ioe.getMessage(),
+                        "Error in CSV export", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
+    // The progress monitor may only be used on the EDT - it tells back if the user has cancelled
+    private void reportProgress(final int row) {
+        SwingUtilities.invokeLater(() -> {
+            if (CsvExporter.this.progressMonitor.isCanceled()) {
+                CsvExporter.this.cancelled = true;
+            } else {
+                CsvExporter.this.progressMonitor.setProgress(row);
+            }
+        });
+    }
+
+    private static void writeRow(Writer writer, Object[] values, int columnCount)
+            throws IOException {
+        for (int col = 0; col < columnCount; col++) {
+            if (col > 0) {
+                writer.write(',');
+            }
+            Object value = values[col];
+            if (value != null) {
+                writeField(writer, value.toString());
+            }
+        }
+        writer.write(LINE_END);
+    }
+
+    /**
+     * Writes one field - quoted (with quotes doubled) if it contains a comma, quote or line break.
+     *
+     * @param writer the output
+     * @param value  the field value
+     */
+    static void writeField(Writer writer, String value)
+            throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c == ',') || (c == '"') || (c == '\r') || (c == '\n')) {
+                needsQuotes = true;
+                break;
+            }
+        }
+
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
@@ -9,6 +9,10 @@ import org.myhush.gui.HushDaemonObserver.DAEMON_STATUS;
 import org.myhush.gui.HushDaemonObserver.DaemonInfo;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.io.File;
@@ -17,8 +21,13 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class DashboardPanel extends WalletTabPanel {
+    // Index of the hidden raw transaction time in the transaction rows
+    private static final int RAW_TIME_INDEX = TransactionSearchIndex.KEY_INDEX + 1;
+
     private final JFrame parentFrame;
     private final HushDaemonObserver installationObserver;
     private final HushCommandLineBridge clientCaller;
@@ -37,10 +46,20 @@ class DashboardPanel extends WalletTabPanel {
     private JLabel walletBalanceLabel;
     private DataGatheringThread<HushCommandLineBridge.WalletBalance> walletBalanceGatheringThread;
 
-    private JScrollPane transactionsTablePane;
+    private JPanel transactionsPanel;
+    private DataTable transactionsTable;
     private String[][] lastTransactionsData;
     private DataGatheringThread<String[][]> transactionGatheringThread;
 
+    private final TransactionSearchIndex searchIndex;
+    private JTextField filterField;
+    private JLabel filterStatusLabel;
+    private Timer filterTimer;
+    // Keys of the rows matching the filter - null if there is no filter
+    private Set<String> filterKeys = null;
+    // Incremented for each filter evaluation - results of outdated ones are dropped
+    private final AtomicInteger filterGeneration = new AtomicInteger();
+
     DashboardPanel(JFrame parentFrame,
                    HushDaemonObserver installationObserver,
                    HushCommandLineBridge clientCaller,
@@ -50,6 +69,7 @@ class DashboardPanel extends WalletTabPanel {
         this.installationObserver = installationObserver;
         this.clientCaller = clientCaller;
         this.errorReporter = errorReporter;
+        this.searchIndex = new TransactionSearchIndex(clientCaller.getMemoStore());
 
         this.timers = new ArrayList<>();
         this.threads = new ArrayList<>();
@@ -87,9 +107,40 @@ class DashboardPanel extends WalletTabPanel {
 
         dashboard.add(balanceStatusPanel, BorderLayout.NORTH);
 
-        // Table of transactions
-        lastTransactionsData = getTransactionsDataFromWallet();
-        dashboard.add(transactionsTablePane = new JScrollPane(this.createTransactionsTable(lastTransactionsData)), BorderLayout.CENTER);
+        // Table of transactions with a filter box above it
+        transactionsPanel = new JPanel(new BorderLayout(0, 3));
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 3, 0));
+        tempPanel.add(new JLabel("Search:"));
+        tempPanel.add(filterField = new JTextField(40));
+        filterField.setToolTipText(
+                "<html>Text in the transaction ID, address or memo. Also:<br/>" +
+                        "min:AMOUNT max:AMOUNT from:yyyy-MM-dd to:yyyy-MM-dd</html>");
+        tempPanel.add(filterStatusLabel = new JLabel(" "));
+        transactionsPanel.add(tempPanel, BorderLayout.NORTH);
+
+        // The rows are loaded by loadTransactions() - the panel does not wait for the wallet
+        transactionsPanel.add(new JScrollPane(this.createTransactionsTable(new String[0][])), BorderLayout.CENTER);
+        dashboard.add(transactionsPanel, BorderLayout.CENTER);
+
+        // The filter is evaluated shortly after the user stops typing
+        filterTimer = new Timer(300, e -> DashboardPanel.this.startFilterEvaluation());
+        filterTimer.setRepeats(false);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+        });
 
         // Lower panel with installation status
         JPanel installationStatusPanel = new JPanel();
@@ -107,14 +158,8 @@ class DashboardPanel extends WalletTabPanel {
 
         // Thread and timer to update the daemon status
         this.daemonInfoGatheringThread = new DataGatheringThread<>(
-                () -> {
-                    long start = System.currentTimeMillis();
-                    DaemonInfo daemonInfo = DashboardPanel.this.installationObserver.getDaemonInfo();
-                    long end = System.currentTimeMillis();
-                    System.out.println("Gathering of dashboard daemon status data done in " + (end - start) + "ms.");
-
-                    return daemonInfo;
-                },
+                "dashboard daemon status",
+                () -> DashboardPanel.this.installationObserver.getDaemonInfo(),
                 this.errorReporter, 2000, true
         );
         this.threads.add(this.daemonInfoGatheringThread);
@@ -127,29 +172,25 @@ class DashboardPanel extends WalletTabPanel {
                 DashboardPanel.this.errorReporter.reportError(ex);
             }
         };
-        Timer timer = new Timer(1000, alDeamonStatus);
+        Timer timer = new Timer(1000, WalletMetrics.getInstance().timedEdtUpdate("daemon status", alDeamonStatus));
         timer.start();
         this.timers.add(timer);
 
         // Thread and timer to update the wallet balance
         this.walletBalanceGatheringThread = new DataGatheringThread<>(
+                "dashboard wallet balance",
                 () -> {
-                    long start = System.currentTimeMillis();
                     HushCommandLineBridge.WalletBalance balance = DashboardPanel.this.clientCaller.getWalletInfo();
-                    long end = System.currentTimeMillis();
-
-                    // TODO: move this call to a dedicated one-off gathering thread - this is the wrong place
-                    // it works but a better design is needed.
-                    if (DashboardPanel.this.walletIsEncrypted == null) {
-                        DashboardPanel.this.walletIsEncrypted = DashboardPanel.this.clientCaller.isWalletEncrypted();
-                    }
 
-                    System.out.println("Gathering of dashboard wallet balance data done in " + (end - start) + "ms.");
+                    // Cached by the bridge - the wallet is asked only once per daemon start
+                    DashboardPanel.this.walletIsEncrypted = DashboardPanel.this.clientCaller.isWalletEncrypted();
 
                     return balance;
                 },
                 this.errorReporter, 8000, true
         );
+        // The wallet is not asked while an import rescans the blockchain - the last data stays shown
+        this.walletBalanceGatheringThread.setSkipCondition(this.clientCaller::isWalletImportRunning);
         this.threads.add(this.walletBalanceGatheringThread);
 
         ActionListener alWalletBalance = e -> {
@@ -160,23 +201,18 @@ class DashboardPanel extends WalletTabPanel {
                 DashboardPanel.this.errorReporter.reportError(ex);
             }
         };
-        Timer walletBalanceTimer = new Timer(2000, alWalletBalance);
+        Timer walletBalanceTimer = new Timer(2000, WalletMetrics.getInstance().timedEdtUpdate("wallet balance", alWalletBalance));
         walletBalanceTimer.setInitialDelay(1000);
         walletBalanceTimer.start();
         this.timers.add(walletBalanceTimer);
 
         // Thread and timer to update the transactions table
         this.transactionGatheringThread = new DataGatheringThread<>(
-                () -> {
-                    long start = System.currentTimeMillis();
-                    String[][] data = DashboardPanel.this.getTransactionsDataFromWallet();
-                    long end = System.currentTimeMillis();
-                    System.out.println("Gathering of dashboard wallet transactions table data done in " + (end - start) + "ms.");
-
-                    return data;
-                },
+                "dashboard wallet transactions table",
+                () -> DashboardPanel.this.getTransactionsDataFromWallet(),
                 this.errorReporter, 25000
         );
+        this.transactionGatheringThread.setSkipCondition(this.clientCaller::isWalletImportRunning);
         this.threads.add(this.transactionGatheringThread);
 
         ActionListener alTransactions = e -> {
@@ -187,22 +223,17 @@ class DashboardPanel extends WalletTabPanel {
                 DashboardPanel.this.errorReporter.reportError(ex);
             }
         };
-        timer = new Timer(5000, alTransactions);
+        timer = new Timer(5000, WalletMetrics.getInstance().timedEdtUpdate("transactions table", alTransactions));
         timer.start();
         this.timers.add(timer);
 
         // Thread and timer to update the network and blockchain details
         this.netInfoGatheringThread = new DataGatheringThread<>(
-                () -> {
-                    long start = System.currentTimeMillis();
-                    HushCommandLineBridge.NetworkAndBlockchainInfo data = DashboardPanel.this.clientCaller.getNetworkAndBlockchainInfo();
-                    long end = System.currentTimeMillis();
-                    System.out.println("Gathering of network and blockchain info data done in " + (end - start) + "ms.");
-
-                    return data;
-                },
+                "network and blockchain info",
+                () -> DashboardPanel.this.clientCaller.getNetworkAndBlockchainInfo(),
                 this.errorReporter, 10000, true
         );
+        this.netInfoGatheringThread.setSkipCondition(this.clientCaller::isWalletImportRunning);
         this.threads.add(this.netInfoGatheringThread);
 
         ActionListener alNetAndBlockchain = e -> {
@@ -213,7 +244,7 @@ class DashboardPanel extends WalletTabPanel {
                 DashboardPanel.this.errorReporter.reportError(ex);
             }
         };
-        Timer netAndBlockchainTimer = new Timer(5000, alNetAndBlockchain);
+        Timer netAndBlockchainTimer = new Timer(5000, WalletMetrics.getInstance().timedEdtUpdate("network and blockchain", alNetAndBlockchain));
         netAndBlockchainTimer.setInitialDelay(1000);
         netAndBlockchainTimer.start();
         this.timers.add(netAndBlockchainTimer);
@@ -375,16 +406,13 @@ class DashboardPanel extends WalletTabPanel {
             return;
         }
 
-        // Format double numbers - else sometimes we get exponential notation 1E-4 ZEC
-        DecimalFormat df = new DecimalFormat("########0.00######");
+        String transparentBalance = balance.transparentBalance.toDisplayString();
+        String privateBalance = balance.privateBalance.toDisplayString();
+        String totalBalance = balance.totalBalance.toDisplayString();
 
-        String transparentBalance = df.format(balance.transparentBalance);
-        String privateBalance = df.format(balance.privateBalance);
-        String totalBalance = df.format(balance.totalBalance);
-
-        String transparentUCBalance = df.format(balance.transparentUnconfirmedBalance);
-        String privateUCBalance = df.format(balance.privateUnconfirmedBalance);
-        String totalUCBalance = df.format(balance.totalUnconfirmedBalance);
+        String transparentUCBalance = balance.transparentUnconfirmedBalance.toDisplayString();
+        String privateUCBalance = balance.privateUnconfirmedBalance.toDisplayString();
+        String totalUCBalance = balance.totalUnconfirmedBalance.toDisplayString();
 
         String color1 = transparentBalance.equals(transparentUCBalance) ? "" : "color:#cc3300;";
         String color2 = privateBalance.equals(privateUCBalance) ? "" : "color:#cc3300;";
@@ -420,6 +448,28 @@ class DashboardPanel extends WalletTabPanel {
     }
 
 
+    /**
+     * Loads the transactions into the table the first time - to be called in a background thread.
+     * Until then the table is empty, so the window may be built while the wallet is being queried.
+     */
+    public void loadTransactions()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        final String[][] data = this.getTransactionsDataFromWallet();
+        System.out.println("Initial loading of wallet transactions done in " + (System.currentTimeMillis() - start) + "ms.");
+
+        SwingUtilities.invokeLater(() -> {
+            // The gathering thread may have been faster
+            if (DashboardPanel.this.lastTransactionsData == null) {
+                DashboardPanel.this.transactionsTable.setRows(data);
+                DashboardPanel.this.lastTransactionsData = data;
+                if (DashboardPanel.this.filterKeys != null) {
+                    DashboardPanel.this.startFilterEvaluation();
+                }
+            }
+        });
+    }
+
     private void updateWalletTransactionsTable() {
         String[][] newTransactionsData = this.transactionGatheringThread.getLastData();
 
@@ -430,8 +480,13 @@ class DashboardPanel extends WalletTabPanel {
 
         if (!Arrays.deepEquals(lastTransactionsData, newTransactionsData)) {
             System.out.println("Updating table of transactions...");
-            this.remove(transactionsTablePane);
-            this.add(transactionsTablePane = new JScrollPane(this.createTransactionsTable(newTransactionsData)), BorderLayout.CENTER);
+            // The rows are swapped in the existing table - sorted first if the user has chosen an order
+            this.transactionsTable.setRows(newTransactionsData);
+
+            // New transactions may match the filter too
+            if (this.filterKeys != null) {
+                this.startFilterEvaluation();
+            }
         }
 
         lastTransactionsData = newTransactionsData;
@@ -443,8 +498,10 @@ class DashboardPanel extends WalletTabPanel {
 
     private JTable createTransactionsTable(String rowData[][]) {
         String columnNames[] = { "Type", "Direction", "Confirmed?", "Amount", "Date", "Destination Address" };
-        JTable table = new TransactionTable(
+        DataTable table = new TransactionTable(
                 rowData, columnNames, this.parentFrame, this.clientCaller);
+        table.setNumericSortKey(3, DashboardPanel::amountSortKey);
+        table.setNumericSortKey(4, DashboardPanel::timeSortKey);
         table.setAutoResizeMode(JTable.AUTO_RESIZE_SUBSEQUENT_COLUMNS);
         table.getColumnModel().getColumn(0).setPreferredWidth(190);
         table.getColumnModel().getColumn(1).setPreferredWidth(145);
@@ -453,10 +510,80 @@ class DashboardPanel extends WalletTabPanel {
         table.getColumnModel().getColumn(4).setPreferredWidth(405);
         table.getColumnModel().getColumn(5).setPreferredWidth(800);
 
+        // The row sorter is used only for filtering - sorting is done by the table in the background
+        TableRowSorter<TableModel> sorter = new TableRowSorter<>(table.getModel());
+        for (int i = 0; i < columnNames.length; i++) {
+            sorter.setSortable(i, false);
+        }
+        table.setRowSorter(sorter);
+        this.transactionsTable = table;
+        this.applyFilter();
+
         return table;
     }
 
 
+    // Evaluates the filter in a background thread - called on the EDT
+    private void startFilterEvaluation() {
+        final String query = this.filterField.getText();
+        final int generation = this.filterGeneration.incrementAndGet();
+
+        if (query.trim().length() <= 0) {
+            this.filterKeys = null;
+            this.filterStatusLabel.setText(" ");
+            this.applyFilter();
+            return;
+        }
+
+        new Thread(() -> {
+            Set<String> keys = null;
+            String status;
+            long start = System.currentTimeMillis();
+            try {
+                keys = DashboardPanel.this.searchIndex.search(query);
+                status = keys.size() + " matching";
+            } catch (IllegalArgumentException iae) {
+                status = "<html><span style=\"color:red\">" + iae.getMessage() + "</span></html>";
+            }
+            System.out.println("Transaction filter evaluated in " + (System.currentTimeMillis() - start) + "ms.");
+
+            final Set<String> resultKeys = keys;
+            final String resultStatus = status;
+            SwingUtilities.invokeLater(() -> {
+                // A newer evaluation has been started meanwhile
+                if (generation != DashboardPanel.this.filterGeneration.get()) {
+                    return;
+                }
+
+                if (resultKeys != null) {
+                    DashboardPanel.this.filterKeys = resultKeys;
+                    DashboardPanel.this.applyFilter();
+                }
+                DashboardPanel.this.filterStatusLabel.setText(resultStatus);
+            });
+        }).start();
+    }
+
+
+    // Shows only the rows matching the last evaluated filter - a set lookup per row
+    @SuppressWarnings("unchecked")
+    private void applyFilter() {
+        final Set<String> keys = this.filterKeys;
+        TableRowSorter<TableModel> sorter = (TableRowSorter<TableModel>) this.transactionsTable.getRowSorter();
+        if (keys == null) {
+            sorter.setRowFilter(null);
+        } else {
+            sorter.setRowFilter(new RowFilter<TableModel, Integer>() {
+                @Override
+                public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+                    return keys.contains(
+                            entry.getModel().getValueAt(entry.getIdentifier(), TransactionSearchIndex.KEY_INDEX));
+                }
+            });
+        }
+    }
+
+
     private String[][] getTransactionsDataFromWallet()
             throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
         // Get available public+private transactions and unify them.
@@ -467,32 +594,20 @@ class DashboardPanel extends WalletTabPanel {
 
         int i = 0;
 
+        // More (hidden) columns for the row key used by the search index and the raw time for sorting
         for (String[] t : publicTransactions) {
-            allTransactions[i++] = t;
+            allTransactions[i++] = this.withHiddenColumns(t);
         }
 
         for (String[] t : zReceivedTransactions) {
-            allTransactions[i++] = t;
+            allTransactions[i++] = this.withHiddenColumns(t);
         }
 
-        // Sort transactions by date
-        Arrays.sort(allTransactions, (o1, o2) -> {
-            Date d1 = new Date(0);
-            if (!o1[4].equals("N/A")) {
-                d1 = new Date(Long.valueOf(o1[4]) * 1000L);
-            }
-
-            Date d2 = new Date(0);
-            if (!o2[4].equals("N/A")) {
-                d2 = new Date(Long.valueOf(o2[4]) * 1000L);
-            }
+        // Index the new transactions while the amounts and times are still raw
+        this.searchIndex.update(allTransactions);
 
-            if (d1.equals(d2)) {
-                return 0;
-            } else {
-                return d2.compareTo(d1);
-            }
-        });
+        // Sort transactions by date - newest first
+        BackgroundTableSorter.sortRows(allTransactions, DashboardPanel::timeSortKey, false);
 
 
         // Confirmation symbols
@@ -507,8 +622,6 @@ class DashboardPanel extends WalletTabPanel {
             notConfirmed = " \u25B6";
         }
 
-        DecimalFormat df = new DecimalFormat("########0.00######");
-
         // Change the direction and date etc. attributes for presentation purposes
         for (String[] trans : allTransactions) {
             // Direction
@@ -534,11 +647,7 @@ class DashboardPanel extends WalletTabPanel {
 
             // Amount
             try {
-                double amount = Double.valueOf(trans[3]);
-                if (amount < 0d) {
-                    amount = -amount;
-                }
-                trans[3] = df.format(amount);
+                trans[3] = HushAmount.parse(trans[3]).abs().toDisplayString();
             } catch (final NumberFormatException e) {
                 System.out.println("Error occurred while formatting amount: " + trans[3] +
                                            " - " + e.getMessage() + "!");
@@ -558,4 +667,32 @@ class DashboardPanel extends WalletTabPanel {
         return allTransactions;
     }
 
+
+    private String[] withHiddenColumns(String[] transaction) {
+        String[] row = Arrays.copyOf(transaction, RAW_TIME_INDEX + 1);
+        row[TransactionSearchIndex.KEY_INDEX] = TransactionSearchIndex.rowKey(transaction);
+        row[RAW_TIME_INDEX] = transaction[4];
+        return row;
+    }
+
+
+    // Seconds since the epoch - 0 if unknown
+    private static long timeSortKey(Object[] row) {
+        String time = row[RAW_TIME_INDEX].toString();
+        try {
+            return time.equals("N/A") ? 0 : Long.parseLong(time.trim());
+        } catch (NumberFormatException nfe) {
+            return 0;
+        }
+    }
+
+
+    // The shown (absolute) amount in zatoshis - unparseable amounts come first
+    private static long amountSortKey(Object[] row) {
+        try {
+            return HushAmount.parseZatoshis(row[3].toString());
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
 }
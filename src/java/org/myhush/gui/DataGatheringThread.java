@@ -5,6 +5,8 @@
 // file LICENSE or http://www.opensource.org/licenses/mit-license.php.
 package org.myhush.gui;
 
+import java.util.function.BooleanSupplier;
+
 /**
  * This thread may be used to periodically and asynchronously load data if the load operation
  * takes considerable time. The creator of the thread may obtain the latest gathered data
@@ -25,27 +27,38 @@ class DataGatheringThread<T> extends Thread {
     private final StatusUpdateErrorReporter errorReporter;
     // Flag allowing the thread to be suspended
     private boolean suspended;
+    // While true the gathering is skipped and the last data is kept - may be null
+    private volatile BooleanSupplier skipCondition;
+    // True while gatherings are being skipped - only accessed by the thread itself
+    private boolean skipping = false;
+    // Duration of the gatherings
+    private final LatencyHistogram gatheringDuration;
+
     /**
      * Creates a new thread for data gathering.
      *
+     * @param name          Name of the thread and the data - used for logging and metrics
      * @param gatherer      Gatherer used for the data
      * @param errorReporter Error reporter - may be null
      * @param interval      Interval in ms for gathering
      */
-    public DataGatheringThread(DataGatherer<T> gatherer, StatusUpdateErrorReporter errorReporter, int interval) {
-        this(gatherer, errorReporter, interval, false);
+    public DataGatheringThread(String name, DataGatherer<T> gatherer, StatusUpdateErrorReporter errorReporter, int interval) {
+        this(name, gatherer, errorReporter, interval, false);
     }
 
     /**
      * Creates a new thread for data gathering.
      *
+     * @param name          Name of the thread and the data - used for logging and metrics
      * @param gatherer      Gatherer used for the data
      * @param errorReporter Error reporter - may be null
      * @param interval      Interval in ms for gathering
      */
-    DataGatheringThread(DataGatherer<T> gatherer, StatusUpdateErrorReporter errorReporter,
+    DataGatheringThread(String name, DataGatherer<T> gatherer, StatusUpdateErrorReporter errorReporter,
                         int interval, boolean doAFirstGathering
                        ) {
+        super(name);
+        this.gatheringDuration = WalletMetrics.getInstance().gathererDuration(name);
         this.suspended = false;
         this.gatherer = gatherer;
         this.errorReporter = errorReporter;
@@ -67,6 +80,16 @@ class DataGatheringThread<T> extends Thread {
         this.suspended = suspended;
     }
 
+    /**
+     * Sets a condition under which the gathering is skipped - e.g. while the wallet is busy. The last
+     * gathered data stays available meanwhile.
+     *
+     * @param skipCondition checked before each gathering - null to always gather
+     */
+    public void setSkipCondition(BooleanSupplier skipCondition) {
+        this.skipCondition = skipCondition;
+    }
+
     /**
      * Obtains the last gathered data
      *
@@ -110,11 +133,28 @@ class DataGatheringThread<T> extends Thread {
 
     // Obtains the data in a single run
     private void doOneGathering() {
+        BooleanSupplier skip = this.skipCondition;
+        boolean skipNow = (skip != null) && skip.getAsBoolean();
+        // Logged only when the skipping starts and stops - it may go on for many minutes
+        if (skipNow != this.skipping) {
+            this.skipping = skipNow;
+            System.out.println("DataGatheringThread: " + (skipNow ? "skipping" : "resuming") + " gathering of " +
+                                       this.getName() + " data" + (skipNow ? ", keeping the last data." : "."));
+        }
+        if (skipNow) {
+            return;
+        }
+
         // The gathering itself is not synchronized
         T localData = null;
 
+        long start = System.nanoTime();
         try {
             localData = this.gatherer.gatherData();
+
+            long duration = System.nanoTime() - start;
+            this.gatheringDuration.recordNanos(duration);
+            System.out.println("Gathering of " + this.getName() + " data done in " + (duration / 1000000) + "ms.");
         } catch (Exception e) {
             if (!this.suspended) {
                 e.printStackTrace();
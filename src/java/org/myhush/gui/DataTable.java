@@ -7,16 +7,16 @@ package org.myhush.gui;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.util.function.ToLongFunction;
 
 /**
- * Table to be used for transactions, addresses, etc.
+ * Table to be used for transactions, addresses, etc. Clicking a column header sorts the rows - in
+ * the background, see {@link BackgroundTableSorter}.
  */
 class DataTable extends JTable {
     int lastRow = -1;
@@ -24,8 +24,11 @@ class DataTable extends JTable {
 
     final JPopupMenu popupMenu;
 
+    private final BackgroundTableSorter sorter;
+
     DataTable(final Object[][] rowData, final Object[] columnNames) {
-        super(rowData, columnNames);
+        super(new DataTableModel(rowData, columnNames));
+        this.sorter = new BackgroundTableSorter(this);
 
         popupMenu = new JPopupMenu();
         int accelaratorKeyMask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
@@ -105,11 +108,23 @@ class DataTable extends JTable {
     }
 
 
-    // Exports the table data to a CSV file
-    private void exportToCSV()
-            throws IOException {
-        final String ENCODING = "UTF-8";
+    DataTableModel getDataModel() {
+        return (DataTableModel) this.getModel();
+    }
+
+    // Replaces the rows (kept in the current sort order) without recreating the table - called on the EDT
+    void setRows(Object[][] rowData) {
+        this.sorter.setRows(rowData);
+    }
+
+    // The column is sorted by the number the function returns for a row instead of by its text
+    void setNumericSortKey(int column, ToLongFunction<Object[]> key) {
+        this.sorter.setNumericKey(column, key);
+    }
+
 
+    // Exports all rows of the table (also the filtered out ones) to a CSV file in the background
+    private void exportToCSV() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Export data to CSV file...");
         fileChooser.setFileFilter(new FileNameExtensionFilter("CSV Files (*.csv)", "csv"));
@@ -120,44 +135,68 @@ class DataTable extends JTable {
             return;
         }
 
-        File f = fileChooser.getSelectedFile();
+        DataTableModel model = this.getDataModel();
+        Object[] columnNames = new Object[model.getColumnCount()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = model.getColumnName(i);
+        }
+
+        new CsvExporter(this.getRootPane().getParent(), fileChooser.getSelectedFile(), columnNames, model.getRows())
+                .start();
+    }
 
-        FileOutputStream fos = new FileOutputStream(f);
-        fos.write(new byte[]{ (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
 
-        // Write header
-        StringBuilder header = new StringBuilder();
-        for (int i = 0; i < this.getColumnCount(); i++) {
-            String columnName = this.getColumnName(i);
-            header.append(columnName);
+    /**
+     * Model over an array of rows. The rows may have more values than there are columns - the extra
+     * ones are not shown. The whole array is replaced at once when the data changes.
+     */
+    static class DataTableModel extends AbstractTableModel {
+        private final Object[] columnNames;
+        private Object[][] rows;
 
-            if (i < (this.getColumnCount() - 1)) {
-                header.append(",");
-            }
+        DataTableModel(Object[][] rows, Object[] columnNames) {
+            this.rows = rows;
+            this.columnNames = columnNames;
+        }
+
+        Object[][] getRows() {
+            return this.rows;
         }
-        header.append("\n");
-        fos.write(header.toString().getBytes(ENCODING));
 
-        // Write rows
-        for (int row = 0; row < this.getRowCount(); row++) {
-            StringBuilder rowBuf = new StringBuilder();
-            for (int col = 0; col < this.getColumnCount(); col++) {
-                rowBuf.append(this.getValueAt(row, col).toString());
+        void setRows(Object[][] rows) {
+            this.rows = rows;
+            this.fireTableDataChanged();
+        }
 
-                if (col < (this.getColumnCount() - 1)) {
-                    rowBuf.append(",");
-                }
-            }
-            rowBuf.append("\n");
-            fos.write(rowBuf.toString().getBytes(ENCODING));
+        @Override
+        public String getColumnName(int column) {
+            return this.columnNames[column].toString();
+        }
+
+        @Override
+        public int getRowCount() {
+            return this.rows.length;
         }
 
-        fos.close();
+        @Override
+        public int getColumnCount() {
+            return this.columnNames.length;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return this.rows[row][column];
+        }
 
-        JOptionPane.showMessageDialog(
-                this.getRootPane().getParent(),
-                "The data has been exported successfully as CSV to location:\n" +
-                        f.getCanonicalPath(),
-                "Export successful...", JOptionPane.INFORMATION_MESSAGE);
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return true;
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            this.rows[row][column] = value;
+            this.fireTableCellUpdated(row, column);
+        }
     }
 }
@@ -0,0 +1,158 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import javax.swing.border.EtchedBorder;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Shows the wallet metrics - latencies of the hush-cli calls, data gatherings and GUI updates, cache
+ * hit rates, counters and the durations of the startup stages. Refreshed every 2 seconds while open.
+ */
+class DiagnosticsDialog extends JDialog {
+    private static final int REFRESH_INTERVAL = 2000;
+
+    private final WalletMetrics metrics;
+    private final RowsModel latencyModel = new RowsModel(
+            "Metric", "Calls", "Calls/min", "p50 ms", "p99 ms", "Max ms");
+    private final RowsModel cacheModel = new RowsModel("Cache", "Hits", "Misses", "Hit rate");
+    private final RowsModel valueModel = new RowsModel("Metric", "Value");
+
+    DiagnosticsDialog(JFrame parent, WalletMetrics metrics) {
+        super(parent, "Diagnostics", false);
+        this.metrics = metrics;
+        this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Latencies", this.createTablePanel(this.latencyModel, 360));
+        tabs.addTab("Caches", this.createTablePanel(this.cacheModel, 200));
+        tabs.addTab("Counters and gauges", this.createTablePanel(this.valueModel, 420));
+        this.getContentPane().setLayout(new BorderLayout(0, 0));
+        this.getContentPane().add(tabs, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setLayout(new FlowLayout(FlowLayout.CENTER, 3, 3));
+        buttonPanel.setBorder(BorderFactory.createEtchedBorder(EtchedBorder.LOWERED));
+        JLabel noteLabel = new JLabel(
+                "Percentiles are accurate to about 6%. Startup stages are in startup_stage_millis.");
+        noteLabel.setFont(new Font("Helvetica", Font.PLAIN, 10));
+        buttonPanel.add(noteLabel);
+        JButton closeButton = new JButton("Close");
+        buttonPanel.add(closeButton);
+        this.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+        closeButton.addActionListener(e -> DiagnosticsDialog.this.dispose());
+
+        this.refresh();
+        final Timer timer = new Timer(REFRESH_INTERVAL, e -> DiagnosticsDialog.this.refresh());
+        timer.start();
+        this.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+            }
+        });
+
+        this.setSize(860, 460);
+        this.setLocationRelativeTo(parent);
+    }
+
+    private JComponent createTablePanel(RowsModel model, int firstColumnWidth) {
+        JTable table = new JTable(model);
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+        table.getColumnModel().getColumn(0).setPreferredWidth(firstColumnWidth);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+        return scrollPane;
+    }
+
+    private void refresh() {
+        List<Object[]> latencyRows = new ArrayList<>();
+        for (Map.Entry<WalletMetrics.MetricName, LatencyHistogram> entry : this.metrics.histograms().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            latencyRows.add(new Object[] {
+                    entry.getKey().toString(),
+                    snapshot.count,
+                    snapshot.lastMinuteCount,
+                    toMillis(snapshot.getPercentile(50.0)),
+                    toMillis(snapshot.getPercentile(99.0)),
+                    toMillis(snapshot.max)
+            });
+        }
+        this.latencyModel.setRows(latencyRows);
+
+        List<Object[]> cacheRows = new ArrayList<>();
+        List<Object[]> valueRows = new ArrayList<>();
+        for (Map.Entry<WalletMetrics.MetricName, WalletMetrics.Counter> entry : this.metrics.counters().entrySet()) {
+            WalletMetrics.MetricName name = entry.getKey();
+            if (name.family.equals(WalletMetrics.CACHE_HITS)) {
+                long hits = entry.getValue().get();
+                long misses = this.metrics.counter(WalletMetrics.CACHE_MISSES, name.labelName, name.labelValue).get();
+                cacheRows.add(new Object[] {
+                        name.labelValue, hits, misses,
+                        String.format("%.1f%%", this.metrics.getCacheHitRate(name.labelValue) * 100.0)
+                });
+            } else if (!name.family.equals(WalletMetrics.CACHE_MISSES)) {
+                valueRows.add(new Object[]{ name.toString(), entry.getValue().get() });
+            }
+        }
+        for (Map.Entry<WalletMetrics.MetricName, DoubleSupplier> entry : this.metrics.gauges().entrySet()) {
+            double value = entry.getValue().getAsDouble();
+            valueRows.add(new Object[]{
+                    entry.getKey().toString(),
+                    (value == Math.rint(value)) ? String.valueOf((long) value) : String.format("%.2f", value)
+            });
+        }
+        this.cacheModel.setRows(cacheRows);
+        this.valueModel.setRows(valueRows);
+    }
+
+    private static String toMillis(long micros) {
+        return String.format("%.1f", micros / 1000.0);
+    }
+
+
+    // Read-only rows replaced on each refresh
+    private static class RowsModel extends AbstractTableModel {
+        private final String[] columnNames;
+        private List<Object[]> rows = new ArrayList<>();
+
+        RowsModel(String... columnNames) {
+            this.columnNames = columnNames;
+        }
+
+        void setRows(List<Object[]> rows) {
+            this.rows = rows;
+            this.fireTableDataChanged();
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return this.columnNames[column];
+        }
+
+        @Override
+        public int getRowCount() {
+            return this.rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return this.columnNames.length;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return this.rows.get(row)[column];
+        }
+    }
+}
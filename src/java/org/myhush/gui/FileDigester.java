@@ -0,0 +1,114 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Computes the SHA-256 digest of a big file with large reads through a {@link FileChannel}. The file
+ * may still be growing (being downloaded) - only the part that is available is read and the digester
+ * waits for more, so the hashing goes on at the same time as the download.
+ * <p>
+ * {@link #digest()} blocks - it is to be called in a background thread.
+ */
+class FileDigester {
+    // Hashing is bound by the CPU - bigger or direct buffers and mapping the file do not make it faster
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+    // How long to wait for more data when all that is available has been hashed
+    private static final long WAIT_INTERVAL = 100;
+
+    private final File file;
+    private final long size;
+    private LongSupplier availableLength;
+    private LongConsumer progressListener;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param file the file
+     * @param size the final size of the file
+     */
+    FileDigester(File file, long size) {
+        this.file = file;
+        this.size = size;
+        this.availableLength = () -> size;
+    }
+
+    // Tells how much of the file may be read already - by default all of it
+    public void setAvailableLength(LongSupplier availableLength) {
+        this.availableLength = availableLength;
+    }
+
+    // Notified of the number of bytes hashed - in the hashing thread
+    public void setProgressListener(LongConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Hashes the file.
+     *
+     * @return the SHA-256 digest
+     * @throws InterruptedIOException if cancelled
+     */
+    public byte[] digest()
+            throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException impossible) {
+            throw new RuntimeException(impossible);
+        }
+
+        long start = System.currentTimeMillis();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < this.size) {
+                if (this.cancelled) {
+                    throw new InterruptedIOException("Hashing of " + this.file.getName() + " cancelled");
+                }
+
+                long available = Math.min(this.availableLength.getAsLong(), this.size);
+                if (available <= position) {
+                    try {
+                        Thread.sleep(WAIT_INTERVAL);
+                    } catch (InterruptedException ie) {
+                        throw new InterruptedIOException("Hashing of " + this.file.getName() + " interrupted");
+                    }
+                    continue;
+                }
+
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), available - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + this.file.getName() + " at byte " + position);
+                }
+
+                sha256.update(buffer.array(), 0, read);
+                position += read;
+
+                if (this.progressListener != null) {
+                    this.progressListener.accept(position);
+                }
+            }
+        }
+
+        System.out.println("Hashed " + this.file.getName() + " in " + (System.currentTimeMillis() - start) + "ms.");
+        return sha256.digest();
+    }
+}
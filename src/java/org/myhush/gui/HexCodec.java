@@ -0,0 +1,76 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.util.Arrays;
+
+/**
+ * Table driven hex encoding and decoding of binary data (memos, digests etc.).
+ */
+final class HexCodec {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Value of each ASCII character as a hex digit - -1 if it is not one
+    private static final byte[] DIGIT_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(DIGIT_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            DIGIT_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            DIGIT_VALUES['a' + i] = (byte) (10 + i);
+            DIGIT_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexCodec() {
+    }
+
+    // Lower case hex of all bytes
+    static String encode(byte[] data) {
+        return encode(data, 0, data.length);
+    }
+
+    static String encode(byte[] data, int offset, int length) {
+        char[] hex = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + i] & 0xFF;
+            hex[i * 2] = HEX_DIGITS[b >>> 4];
+            hex[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * Decodes hex text (upper or lower case) into bytes.
+     *
+     * @param hex the hex text
+     * @return the bytes
+     * @throws IllegalArgumentException if the text has an odd length or a non-hex character
+     */
+    static byte[] decode(CharSequence hex) {
+        int length = hex.length();
+        if ((length % 2) != 0) {
+            throw new IllegalArgumentException("Hex text has an odd length: " + length);
+        }
+
+        byte[] data = new byte[length / 2];
+        for (int i = 0; i < data.length; i++) {
+            int high = digitValue(hex.charAt(i * 2));
+            int low = digitValue(hex.charAt(i * 2 + 1));
+            if ((high < 0) || (low < 0)) {
+                throw new IllegalArgumentException("Invalid hex text at position " + (i * 2) + ": " + hex);
+            }
+            data[i] = (byte) ((high << 4) | low);
+        }
+
+        return data;
+    }
+
+    private static int digitValue(char c) {
+        return (c < DIGIT_VALUES.length) ? DIGIT_VALUES[c] : -1;
+    }
+}
@@ -0,0 +1,246 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import com.eclipsesource.json.JsonValue;
+
+import java.math.BigDecimal;
+
+/**
+ * An exact amount of HUSH stored as a long number of zatoshis (1 HUSH = 100 000 000 zatoshis).
+ * Immutable. Parsing works directly on the decimal text (e.g. the text of a JSON number) and
+ * formatting does not use DecimalFormat, so both are exact, thread-safe and cheap.
+ */
+final class HushAmount implements Comparable<HushAmount> {
+    static final long ZATOSHIS_PER_HUSH = 100000000L;
+    static final int DECIMAL_PLACES = 8;
+
+    static final HushAmount ZERO = new HushAmount(0);
+
+    // Per thread scratch buffer for formatting - a long has at most 19 digits
+    private static final ThreadLocal<char[]> FORMAT_BUFFER = ThreadLocal.withInitial(() -> new char[32]);
+
+    private final long zatoshis;
+
+    private HushAmount(long zatoshis) {
+        this.zatoshis = zatoshis;
+    }
+
+    static HushAmount ofZatoshis(long zatoshis) {
+        return (zatoshis == 0) ? ZERO : new HushAmount(zatoshis);
+    }
+
+    /**
+     * Parses a decimal amount like 12.345 or -0.00010000.
+     *
+     * @param text the amount as text
+     * @return the amount
+     * @throws NumberFormatException if the text is not a valid amount or has more than 8 decimal places
+     */
+    static HushAmount parse(CharSequence text) {
+        return ofZatoshis(parseZatoshis(text));
+    }
+
+    static HushAmount fromJson(JsonValue value) {
+        return ofZatoshis(zatoshisFromJson(value));
+    }
+
+    // JSON numbers keep their original text, so no double rounding and no extra allocation happen here
+    static long zatoshisFromJson(JsonValue value) {
+        return parseZatoshis(value.isString() ? value.asString() : value.toString());
+    }
+
+    // Parses a decimal amount like 12.34500000 into zatoshis without going through double
+    static long parseZatoshis(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while ((start < end) && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while ((end > start) && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        if (start == end) {
+            throw new NumberFormatException("Empty amount");
+        }
+
+        int i = start;
+        boolean negative = false;
+        if ((text.charAt(i) == '-') || (text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        long whole = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean digitSeen = false;
+        boolean inFraction = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (inFraction) {
+                    throw new NumberFormatException("Invalid amount: " + text);
+                }
+                inFraction = true;
+            } else if ((c >= '0') && (c <= '9')) {
+                digitSeen = true;
+                if (inFraction) {
+                    if (fractionDigits >= DECIMAL_PLACES) {
+                        if (c != '0') {
+                            throw new NumberFormatException("Amount has more than 8 decimal places: " + text);
+                        }
+                        continue;
+                    }
+                    fraction = fraction * 10 + (c - '0');
+                    fractionDigits++;
+                } else {
+                    whole = multiplyAndAdd(whole, 10, c - '0', text);
+                }
+            } else if (((c == 'e') || (c == 'E')) && digitSeen) {
+                // Exponential notation is rare - let BigDecimal deal with it
+                return parseExponential(text.subSequence(start, end).toString());
+            } else {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+        }
+
+        if (!digitSeen) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+
+        for (; fractionDigits < DECIMAL_PLACES; fractionDigits++) {
+            fraction *= 10;
+        }
+
+        long zatoshis = multiplyAndAdd(whole, ZATOSHIS_PER_HUSH, fraction, text);
+        return negative ? -zatoshis : zatoshis;
+    }
+
+    // value * factor + addend - callers expect a NumberFormatException for any bad amount, also on overflow
+    private static long multiplyAndAdd(long value, long factor, long addend, CharSequence text) {
+        try {
+            return Math.addExact(Math.multiplyExact(value, factor), addend);
+        } catch (ArithmeticException ae) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    private static long parseExponential(String text) {
+        try {
+            return new BigDecimal(text).movePointRight(DECIMAL_PLACES).longValueExact();
+        } catch (ArithmeticException ae) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+    }
+
+    /**
+     * Formats zatoshis with at least 2 and at most 8 decimal places - the same as the pattern
+     * ########0.00###### but exact and without exponential notation.
+     */
+    static String formatForDisplay(long zatoshis) {
+        return format(zatoshis, 2);
+    }
+
+    /**
+     * Formats zatoshis with all 8 decimal places - the form used by the wallet RPC interface.
+     */
+    static String formatPlain(long zatoshis) {
+        return format(zatoshis, DECIMAL_PLACES);
+    }
+
+    private static String format(long zatoshis, int minDecimalPlaces) {
+        char[] buf = FORMAT_BUFFER.get();
+        int pos = buf.length;
+
+        // Work with negative numbers so that Long.MIN_VALUE does not overflow
+        boolean negative = zatoshis < 0;
+        long value = negative ? zatoshis : -zatoshis;
+
+        long fraction = -(value % ZATOSHIS_PER_HUSH);
+        long whole = -(value / ZATOSHIS_PER_HUSH);
+
+        // Drop trailing zero decimals beyond the minimum
+        int decimals = DECIMAL_PLACES;
+        while ((decimals > minDecimalPlaces) && (fraction % 10 == 0)) {
+            fraction /= 10;
+            decimals--;
+        }
+
+        for (int i = 0; i < decimals; i++) {
+            buf[--pos] = (char) ('0' + (fraction % 10));
+            fraction /= 10;
+        }
+        if (decimals > 0) {
+            buf[--pos] = '.';
+        }
+
+        do {
+            buf[--pos] = (char) ('0' + (whole % 10));
+            whole /= 10;
+        } while (whole > 0);
+
+        if (negative) {
+            buf[--pos] = '-';
+        }
+
+        return new String(buf, pos, buf.length - pos);
+    }
+
+    long getZatoshis() {
+        return this.zatoshis;
+    }
+
+    boolean isPositive() {
+        return this.zatoshis > 0;
+    }
+
+    boolean isNegative() {
+        return this.zatoshis < 0;
+    }
+
+    HushAmount add(HushAmount other) {
+        return ofZatoshis(Math.addExact(this.zatoshis, other.zatoshis));
+    }
+
+    HushAmount subtract(HushAmount other) {
+        return ofZatoshis(Math.subtractExact(this.zatoshis, other.zatoshis));
+    }
+
+    HushAmount abs() {
+        return (this.zatoshis < 0) ? ofZatoshis(Math.negateExact(this.zatoshis)) : this;
+    }
+
+    // E.g. 1.50 or 0.0001
+    String toDisplayString() {
+        return formatForDisplay(this.zatoshis);
+    }
+
+    // E.g. 1.50000000 - exact, suitable for wallet commands
+    String toPlainString() {
+        return formatPlain(this.zatoshis);
+    }
+
+    @Override
+    public int compareTo(HushAmount other) {
+        return Long.compare(this.zatoshis, other.zatoshis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj instanceof HushAmount) && (((HushAmount) obj).zatoshis == this.zatoshis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.zatoshis);
+    }
+
+    @Override
+    public String toString() {
+        return this.toDisplayString();
+    }
+}
@@ -9,15 +9,21 @@ import com.eclipsesource.json.*;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class HushCommandLineBridge {
     private File hushcli;
     private File hushd;
 
+    // Encryption status and unlock expiry - kept current by the wallet security calls below
+    private final WalletSecurityState securityState = new WalletSecurityState();
+    // Memos of received Z transactions - filled while the transactions are synchronized
+    private final MemoStore memoStore = new MemoStore();
+    // Number of key/wallet imports running - the daemon holds its wallet lock while rescanning
+    private final AtomicInteger runningImports = new AtomicInteger(0);
+    private final AtomicInteger finishedImports = new AtomicInteger(0);
+
     public HushCommandLineBridge(String installDir)
             throws IOException {
         // Detect daemon and client tools installation
@@ -57,9 +63,20 @@ public class HushCommandLineBridge {
                                 "-exportdir=" + exportDir
                         });
 
+        // A (re)started daemon may run with a different wallet
+        this.securityState.invalidate();
+
         return starter.startChildProcess();
     }
 
+    public WalletSecurityState getSecurityState() {
+        return this.securityState;
+    }
+
+    public MemoStore getMemoStore() {
+        return this.memoStore;
+    }
+
     public /*synchronized*/ void stopDaemon()
             throws IOException, InterruptedException {
         CommandExecutor stopper = new CommandExecutor(
@@ -106,15 +123,15 @@ public class HushCommandLineBridge {
 
         JsonObject objResponse = this.executeCommandAndGetJsonObject("z_gettotalbalance", null);
 
-        balance.transparentBalance = Double.valueOf(objResponse.getString("transparent", "-1"));
-        balance.privateBalance = Double.valueOf(objResponse.getString("private", "-1"));
-        balance.totalBalance = Double.valueOf(objResponse.getString("total", "-1"));
+        balance.transparentBalance = HushAmount.parse(objResponse.getString("transparent", "-1"));
+        balance.privateBalance = HushAmount.parse(objResponse.getString("private", "-1"));
+        balance.totalBalance = HushAmount.parse(objResponse.getString("total", "-1"));
 
         objResponse = this.executeCommandAndGetJsonObject("z_gettotalbalance", "0");
 
-        balance.transparentUnconfirmedBalance = Double.valueOf(objResponse.getString("transparent", "-1"));
-        balance.privateUnconfirmedBalance = Double.valueOf(objResponse.getString("private", "-1"));
-        balance.totalUnconfirmedBalance = Double.valueOf(objResponse.getString("total", "-1"));
+        balance.transparentUnconfirmedBalance = HushAmount.parse(objResponse.getString("transparent", "-1"));
+        balance.privateUnconfirmedBalance = HushAmount.parse(objResponse.getString("private", "-1"));
+        balance.totalUnconfirmedBalance = HushAmount.parse(objResponse.getString("total", "-1"));
 
         return balance;
     }
@@ -150,6 +167,32 @@ public class HushCommandLineBridge {
         return strTransactions;
     }
 
+    /**
+     * Gets one page of the public transactions - the newest ones first. Within the page the
+     * transactions are in chronological order (as listtransactions returns them).
+     *
+     * @param count maximum number of transactions in the page
+     * @param from  number of (newest) transactions to skip
+     * @return the transactions in raw JSON form
+     */
+    public synchronized JsonArray getWalletPublicTransactionsPage(int count, int from)
+            throws WalletCallException, IOException, InterruptedException {
+        return executeCommandAndGetJsonArray(
+                "listtransactions", wrapStringParameter(""), String.valueOf(count), String.valueOf(from));
+    }
+
+    // All outputs received by a Z address in raw JSON form - the wallet cannot page these
+    public synchronized JsonArray getWalletZReceivedOutputs(String zAddress)
+            throws WalletCallException, IOException, InterruptedException {
+        return executeCommandAndGetJsonArray(
+                "z_listreceivedbyaddress", wrapStringParameter(zAddress), "0");
+    }
+
+    public synchronized JsonObject getWalletTransaction(String txID)
+            throws WalletCallException, IOException, InterruptedException {
+        return this.executeCommandAndGetJsonObject("gettransaction", wrapStringParameter(txID));
+    }
+
     public synchronized String[] getWalletZAddresses()
             throws WalletCallException, IOException, InterruptedException {
         JsonArray jsonAddresses = executeCommandAndGetJsonArray("z_listaddresses", null);
@@ -185,6 +228,9 @@ public class HushCommandLineBridge {
                 currentTransaction[5] = zAddress;
                 currentTransaction[6] = trans.get("txid").toString();
 
+                // Capture the memo now - so showing it later costs no wallet call
+                this.memoStore.put(txID, zAddress, trans.getString("memo", null));
+
                 zReceivedTransactions.add(currentTransaction);
             }
         }
@@ -206,6 +252,18 @@ public class HushCommandLineBridge {
         return addresses.toArray(new String[0]);
     }
 
+    // All unspent T outputs including unconfirmed ones (listunspent 0)
+    public synchronized JsonArray getWalletUnspentOutputs()
+            throws WalletCallException, IOException, InterruptedException {
+        return executeCommandAndGetJsonArray("listunspent", "0");
+    }
+
+    // All unspent Z notes including unconfirmed ones (z_listunspent 0) - not supported by older daemons
+    public synchronized JsonArray getWalletZUnspentOutputs()
+            throws WalletCallException, IOException, InterruptedException {
+        return executeCommandAndGetJsonArray("z_listunspent", "0");
+    }
+
     // ./hush-cli listreceivedbyaddress 0 true
     public synchronized String[] getWalletAllPublicAddresses()
             throws WalletCallException, IOException, InterruptedException {
@@ -234,36 +292,26 @@ public class HushCommandLineBridge {
         return map;
     }
 
-    public synchronized String getMemoField(String acc, String txID)
+    // Answered from the memo store without waiting for other wallet calls - the wallet is asked only
+    // for transactions not yet synchronized
+    public String getMemoField(String acc, String txID)
+            throws WalletCallException, IOException, InterruptedException {
+        if (!this.memoStore.contains(txID, acc)) {
+            this.storeMemos(acc);
+        }
+
+        return this.memoStore.getMemo(txID, acc);
+    }
+
+    private synchronized void storeMemos(String zAddress)
             throws WalletCallException, IOException, InterruptedException {
         JsonArray jsonTransactions = this.executeCommandAndGetJsonArray(
-                "z_listreceivedbyaddress", wrapStringParameter(acc));
+                "z_listreceivedbyaddress", wrapStringParameter(zAddress), "0");
 
         for (int i = 0; i < jsonTransactions.size(); i++) {
-            if (jsonTransactions.get(i).asObject().getString("txid", "ERROR!").equals(txID)) {
-                if (jsonTransactions.get(i).asObject().get("memo") == null) {
-                    return null;
-                }
-
-                String MemoHex = jsonTransactions.get(i).asObject().getString("memo", "ERROR!");
-                // Skip empty memos
-                if (MemoHex.startsWith("f60000")) {
-                    return null;
-                }
-
-                StringBuilder MemoAscii = new StringBuilder("");
-                for (int j = 0; j < MemoHex.length(); j += 2) {
-                    String str = MemoHex.substring(j, j + 2);
-                    if (!str.equals("00")) // Zero bytes are empty
-                    {
-                        MemoAscii.append((char) Integer.parseInt(str, 16));
-                    }
-                }
-                return MemoAscii.toString();
-            }
+            JsonObject trans = jsonTransactions.get(i).asObject();
+            this.memoStore.put(trans.getString("txid", "ERROR!"), zAddress, trans.getString("memo", null));
         }
-
-        return null;
     }
 
     public synchronized String getRawTransaction(String txID)
@@ -327,75 +375,37 @@ public class HushCommandLineBridge {
     // Returns OPID
     public synchronized String sendCash(String from, String to, String amount, String memo, String transactionFee)
             throws WalletCallException, IOException, InterruptedException {
-        StringBuilder hexMemo = new StringBuilder();
-        for (byte c : memo.getBytes("UTF-8")) {
-            String hexChar = Integer.toHexString((int) c);
-            if (hexChar.length() < 2) {
-                hexChar = "0" + hexChar;
-            }
-            hexMemo.append(hexChar);
-        }
-
-        JsonObject toArgument = new JsonObject();
-        toArgument.set("address", to);
-        if (hexMemo.length() >= 2) {
-            toArgument.set("memo", hexMemo.toString());
-        }
-
-        // The JSON Builder has a problem with double values that have no fractional part
-        // it serializes them as integers that Hush does not accept. So we do a replacement
-        // TODO: find a better/cleaner way to format the amount
-        toArgument.set("amount", "\uFFFF\uFFFF\uFFFF\uFFFF\uFFFF");
-
-        JsonArray toMany = new JsonArray();
-        toMany.add(toArgument);
-
-        String amountPattern = "\"amount\":\"\uFFFF\uFFFF\uFFFF\uFFFF\uFFFF\"";
-        // Make sure our replacement hack never leads to a mess up
-        String toManyBeforeReplace = toMany.toString();
-        int firstIndex = toManyBeforeReplace.indexOf(amountPattern);
-        int lastIndex = toManyBeforeReplace.lastIndexOf(amountPattern);
-        if ((firstIndex == -1) || (firstIndex != lastIndex)) {
-            throw new WalletCallException("Error in forming z_sendmany command: " + toManyBeforeReplace);
+        SendManyRecipients recipients = new SendManyRecipients();
+        try {
+            recipients.add(to, HushAmount.parse(amount), memo);
+        } catch (IllegalArgumentException iae) {
+            throw new WalletCallException("Error in forming z_sendmany command: " + iae.getMessage(), iae);
         }
 
-        DecimalFormatSymbols decSymbols = new DecimalFormatSymbols(Locale.ROOT);
-
         // Properly format teh transaction fee as a number
+        HushAmount fee;
         if ((transactionFee == null) || (transactionFee.trim().length() <= 0)) {
-            transactionFee = "0.0001"; // Default value
+            fee = HushAmount.parse("0.0001"); // Default value
         } else {
-            transactionFee = new DecimalFormat(
-                    "########0.00######", decSymbols).format(Double.valueOf(transactionFee));
+            fee = HushAmount.parse(transactionFee);
         }
 
-        // This replacement is a hack to make sure the JSON object amount has double format 0.00 etc.
-        // TODO: find a better way to format the amount
-        String toManyArrayStr = toMany.toString().replace(
-                amountPattern,
-                "\"amount\":" + new DecimalFormat("########0.00######", decSymbols).format(Double.valueOf(amount)));
+        return this.sendMany(from, recipients, fee);
+    }
 
+    // Sends to all recipients in one z_sendmany operation - returns OPID
+    public synchronized String sendMany(String from, SendManyRecipients recipients, HushAmount transactionFee)
+            throws WalletCallException, IOException, InterruptedException {
         String[] sendCashParameters = new String[]
                                               {
                                                       this.hushcli.getCanonicalPath(), "z_sendmany", wrapStringParameter(from),
-                                                      wrapStringParameter(toManyArrayStr),
+                                                      wrapStringParameter(recipients.toJson()),
                                                       // Default min confirmations for the input transactions is 1
                                                       "1",
                                                       // transaction fee
-                                                      transactionFee
+                                                      transactionFee.toPlainString()
                                               };
 
-        // Safeguard to make sure the monetary amount does not differ after formatting
-        BigDecimal bdAmout = new BigDecimal(amount);
-        JsonArray toManyVerificationArr = Json.parse(toManyArrayStr).asArray();
-        BigDecimal bdFinalAmount =
-                new BigDecimal(toManyVerificationArr.get(0).asObject().getDouble("amount", -1));
-        BigDecimal difference = bdAmout.subtract(bdFinalAmount).abs();
-        if (difference.compareTo(new BigDecimal("0.000000015")) >= 0) {
-            throw new WalletCallException("Error in forming z_sendmany command: Amount differs after formatting: " +
-                                                  amount + " | " + toManyArrayStr);
-        }
-
         System.out.println("The following send command will be issued: " +
                                    sendCashParameters[0] + " " + sendCashParameters[1] + " " +
                                    sendCashParameters[2] + " " + sendCashParameters[3] + " " +
@@ -419,55 +429,45 @@ public class HushCommandLineBridge {
         return strResponse.trim();
     }
 
-    public synchronized boolean isSendingOperationComplete(String opID)
+    /**
+     * Obtains the status of many asynchronous operations in a single call.
+     *
+     * @param opIDs operation IDs as returned by z_sendmany
+     * @return status objects (id, status, error etc.) - operations unknown to the wallet are missing
+     */
+    public synchronized JsonArray getOperationStatuses(Collection<String> opIDs)
             throws WalletCallException, IOException, InterruptedException {
-        JsonArray response = this.executeCommandAndGetJsonArray(
-                "z_getoperationstatus", wrapStringParameter("[\"" + opID + "\"]"));
-        JsonObject jsonStatus = response.get(0).asObject();
-
-        String status = jsonStatus.getString("status", "ERROR");
-
-        System.out.println("Operation " + opID + " status is " + response + ".");
-
-        if (status.equalsIgnoreCase("success") ||
-                    status.equalsIgnoreCase("error") ||
-                    status.equalsIgnoreCase("failed")) {
-            return true;
-        } else if (status.equalsIgnoreCase("executing") || status.equalsIgnoreCase("queued")) {
-            return false;
-        } else {
-            throw new WalletCallException("Unexpected status response from wallet: " + response.toString());
-        }
+        return this.executeCommandAndGetJsonArray("z_getoperationstatus", wrapStringParameter(toJsonStringArray(opIDs)));
     }
 
-    public synchronized boolean isCompletedOperationSuccessful(String opID)
+    /**
+     * Obtains the final results of completed asynchronous operations. The wallet removes the
+     * returned operations from its memory.
+     *
+     * @param opIDs operation IDs as returned by z_sendmany
+     * @return result objects of the completed operations
+     */
+    public synchronized JsonArray getOperationResults(Collection<String> opIDs)
             throws WalletCallException, IOException, InterruptedException {
-        JsonArray response = this.executeCommandAndGetJsonArray(
-                "z_getoperationstatus", wrapStringParameter("[\"" + opID + "\"]"));
-        JsonObject jsonStatus = response.get(0).asObject();
-
-        String status = jsonStatus.getString("status", "ERROR");
-
-        System.out.println("Operation " + opID + " status is " + response + ".");
+        return this.executeCommandAndGetJsonArray("z_getoperationresult", wrapStringParameter(toJsonStringArray(opIDs)));
+    }
 
-        if (status.equalsIgnoreCase("success")) {
-            return true;
-        } else if (status.equalsIgnoreCase("error") || status.equalsIgnoreCase("failed")) {
-            return false;
-        } else {
-            throw new WalletCallException("Unexpected final operation status response from wallet: " + response.toString());
+    // Operation IDs contain no characters that need escaping
+    private static String toJsonStringArray(Collection<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (String value : values) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(value).append('"');
         }
+        return json.append(']').toString();
     }
 
-    // May only be called for already failed operations
-    public synchronized String getOperationFinalErrorMessage(String opID)
+    public synchronized int getBlockCount()
             throws WalletCallException, IOException, InterruptedException {
-        JsonArray response = this.executeCommandAndGetJsonArray(
-                "z_getoperationstatus", wrapStringParameter("[\"" + opID + "\"]"));
-        JsonObject jsonStatus = response.get(0).asObject();
-
-        JsonObject jsonError = jsonStatus.get("error").asObject();
-        return jsonError.getString("message", "ERROR!");
+        String strBlockCount = this.executeCommandAndGetSingleStringResponse("getblockcount");
+        return Integer.parseInt(strBlockCount.trim());
     }
 
     public synchronized NetworkAndBlockchainInfo getNetworkAndBlockchainInfo()
@@ -493,25 +493,52 @@ public class HushCommandLineBridge {
         if (response.trim().length() > 0) {
             throw new WalletCallException("Unexpected response from wallet: " + response);
         }
+
+        this.securityState.walletLocked();
     }
 
     // Unlocks the wallet for 5 minutes - meant to be followed shortly by lock!
-    // TODO: tests with a password containing spaces
     public synchronized void unlockWallet(String password)
             throws WalletCallException, IOException, InterruptedException {
+        this.unlockWallet(password, 300);
+    }
+
+    // Unlocks the wallet for the given number of seconds - the wallet locks itself after that
+    // TODO: tests with a password containing spaces
+    public synchronized void unlockWallet(String password, int timeoutSeconds)
+            throws WalletCallException, IOException, InterruptedException {
         String response = this.executeCommandAndGetSingleStringResponse(
-                "walletpassphrase", wrapStringParameter(password), "300");
+                "walletpassphrase", wrapStringParameter(password), String.valueOf(timeoutSeconds));
 
         // Response is expected to be empty
         if (response.trim().length() > 0) {
             throw new WalletCallException("Unexpected response from wallet: " + response);
         }
+
+        this.securityState.walletUnlocked(timeoutSeconds);
+    }
+
+    // Answered from the cached security state - the wallet is asked only if the state is not yet known
+    public synchronized boolean isWalletEncrypted()
+            throws WalletCallException, IOException, InterruptedException {
+        Boolean encrypted = this.securityState.getEncrypted();
+        if (encrypted != null) {
+            WalletMetrics.getInstance().cacheHit("wallet encryption");
+        } else {
+            WalletMetrics.getInstance().cacheMiss("wallet encryption");
+            encrypted = this.queryWalletEncrypted();
+            this.securityState.setEncrypted(encrypted);
+            // The check has locked an encrypted wallet
+            this.securityState.walletLocked();
+        }
+
+        return encrypted;
     }
 
     // Wallet locks check - an unencrypted wallet will give an error
     // hush-cli walletlock
     // error: {"code":-15,"message":"Error: running with an unencrypted wallet, but walletlock was called."}
-    public synchronized boolean isWalletEncrypted()
+    private boolean queryWalletEncrypted()
             throws WalletCallException, IOException, InterruptedException {
         String[] params = new String[]{ this.hushcli.getCanonicalPath(), "walletlock" };
         CommandExecutor caller = new CommandExecutor(params);
@@ -569,7 +596,8 @@ public class HushCommandLineBridge {
         String response = this.executeCommandAndGetSingleStringResponse(
                 "encryptwallet", wrapStringParameter(password));
         System.out.println("Result of wallet encryption is: \n" + response);
-        // If no exception - obviously successful
+        // If no exception - obviously successful. The daemon stops and needs to be restarted.
+        this.securityState.invalidate();
     }
 
     public synchronized void backupWallet(String fileName)
@@ -588,12 +616,57 @@ public class HushCommandLineBridge {
         // If no exception - obviously successful
     }
 
-    public synchronized void importWallet(String fileName)
+    /**
+     * True while a key or wallet import is running. The import rescans the blockchain and the daemon
+     * does not answer most wallet calls until it is done - so they are better not made meanwhile.
+     */
+    public boolean isWalletImportRunning() {
+        return this.runningImports.get() > 0;
+    }
+
+    /**
+     * Counts the imports that have ended (successfully or not) - a change tells that keys may have
+     * been added to the wallet, e.g. that an address is not watch-only any more.
+     */
+    public int getFinishedImportCount() {
+        return this.finishedImports.get();
+    }
+
+    /**
+     * Marks a job importing keys as running for its whole lifetime - from before its thread starts
+     * until it is done - so that {@link #isWalletImportRunning()} does not turn false between the
+     * single imports of the job. Every call must be followed by {@link #endWalletImport()}.
+     */
+    public void beginWalletImport() {
+        this.importStarted();
+    }
+
+    public void endWalletImport() {
+        this.importFinished();
+    }
+
+    private void importStarted() {
+        this.runningImports.incrementAndGet();
+    }
+
+    private void importFinished() {
+        this.finishedImports.incrementAndGet();
+        this.runningImports.decrementAndGet();
+    }
+
+    // The imports below are not synchronized - the rescan may take many minutes and must not keep
+    // the other calls to the wallet waiting for the bridge
+    public void importWallet(String fileName)
             throws WalletCallException, IOException, InterruptedException {
         System.out.println("Import wallet keys from location: " + fileName);
-        String response = this.executeCommandAndGetSingleStringResponse(
-                "z_importwallet", wrapStringParameter(fileName));
-        // If no exception - obviously successful
+        this.importStarted();
+        try {
+            String response = this.executeCommandAndGetSingleStringResponse(
+                    "z_importwallet", wrapStringParameter(fileName));
+            // If no exception - obviously successful
+        } finally {
+            this.importFinished();
+        }
     }
 
     public synchronized String getTPrivateKey(String address)
@@ -612,8 +685,66 @@ public class HushCommandLineBridge {
         return response.trim();
     }
 
+    /**
+     * Imports a Z spending key.
+     *
+     * @param key         the key
+     * @param rescan      true to rescan the blockchain for the transactions of the wallet afterwards
+     * @param startHeight block height to rescan from
+     */
+    public void importZPrivateKey(String key, boolean rescan, int startHeight)
+            throws WalletCallException, IOException, InterruptedException {
+        String strResult;
+        this.importStarted();
+        try {
+            strResult = rescan ?
+                                this.executeCommandAndGetSingleStringResponse(
+                                        "z_importkey", wrapStringParameter(key), "yes", String.valueOf(startHeight)) :
+                                this.executeCommandAndGetSingleStringResponse(
+                                        "z_importkey", wrapStringParameter(key), "no");
+        } finally {
+            this.importFinished();
+        }
+
+        if ((strResult != null) && (strResult.trim().length() > 0)) {
+            throw new WalletCallException("Unexpected response from wallet: " + strResult);
+        }
+    }
+
+    /**
+     * Imports a T private key (WIF). The wallet can only rescan from the genesis block for these.
+     *
+     * @param key    the key
+     * @param rescan true to rescan the blockchain for the transactions of the wallet afterwards
+     */
+    public void importTPrivateKey(String key, boolean rescan)
+            throws WalletCallException, IOException, InterruptedException {
+        String strResult;
+        this.importStarted();
+        try {
+            strResult = this.executeCommandAndGetSingleStringResponse(
+                    "importprivkey", wrapStringParameter(key), wrapStringParameter(""), String.valueOf(rescan));
+        } finally {
+            this.importFinished();
+        }
+
+        if ((strResult != null) && (strResult.trim().length() > 0)) {
+            throw new WalletCallException("Unexpected response from wallet: " + strResult);
+        }
+    }
+
     // Imports a private key - tries both possibilities T/Z
-    public synchronized void importPrivateKey(String key)
+    public void importPrivateKey(String key)
+            throws WalletCallException, IOException, InterruptedException {
+        this.importStarted();
+        try {
+            this.importPrivateKeyOfAnyType(key);
+        } finally {
+            this.importFinished();
+        }
+    }
+
+    private void importPrivateKeyOfAnyType(String key)
             throws WalletCallException, IOException, InterruptedException {
         // First try a Z key
         String[] params = new String[]{ this.hushcli.getCanonicalPath(), "z_importkey", wrapStringParameter(key) };
@@ -684,7 +815,12 @@ public class HushCommandLineBridge {
 
     private JsonArray executeCommandAndGetJsonArray(String command1, String command2, String command3)
             throws WalletCallException, IOException, InterruptedException {
-        JsonValue response = this.executeCommandAndGetJsonValue(command1, command2, command3);
+        return this.executeCommandAndGetJsonArray(command1, command2, command3, null);
+    }
+
+    private JsonArray executeCommandAndGetJsonArray(String command1, String command2, String command3, String command4)
+            throws WalletCallException, IOException, InterruptedException {
+        JsonValue response = this.executeCommandAndGetJsonValue(command1, command2, command3, command4);
 
         if (response.isArray()) {
             return response.asArray();
@@ -700,7 +836,12 @@ public class HushCommandLineBridge {
 
     private JsonValue executeCommandAndGetJsonValue(String command1, String command2, String command3)
             throws WalletCallException, IOException, InterruptedException {
-        String strResponse = this.executeCommandAndGetSingleStringResponse(command1, command2, command3);
+        return this.executeCommandAndGetJsonValue(command1, command2, command3, null);
+    }
+
+    private JsonValue executeCommandAndGetJsonValue(String command1, String command2, String command3, String command4)
+            throws WalletCallException, IOException, InterruptedException {
+        String strResponse = this.executeCommandAndGetSingleStringResponse(command1, command2, command3, command4);
 
         JsonValue response = null;
         try {
@@ -724,8 +865,15 @@ public class HushCommandLineBridge {
 
     private String executeCommandAndGetSingleStringResponse(String command1, String command2, String command3)
             throws WalletCallException, IOException, InterruptedException {
+        return this.executeCommandAndGetSingleStringResponse(command1, command2, command3, null);
+    }
+
+    private String executeCommandAndGetSingleStringResponse(String command1, String command2, String command3, String command4)
+            throws WalletCallException, IOException, InterruptedException {
         String[] params;
-        if (command3 != null) {
+        if (command4 != null) {
+            params = new String[]{ this.hushcli.getCanonicalPath(), command1, command2, command3, command4 };
+        } else if (command3 != null) {
             params = new String[]{ this.hushcli.getCanonicalPath(), command1, command2, command3 };
         } else if (command2 != null) {
             params = new String[]{ this.hushcli.getCanonicalPath(), command1, command2 };
@@ -773,13 +921,13 @@ public class HushCommandLineBridge {
     }
 
     public static class WalletBalance {
-        public double transparentBalance;
-        public double privateBalance;
-        public double totalBalance;
+        public HushAmount transparentBalance;
+        public HushAmount privateBalance;
+        public HushAmount totalBalance;
 
-        public double transparentUnconfirmedBalance;
-        public double privateUnconfirmedBalance;
-        public double totalUnconfirmedBalance;
+        public HushAmount transparentUnconfirmedBalance;
+        public HushAmount privateUnconfirmedBalance;
+        public HushAmount totalUnconfirmedBalance;
     }
 
     public static class NetworkAndBlockchainInfo {
@@ -15,6 +15,9 @@ import java.util.StringTokenizer;
  * Observes the daemon - running etc.
  */
 public class HushDaemonObserver {
+    // As last seen by getDaemonInfo() - for the metrics
+    private volatile DaemonInfo lastDaemonInfo = new DaemonInfo();
+
     HushDaemonObserver(String installDir)
             throws IOException {
         // Detect daemon and client tools installation
@@ -45,17 +48,37 @@ public class HushDaemonObserver {
                             "Please place files HUSHSwingWalletUI.jar, " + OSUtil.getHushCli() + ", " +
                             OSUtil.getHushd() + " in the same directory.");
         }
+
+        this.lastDaemonInfo.status = DAEMON_STATUS.UNABLE_TO_ASCERTAIN;
+        this.registerMetrics();
     }
 
     public synchronized DaemonInfo getDaemonInfo()
             throws IOException, InterruptedException {
         OSUtil.OS_TYPE os = OSUtil.getOSType();
 
+        DaemonInfo info;
         if (os == OSUtil.OS_TYPE.WINDOWS) {
-            return getDaemonInfoForWindowsOS();
+            info = getDaemonInfoForWindowsOS();
         } else {
-            return getDaemonInfoForUNIXLikeOS();
+            info = getDaemonInfoForUNIXLikeOS();
         }
+
+        this.lastDaemonInfo = info;
+        return info;
+    }
+
+    // The metrics show the daemon as last seen - they do not start a process themselves
+    private void registerMetrics() {
+        WalletMetrics metrics = WalletMetrics.getInstance();
+        metrics.gauge("hushd_running", null, null,
+                () -> (this.lastDaemonInfo.status == DAEMON_STATUS.RUNNING) ? 1 : 0);
+        metrics.gauge("hushd_cpu_percent", null, null, () -> this.lastDaemonInfo.cpuPercentage);
+        // ps and tasklist give KB - the sizes in MB are KB / 1000
+        metrics.gauge("hushd_resident_memory_bytes", null, null,
+                () -> Math.round(this.lastDaemonInfo.residentSizeMB * 1000) * 1024.0);
+        metrics.gauge("hushd_virtual_memory_bytes", null, null,
+                () -> Math.round(this.lastDaemonInfo.virtualSizeMB * 1000) * 1024.0);
     }
 
     // So far tested on Mac OS X and Linux - expected to work on other UNIXes as well
@@ -9,6 +9,7 @@ import org.myhush.gui.HushDaemonObserver.DAEMON_STATUS;
 import org.myhush.gui.HushDaemonObserver.DaemonInfo;
 import org.myhush.gui.HushDaemonObserver.InstallationDetectionException;
 
+import javax.management.JMException;
 import javax.swing.*;
 import javax.swing.UIManager.LookAndFeelInfo;
 import java.awt.*;
@@ -19,6 +20,7 @@ import java.io.*;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Main wallet window
@@ -31,8 +33,18 @@ class HushWalletFrame extends JFrame {
     private DashboardPanel dashboard;
     private AddressesPanel addresses;
     private SendCashPanel sendPanel;
-
-    private HushWalletFrame(final StartupProgressDialog progressDialog) throws IOException, InterruptedException, HushCommandLineBridge.WalletCallException {
+    private AddressBalanceService balanceService;
+    private OperationTracker operationTracker;
+    private SendQueue sendQueue;
+
+    // Completes once the overview tab - the one shown first - has its data
+    private final CompletableFuture<Void> overviewLoaded;
+
+    private HushWalletFrame(final StartupProgressDialog progressDialog,
+                            final HushDaemonObserver installationObserver,
+                            final HushCommandLineBridge clientCaller,
+                            final AddressBookStore addressBook,
+                            final StartupOrchestrator startup) throws Exception {
         super("HUSH Wallet v0.71.1 (beta)");
 
         if (progressDialog != null) {
@@ -46,8 +58,9 @@ class HushWalletFrame extends JFrame {
         Container contentPane = this.getContentPane();
 
         errorReporter = new StatusUpdateErrorReporter(this);
-        final HushDaemonObserver installationObserver = new HushDaemonObserver(OSUtil.getProgramDirectory());
-        final HushCommandLineBridge clientCaller = new HushCommandLineBridge(OSUtil.getProgramDirectory());
+        balanceService = new AddressBalanceService(this, clientCaller, errorReporter);
+        operationTracker = new OperationTracker(clientCaller, errorReporter);
+        sendQueue = new SendQueue(clientCaller, operationTracker);
 
         // Build content
         final JTabbedPane tabs = new JTabbedPane();
@@ -56,18 +69,31 @@ class HushWalletFrame extends JFrame {
         tabs.setFont(newTabFont);
         tabs.addTab("Overview ",
                 new ImageIcon(cl.getResource("images/icon-overview.png")),
-                dashboard = new DashboardPanel(this, installationObserver, clientCaller, errorReporter));
+                dashboard = startup.measure("Overview tab", () -> new DashboardPanel(
+                        this, installationObserver, clientCaller, errorReporter)));
+        // The transactions are loaded while the other tabs are being built
+        this.overviewLoaded = startup.run("Overview data", dashboard::loadTransactions);
         tabs.addTab("Own addresses ",
                 new ImageIcon(cl.getResource("images/icon-own-addresses.png")),
-                addresses = new AddressesPanel(this, clientCaller, errorReporter));
+                addresses = startup.measure("Own addresses tab", () -> new AddressesPanel(
+                        this, clientCaller, balanceService, errorReporter)));
         tabs.addTab("Send cash ",
                 new ImageIcon(cl.getResource("images/icon-send.png")),
-                sendPanel = new SendCashPanel(clientCaller, errorReporter));
+                sendPanel = startup.measure("Send cash tab", () -> new SendCashPanel(
+                        clientCaller, balanceService, sendQueue, addressBook, errorReporter)));
         tabs.addTab("Address book ",
                 new ImageIcon(cl.getResource("images/icon-address-book.png")),
-                new AddressBookPanel(sendPanel, tabs));
+                startup.measure("Address book tab", () -> new AddressBookPanel(addressBook, sendPanel, tabs)));
         contentPane.add(tabs);
 
+        // Tabs not shown first load their data when selected - or once the window is shown
+        tabs.addChangeListener(changeEvent -> {
+            Component selected = tabs.getSelectedComponent();
+            if (selected instanceof LazyLoadingTab) {
+                ((LazyLoadingTab) selected).startLoading();
+            }
+        });
+
         this.walletOps = new WalletOperations(
                 this, tabs, dashboard, addresses, sendPanel, clientCaller, errorReporter);
 
@@ -81,6 +107,8 @@ class HushWalletFrame extends JFrame {
         final JMenuItem menuItemAbout = new JMenuItem("About...", KeyEvent.VK_T);
         file.add(menuItemAbout);
         menuItemAbout.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_T, accelaratorKeyMask));
+        final JMenuItem menuItemDiagnostics = new JMenuItem("Diagnostics...", KeyEvent.VK_D);
+        file.add(menuItemDiagnostics);
         file.addSeparator();
         final JMenuItem menuItemExit = new JMenuItem("Quit", KeyEvent.VK_Q);
         file.add(menuItemExit);
@@ -107,6 +135,12 @@ class HushWalletFrame extends JFrame {
         final JMenuItem menuItemImportOnePrivateKey = new JMenuItem("Import one private key...", KeyEvent.VK_N);
         wallet.add(menuItemImportOnePrivateKey);
         menuItemImportOnePrivateKey.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, accelaratorKeyMask));
+        final JMenuItem menuItemImportKeysInBulk = new JMenuItem("Import private keys in bulk...", KeyEvent.VK_U);
+        wallet.add(menuItemImportKeysInBulk);
+        menuItemImportKeysInBulk.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_U, accelaratorKeyMask));
+        final JMenuItem menuItemExportHistory = new JMenuItem("Export transaction history...", KeyEvent.VK_Y);
+        wallet.add(menuItemExportHistory);
+        menuItemExportHistory.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, accelaratorKeyMask));
         mb.add(wallet);
 
         // Some day the extras menu will be populated with less essential functions
@@ -124,6 +158,9 @@ class HushWalletFrame extends JFrame {
         // Add listeners etc.
         menuItemExit.addActionListener(actionEvent -> HushWalletFrame.this.exitProgram());
 
+        menuItemDiagnostics.addActionListener(
+                actionEvent -> new DiagnosticsDialog(HushWalletFrame.this, WalletMetrics.getInstance()).setVisible(true));
+
         menuItemAbout.addActionListener(
                 actionEvent -> {
                     AboutDialog ad = new AboutDialog(HushWalletFrame.this);
@@ -136,6 +173,8 @@ class HushWalletFrame extends JFrame {
         menuItemImportKeys.addActionListener(actionEvent -> HushWalletFrame.this.walletOps.importWalletPrivateKeys());
         menuItemShowPrivateKey.addActionListener(actionEvent -> HushWalletFrame.this.walletOps.showPrivateKey());
         menuItemImportOnePrivateKey.addActionListener(actionEvent -> HushWalletFrame.this.walletOps.importSinglePrivateKey());
+        menuItemImportKeysInBulk.addActionListener(actionEvent -> HushWalletFrame.this.walletOps.importPrivateKeysInBulk());
+        menuItemExportHistory.addActionListener(actionEvent -> HushWalletFrame.this.walletOps.exportTransactionHistory());
 
         // Close operation
         this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
@@ -144,6 +183,15 @@ class HushWalletFrame extends JFrame {
             public void windowClosing(WindowEvent e) {
                 HushWalletFrame.this.exitProgram();
             }
+
+            @Override
+            public void windowOpened(WindowEvent e) {
+                for (Component tab : tabs.getComponents()) {
+                    if (tab instanceof LazyLoadingTab) {
+                        ((LazyLoadingTab) tab).startLoading();
+                    }
+                }
+            }
         });
 
         // Show initial message
@@ -178,25 +226,16 @@ class HushWalletFrame extends JFrame {
                     "Disclaimer", JOptionPane.INFORMATION_MESSAGE
                                          );
         });
-
-        // Finally dispose of the progress dialog
-        if (progressDialog != null) {
-            progressDialog.doDispose();
-        }
     }
 
     public static void main(String argv[]) throws IOException {
         try {
-            OSUtil.OS_TYPE os = OSUtil.getOSType();
+            final OSUtil.OS_TYPE os = OSUtil.getOSType();
 
             // On Windows/Mac we log to a file only! - users typically do not use consoles
             if (os == OSUtil.OS_TYPE.WINDOWS || os == OSUtil.OS_TYPE.MAC_OS) {
                 redirectLoggingToFile();
             }
-            if (os != OSUtil.OS_TYPE.WINDOWS) {
-                possiblyCreateHUSHConfigFile(); // this is not run because on Win we have a batch file
-                // BRX-TODO: Remove batch file and handle this back in this GUI client again
-            }
 
             System.out.println("Starting HUSH Swing Wallet ...");
             System.out.println("OS: " + System.getProperty("os.name") + " = " + os);
@@ -204,66 +243,95 @@ class HushWalletFrame extends JFrame {
             System.out.println("Class path: " + System.getProperty("java.class.path"));
             System.out.println("Environment PATH: " + System.getenv("PATH"));
 
-            // Look and feel settings - for now a custom OS-look and feel is set for Windows,
-            // Mac OS will follow later.
-            if (os == OSUtil.OS_TYPE.WINDOWS) {
-                // Custom Windows L&F and font settings
-                UIManager.setLookAndFeel("com.sun.java.swing.plaf.windows.WindowsLookAndFeel");
-
-                // This font looks good but on Windows 7 it misses some chars like the stars...
-                //FontUIResource font = new FontUIResource("Lucida Sans Unicode", Font.PLAIN, 11);
-                //UIManager.put("Table.font", font);
-            } else {
-                for (LookAndFeelInfo ui : UIManager.getInstalledLookAndFeels()) {
-                    System.out.println("Available look and feel: " + ui.getName() + " " + ui.getClassName());
-                    if (ui.getName().equals("Nimbus")) {
-                        UIManager.setLookAndFeel(ui.getClassName());
-                        break;
-                    }
-                }
+            // Metrics for monitoring - the wallet works without them
+            try {
+                WalletMetrics.getInstance().registerMBean();
+            } catch (JMException jme) {
+                System.out.println("Could not register the wallet metrics with JMX: " + jme.getMessage());
+            }
+            try {
+                MetricsHttpEndpoint.startIfConfigured(WalletMetrics.getInstance());
+            } catch (IOException ioe) {
+                System.out.println("Could not start the metrics endpoint: " + ioe.getMessage());
             }
 
+            // Independent startup stages run at the same time - the timings are logged at the end
+            final StartupOrchestrator startup = new StartupOrchestrator();
+            final CompletableFuture<Void> lookAndFeel = startup.run("Look and feel", () -> setLookAndFeel(os));
+            final CompletableFuture<Void> configFile = startup.run("Configuration file", () -> {
+                if (os != OSUtil.OS_TYPE.WINDOWS) {
+                    possiblyCreateHUSHConfigFile(); // this is not run because on Win we have a batch file
+                    // BRX-TODO: Remove batch file and handle this back in this GUI client again
+                }
+            });
             // If hushd is currently not running, do a startup of the daemon as a child process
             // It may be started but not ready - then also show dialog
-            HushDaemonObserver initialInstallationObserver =
-                    new HushDaemonObserver(OSUtil.getProgramDirectory());
-            DaemonInfo hushdInfo = initialInstallationObserver.getDaemonInfo();
-            initialInstallationObserver = null;
-
-            HushCommandLineBridge initialClientCaller = new HushCommandLineBridge(OSUtil.getProgramDirectory());
-            boolean daemonStartInProgress = false;
-            try {
-                if (hushdInfo.status == DAEMON_STATUS.RUNNING) {
-                    HushCommandLineBridge.NetworkAndBlockchainInfo info = initialClientCaller.getNetworkAndBlockchainInfo();
-                    // If more than 20 minutes behind in the blockchain - startup in progress
-                    if ((System.currentTimeMillis() - info.lastBlockDate.getTime()) > (20 * 60 * 1000)) {
-                        System.out.println("Current blockchain synchronization date is" +
-                                                   new Date(info.lastBlockDate.getTime()));
-                        daemonStartInProgress = true;
+            final CompletableFuture<HushDaemonObserver> installationObserver = startup.supply(
+                    "Installation detection", () -> new HushDaemonObserver(OSUtil.getProgramDirectory()));
+            final CompletableFuture<DaemonInfo> daemonInfo = startup.supply(
+                    "Daemon detection", () -> startup.await(installationObserver).getDaemonInfo());
+            final CompletableFuture<HushCommandLineBridge> clientCaller = startup.supply(
+                    "Command line tools", () -> new HushCommandLineBridge(OSUtil.getProgramDirectory()));
+            final CompletableFuture<AddressBookStore> addressBook = startup.supply("Address book", () -> {
+                AddressBookStore store = new AddressBookStore(
+                        new AddressBookJournal(new File(OSUtil.getSettingsDirectory())));
+                store.load();
+                return store;
+            });
+            final CompletableFuture<Boolean> daemonStartInProgress = startup.supply("Blockchain check", () -> {
+                // hush-cli needs the configuration file
+                startup.await(configFile);
+                DaemonInfo hushdInfo = startup.await(daemonInfo);
+                try {
+                    if (hushdInfo.status == DAEMON_STATUS.RUNNING) {
+                        HushCommandLineBridge.NetworkAndBlockchainInfo info =
+                                startup.await(clientCaller).getNetworkAndBlockchainInfo();
+                        // If more than 20 minutes behind in the blockchain - startup in progress
+                        if ((System.currentTimeMillis() - info.lastBlockDate.getTime()) > (20 * 60 * 1000)) {
+                            System.out.println("Current blockchain synchronization date is" +
+                                                       new Date(info.lastBlockDate.getTime()));
+                            return true;
+                        }
+                    }
+                } catch (HushCommandLineBridge.WalletCallException wce) {
+                    if ((wce.getMessage().contains("{\"code\":-28")) || // Started but not ready
+                                (wce.getMessage().contains("error code: -28"))) {
+                        System.out.println("hushd is currently starting...");
+                        return true;
                     }
                 }
-            } catch (HushCommandLineBridge.WalletCallException wce) {
-                if ((wce.getMessage().contains("{\"code\":-28")) || // Started but not ready
-                            (wce.getMessage().contains("error code: -28"))) {
-                    System.out.println("hushd is currently starting...");
-                    daemonStartInProgress = true;
-                }
-            }
+                return false;
+            });
 
+            // Components are created only once the look and feel is set
+            startup.await(lookAndFeel);
             StartupProgressDialog startupBar = null;
-            if ((hushdInfo.status != DAEMON_STATUS.RUNNING) || (daemonStartInProgress)) {
+            if ((startup.await(daemonInfo).status != DAEMON_STATUS.RUNNING) || startup.await(daemonStartInProgress)) {
                 System.out.println(
                         "hushd is not runing at the moment or has not started/synchronized 100% - showing splash...");
-                startupBar = new StartupProgressDialog(initialClientCaller);
-                startupBar.setVisible(true);
-                startupBar.waitForStartup();
+                final StartupProgressDialog splash = new StartupProgressDialog(startup.await(clientCaller));
+                splash.setVisible(true);
+                startup.measure("Daemon startup", () -> {
+                    splash.waitForStartup();
+                    return null;
+                });
+                startupBar = splash;
             }
-            initialClientCaller = null;
 
-            // Main GUI is created here
-            HushWalletFrame ui = new HushWalletFrame(startupBar);
+            // Main GUI is created here - it is shown as soon as the overview has its data
+            final StartupProgressDialog progressDialog = startupBar;
+            HushWalletFrame ui = startup.measure("Main window", () -> new HushWalletFrame(
+                    progressDialog, startup.await(installationObserver), startup.await(clientCaller),
+                    startup.await(addressBook), startup));
+            startup.await(ui.overviewLoaded);
             ui.setVisible(true);
 
+            // Finally dispose of the progress dialog
+            if (startupBar != null) {
+                startupBar.doDispose();
+            }
+            startup.finish();
+
         } catch (InstallationDetectionException ide) {
             ide.printStackTrace();
             JOptionPane.showMessageDialog(
@@ -311,6 +379,28 @@ class HushWalletFrame extends JFrame {
         }
     }
 
+    // Look and feel settings - for now a custom OS-look and feel is set for Windows,
+    // Mac OS will follow later.
+    private static void setLookAndFeel(OSUtil.OS_TYPE os)
+            throws Exception {
+        if (os == OSUtil.OS_TYPE.WINDOWS) {
+            // Custom Windows L&F and font settings
+            UIManager.setLookAndFeel("com.sun.java.swing.plaf.windows.WindowsLookAndFeel");
+
+            // This font looks good but on Windows 7 it misses some chars like the stars...
+            //FontUIResource font = new FontUIResource("Lucida Sans Unicode", Font.PLAIN, 11);
+            //UIManager.put("Table.font", font);
+        } else {
+            for (LookAndFeelInfo ui : UIManager.getInstalledLookAndFeels()) {
+                System.out.println("Available look and feel: " + ui.getName() + " " + ui.getClassName());
+                if (ui.getName().equals("Nimbus")) {
+                    UIManager.setLookAndFeel(ui.getClassName());
+                    break;
+                }
+            }
+        }
+    }
+
     private static void redirectLoggingToFile()
             throws IOException {
         // Initialize log to a file
@@ -387,6 +477,9 @@ class HushWalletFrame extends JFrame {
         this.dashboard.stopThreadsAndTimers();
         this.addresses.stopThreadsAndTimers();
         this.sendPanel.stopThreadsAndTimers();
+        this.balanceService.stop();
+        this.operationTracker.stop();
+        this.sendQueue.stop();
 
 //        Integer blockchainProgress = this.dashboard.getBlockchainPercentage();
 //
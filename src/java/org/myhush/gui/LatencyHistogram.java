@@ -0,0 +1,133 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+/**
+ * Histogram of durations in microseconds with log-linear buckets (as HdrHistogram has them): each
+ * power of two is split into 16 buckets, so a percentile is off by at most 1/16 of its value, with
+ * a fixed, small memory footprint however many values are recorded. Also counts the values
+ * recorded within the last minute.
+ */
+class LatencyHistogram {
+    // Values below 2^SUB_BUCKET_BITS are counted exactly
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Larger values - about 25 days - are counted as this
+    private static final long MAX_VALUE = (1L << 41) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+    private static final int RATE_SECONDS = 60;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    // Values recorded per second of the last minute - a slot is reused when its second is over
+    private final long[] secondCounts = new long[RATE_SECONDS];
+    private final long[] secondOfSlot = new long[RATE_SECONDS];
+
+    public void recordNanos(long nanos) {
+        this.recordMicros(nanos / 1000);
+    }
+
+    public synchronized void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        this.counts[bucketIndex(value)]++;
+        this.count++;
+        this.sum += value;
+        this.max = Math.max(this.max, value);
+
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % RATE_SECONDS);
+        if (this.secondOfSlot[slot] != second) {
+            this.secondOfSlot[slot] = second;
+            this.secondCounts[slot] = 0;
+        }
+        this.secondCounts[slot]++;
+    }
+
+    public synchronized Snapshot snapshot() {
+        long second = System.currentTimeMillis() / 1000;
+        long lastMinute = 0;
+        for (int i = 0; i < RATE_SECONDS; i++) {
+            if ((second - this.secondOfSlot[i]) < RATE_SECONDS) {
+                lastMinute += this.secondCounts[i];
+            }
+        }
+
+        return new Snapshot(this.counts.clone(), this.count, this.sum, this.max, lastMinute);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + subBucket;
+    }
+
+    // The largest value counted in a bucket
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = (index / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + ((index % SUB_BUCKETS) * width) + width - 1;
+    }
+
+
+    /**
+     * The state of a histogram at one point in time - immutable. All values are in microseconds.
+     */
+    static class Snapshot {
+        private final long[] counts;
+        final long count;
+        final long sum;
+        final long max;
+        // Values recorded within the last minute
+        final long lastMinuteCount;
+
+        Snapshot(long[] counts, long count, long sum, long max, long lastMinuteCount) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.lastMinuteCount = lastMinuteCount;
+        }
+
+        /**
+         * @param percentile e.g. 99.0
+         * @return the value not exceeded by the given percentage of the values - 0 if there are none
+         */
+        long getPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.count));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+        // Number of values up to the given one - exact only at bucket bounds
+        long getCountAtOrBelow(long value) {
+            long result = 0;
+            for (int i = 0; (i < this.counts.length) && (bucketUpperBound(i) <= value); i++) {
+                result += this.counts[i];
+            }
+            return result;
+        }
+    }
+}
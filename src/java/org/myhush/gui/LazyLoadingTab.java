@@ -0,0 +1,18 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+/**
+ * A wallet tab that is constructed with a placeholder and loads its data only later - the first
+ * time it is selected or in the background once the main window has been shown. So the window
+ * does not wait for data the user does not see yet.
+ */
+interface LazyLoadingTab {
+    /**
+     * Starts loading the data of the tab - called in the event dispatch thread, possibly many times.
+     * Only the first call does anything.
+     */
+    void startLoading();
+}
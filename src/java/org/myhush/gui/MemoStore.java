@@ -0,0 +1,135 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the memos of received Z transactions. Memos are captured (and decoded once) while the
+ * transactions are synchronized, so looking up the memo of a transaction costs no wallet call.
+ * Thread-safe.
+ */
+class MemoStore {
+    // First memo byte meaning "no memo" - the rest of the memo is zeros then
+    private static final int NO_MEMO_MARKER = 0xF6;
+    // Memos starting with a byte above this one are not text (e.g. 0xF5 = arbitrary binary data)
+    private static final int MAX_TEXT_FIRST_BYTE = 0xF4;
+
+    // Key is txid + address since one transaction may pay several of our addresses
+    private final Map<String, MemoEntry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Stores the memo of a received output.
+     *
+     * @param txID    transaction ID
+     * @param address receiving Z address
+     * @param hexMemo the memo as returned by z_listreceivedbyaddress - may be null
+     */
+    public void put(String txID, String address, String hexMemo) {
+        String key = key(txID, address);
+        MemoEntry existing = this.entries.get(key);
+        // The memo of an output never changes - decode it only once
+        if ((existing != null) && ((hexMemo == null) || hexMemo.equals(existing.hexMemo))) {
+            return;
+        }
+
+        this.entries.put(key, new MemoEntry(txID, address, hexMemo, decodeMemo(hexMemo)));
+    }
+
+    // True if the outputs of the transaction to the address have been stored - even with no memo
+    public boolean contains(String txID, String address) {
+        return this.entries.containsKey(key(txID, address));
+    }
+
+    // Null if there is no (text) memo or the transaction is not known
+    public String getMemo(String txID, String address) {
+        MemoEntry entry = this.entries.get(key(txID, address));
+        return (entry != null) ? entry.memo : null;
+    }
+
+    /**
+     * Finds all memos containing the text - case insensitive.
+     *
+     * @param text the text to search for
+     * @return the matching entries
+     */
+    public List<MemoEntry> search(String text) {
+        String lowerCaseText = text.toLowerCase(Locale.ROOT);
+        List<MemoEntry> result = new ArrayList<>();
+        for (MemoEntry entry : this.entries.values()) {
+            if ((entry.memo != null) && entry.lowerCaseMemo.contains(lowerCaseText)) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Decodes a hex memo as UTF-8 text. Trailing zero bytes are padding.
+     *
+     * @param hexMemo the memo in hex - may be null
+     * @return the memo text or null if there is no text memo
+     */
+    static String decodeMemo(String hexMemo) {
+        if ((hexMemo == null) || (hexMemo.length() < 2)) {
+            return null;
+        }
+
+        byte[] memo;
+        try {
+            memo = HexCodec.decode(hexMemo);
+        } catch (IllegalArgumentException iae) {
+            System.out.println("Memo is not valid hex: " + hexMemo);
+            return null;
+        }
+
+        int first = memo[0] & 0xFF;
+        if ((first == NO_MEMO_MARKER) || (first > MAX_TEXT_FIRST_BYTE)) {
+            return null;
+        }
+
+        int length = memo.length;
+        while ((length > 0) && (memo[length - 1] == 0)) {
+            length--;
+        }
+
+        return (length > 0) ? new String(memo, 0, length, StandardCharsets.UTF_8) : null;
+    }
+
+    private static String key(String txID, String address) {
+        return txID + '/' + address;
+    }
+
+
+    /**
+     * Memo of one received output - immutable.
+     */
+    static class MemoEntry {
+        final String txID;
+        final String address;
+        final String hexMemo;
+        // Null if there is no text memo
+        final String memo;
+        private final String lowerCaseMemo;
+
+        MemoEntry(String txID, String address, String hexMemo, String memo) {
+            this.txID = txID;
+            this.address = address;
+            this.hexMemo = hexMemo;
+            this.memo = memo;
+            this.lowerCaseMemo = (memo != null) ? memo.toLowerCase(Locale.ROOT) : null;
+        }
+    }
+}
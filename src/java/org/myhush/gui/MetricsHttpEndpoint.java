@@ -0,0 +1,191 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Serves the wallet metrics at http://127.0.0.1:PORT/metrics in the Prometheus text format, so
+ * that the wallets of many hosts may be scraped. Enabled only if the port is set by the system
+ * property hush.metrics.port. It listens on the loopback interface only - remote scrapers need a
+ * tunnel or a local agent.
+ */
+class MetricsHttpEndpoint {
+    static final String PORT_PROPERTY = "hush.metrics.port";
+
+    private static final String PREFIX = "hush_wallet_";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // Upper bounds of the histogram buckets in seconds - hush-cli calls take milliseconds to minutes
+    private static final double[] BUCKET_BOUNDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300
+    };
+
+    private final WalletMetrics metrics;
+    private final HttpServer server;
+
+    MetricsHttpEndpoint(WalletMetrics metrics, int port)
+            throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/metrics", this::handle);
+        // One thread is plenty for a scrape every few seconds
+        this.server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Metrics HTTP endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Starts the endpoint if the port is configured.
+     *
+     * @return the started endpoint - null if not configured
+     */
+    static MetricsHttpEndpoint startIfConfigured(WalletMetrics metrics)
+            throws IOException {
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null) {
+            return null;
+        }
+
+        MetricsHttpEndpoint endpoint = new MetricsHttpEndpoint(metrics, port);
+        endpoint.start();
+        return endpoint;
+    }
+
+    public void start() {
+        this.server.start();
+        System.out.println("Serving metrics at http://" + this.server.getAddress().getAddress().getHostAddress() +
+                                   ":" + this.server.getAddress().getPort() + "/metrics");
+    }
+
+    public void stop() {
+        this.server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange)
+            throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!exchange.getRequestURI().getPath().equals("/metrics")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = this.format().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // All metrics in the Prometheus text format - counters get the _total suffix, durations are in seconds
+    String format() {
+        StringBuilder text = new StringBuilder();
+
+        for (Map.Entry<String, List<Map.Entry<WalletMetrics.MetricName, WalletMetrics.Counter>>> family :
+                byFamily(this.metrics.counters()).entrySet()) {
+            String name = PREFIX + family.getKey() + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<WalletMetrics.MetricName, WalletMetrics.Counter> entry : family.getValue()) {
+                appendSample(text, name, entry.getKey(), null, entry.getValue().get());
+            }
+        }
+
+        for (Map.Entry<String, List<Map.Entry<WalletMetrics.MetricName, DoubleSupplier>>> family :
+                byFamily(this.metrics.gauges()).entrySet()) {
+            String name = PREFIX + family.getKey();
+            text.append("# TYPE ").append(name).append(" gauge\n");
+            for (Map.Entry<WalletMetrics.MetricName, DoubleSupplier> entry : family.getValue()) {
+                appendSample(text, name, entry.getKey(), null, entry.getValue().getAsDouble());
+            }
+        }
+
+        for (Map.Entry<String, List<Map.Entry<WalletMetrics.MetricName, LatencyHistogram>>> family :
+                byFamily(this.metrics.histograms()).entrySet()) {
+            String name = PREFIX + family.getKey() + "_seconds";
+            text.append("# TYPE ").append(name).append(" histogram\n");
+            for (Map.Entry<WalletMetrics.MetricName, LatencyHistogram> entry : family.getValue()) {
+                LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+                for (double bound : BUCKET_BOUNDS) {
+                    // Counts exactly only at the bounds of the log-linear buckets - never too many
+                    appendSample(text, name + "_bucket", entry.getKey(), formatValue(bound),
+                            snapshot.getCountAtOrBelow((long) (bound * 1000000)));
+                }
+                appendSample(text, name + "_bucket", entry.getKey(), "+Inf", snapshot.count);
+                appendSample(text, name + "_sum", entry.getKey(), null, snapshot.sum / 1000000.0);
+                appendSample(text, name + "_count", entry.getKey(), null, snapshot.count);
+            }
+        }
+
+        return text.toString();
+    }
+
+    // The maps of the registry are sorted by name - a family may still be split by similar names
+    private static <T> Map<String, List<Map.Entry<WalletMetrics.MetricName, T>>> byFamily(
+            Map<WalletMetrics.MetricName, T> metrics) {
+        Map<String, List<Map.Entry<WalletMetrics.MetricName, T>>> families = new LinkedHashMap<>();
+        for (Map.Entry<WalletMetrics.MetricName, T> entry : metrics.entrySet()) {
+            families.computeIfAbsent(entry.getKey().family, family -> new ArrayList<>()).add(entry);
+        }
+        return families;
+    }
+
+    private static void appendSample(StringBuilder text, String name, WalletMetrics.MetricName metricName,
+                                     String le, double value) {
+        text.append(name);
+        if ((metricName.labelName != null) || (le != null)) {
+            text.append('{');
+            if (metricName.labelName != null) {
+                text.append(metricName.labelName).append("=\"").append(escape(metricName.labelValue)).append('"');
+                if (le != null) {
+                    text.append(',');
+                }
+            }
+            if (le != null) {
+                text.append("le=\"").append(le).append('"');
+            }
+            text.append('}');
+        }
+        text.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(double value) {
+        if ((value == Math.rint(value)) && (Math.abs(value) < 1e15)) {
+            return String.valueOf((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,209 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks asynchronous wallet operations (z_sendmany). All pending operations are polled off the
+ * EDT with a single z_getoperationstatus call per tick, so many concurrent sends cost one RPC.
+ * Completed operations are cleared from the wallet with z_getoperationresult, their final status
+ * is cached and listeners are notified on the EDT.
+ */
+class OperationTracker {
+    // Interval in ms between polls
+    private static final int POLL_INTERVAL = 2000;
+    // An operation missing from this many consecutive status responses is considered lost (e.g. restarted daemon)
+    private static final int MAX_MISSING_POLLS = 3;
+    // Number of final statuses kept in memory
+    private static final int MAX_FINAL_STATUSES = 1000;
+
+    private final HushCommandLineBridge clientCaller;
+    private final DataGatheringThread<Integer> pollingThread;
+
+    // Pending operation ID -> number of consecutive polls it was missing from the response
+    private final Map<String, Integer> pendingOperations = new LinkedHashMap<>();
+    private final Map<String, OperationListener> operationListeners = new HashMap<>();
+    private final Map<String, OperationStatus> finalStatuses = new LinkedHashMap<String, OperationStatus>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OperationStatus> eldest) {
+            return this.size() > MAX_FINAL_STATUSES;
+        }
+    };
+    private final List<OperationListener> listeners = new CopyOnWriteArrayList<>();
+
+    OperationTracker(HushCommandLineBridge clientCaller, StatusUpdateErrorReporter errorReporter) {
+        this.clientCaller = clientCaller;
+        this.pollingThread = new DataGatheringThread<>("operation status", this::poll, errorReporter, POLL_INTERVAL);
+        this.pollingThread.setSkipCondition(clientCaller::isWalletImportRunning);
+    }
+
+    /**
+     * Starts tracking an operation.
+     *
+     * @param operationID the ID returned by z_sendmany
+     * @param listener    notified on the EDT when this operation completes - may be null
+     */
+    public synchronized void track(String operationID, OperationListener listener) {
+        this.pendingOperations.put(operationID, 0);
+        if (listener != null) {
+            this.operationListeners.put(operationID, listener);
+        }
+    }
+
+    // The listener is notified on the EDT of every completed operation
+    public void addListener(OperationListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(OperationListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    public synchronized boolean isPending(String operationID) {
+        return this.pendingOperations.containsKey(operationID);
+    }
+
+    public synchronized List<String> getPendingOperationIDs() {
+        return new ArrayList<>(this.pendingOperations.keySet());
+    }
+
+    // Null if the operation is still pending or unknown
+    public synchronized OperationStatus getFinalStatus(String operationID) {
+        return this.finalStatuses.get(operationID);
+    }
+
+    public void stop() {
+        this.pollingThread.setSuspended(true);
+    }
+
+    // One tick - returns the number of operations still pending
+    private Integer poll()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        List<String> operationIDs = this.getPendingOperationIDs();
+        if (operationIDs.isEmpty()) {
+            return 0;
+        }
+
+        JsonArray response = this.clientCaller.getOperationStatuses(operationIDs);
+
+        Set<String> requested = new HashSet<>(operationIDs);
+        Set<String> reported = new HashSet<>();
+        List<OperationStatus> completed = new ArrayList<>();
+        for (JsonValue value : response) {
+            JsonObject jsonStatus = value.asObject();
+            String operationID = jsonStatus.getString("id", null);
+            String status = jsonStatus.getString("status", "ERROR");
+            if ((operationID == null) || (!requested.contains(operationID))) {
+                continue;
+            }
+            reported.add(operationID);
+
+            if (status.equalsIgnoreCase("success")) {
+                completed.add(new OperationStatus(operationID, true, null));
+            } else if (status.equalsIgnoreCase("error") ||
+                               status.equalsIgnoreCase("failed") ||
+                               status.equalsIgnoreCase("cancelled")) {
+                completed.add(new OperationStatus(operationID, false, getErrorMessage(jsonStatus)));
+            } else if (!(status.equalsIgnoreCase("executing") || status.equalsIgnoreCase("queued"))) {
+                completed.add(new OperationStatus(
+                        operationID, false, "Unexpected status response from wallet: " + jsonStatus));
+            }
+        }
+
+        // Clear the completed operations from the wallet memory - the status is already known
+        if (!completed.isEmpty()) {
+            List<String> completedIDs = new ArrayList<>();
+            for (OperationStatus status : completed) {
+                completedIDs.add(status.operationID);
+            }
+            this.clientCaller.getOperationResults(completedIDs);
+        }
+
+        final List<OperationStatus> notifications = new ArrayList<>();
+        final List<OperationListener> notificationListeners = new ArrayList<>();
+        int stillPending;
+        synchronized (this) {
+            for (String operationID : operationIDs) {
+                if ((!reported.contains(operationID)) && this.pendingOperations.containsKey(operationID)) {
+                    int missing = this.pendingOperations.get(operationID) + 1;
+                    this.pendingOperations.put(operationID, missing);
+                    if (missing >= MAX_MISSING_POLLS) {
+                        completed.add(new OperationStatus(operationID, false, "The operation is unknown to the wallet."));
+                    }
+                }
+            }
+
+            for (OperationStatus status : completed) {
+                this.pendingOperations.remove(status.operationID);
+                this.finalStatuses.put(status.operationID, status);
+                notifications.add(status);
+                notificationListeners.add(this.operationListeners.remove(status.operationID));
+            }
+            stillPending = this.pendingOperations.size();
+        }
+
+        for (OperationStatus status : notifications) {
+            System.out.println("Operation " + status.operationID + " completed " +
+                                       (status.successful ? "successfully." : "with error: " + status.errorMessage));
+        }
+
+        if (!notifications.isEmpty()) {
+            SwingUtilities.invokeLater(() -> {
+                for (int i = 0; i < notifications.size(); i++) {
+                    OperationStatus status = notifications.get(i);
+                    if (notificationListeners.get(i) != null) {
+                        notificationListeners.get(i).operationCompleted(status);
+                    }
+                    for (OperationListener listener : OperationTracker.this.listeners) {
+                        listener.operationCompleted(status);
+                    }
+                }
+            });
+        }
+
+        return stillPending;
+    }
+
+    private static String getErrorMessage(JsonObject jsonStatus) {
+        JsonValue jsonError = jsonStatus.get("error");
+        if ((jsonError != null) && jsonError.isObject()) {
+            return jsonError.asObject().getString("message", "ERROR!");
+        }
+        return "ERROR!";
+    }
+
+
+    /**
+     * Final status of a completed operation - immutable.
+     */
+    static class OperationStatus {
+        final String operationID;
+        final boolean successful;
+        // Null for successful operations
+        final String errorMessage;
+
+        OperationStatus(String operationID, boolean successful, String errorMessage) {
+            this.operationID = operationID;
+            this.successful = successful;
+            this.errorMessage = errorMessage;
+        }
+    }
+
+
+    /**
+     * Notified on the EDT when an operation completes.
+     */
+    interface OperationListener {
+        void operationCompleted(OperationStatus status);
+    }
+}
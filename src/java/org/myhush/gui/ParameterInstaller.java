@@ -0,0 +1,174 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Installs the parameter files bundled with the wallet (e.g. sprout-verifying.key) into the
+ * parameters directory of the daemon. A file is written only if the installed one differs from the
+ * bundled one by size or SHA-256 digest - the digest of the bundled file is computed by the build
+ * (resource name + ".sha256"). A new file is written next to the old one and renamed over it, so
+ * the daemon never sees a partially written file.
+ */
+class ParameterInstaller {
+    private final File paramsDirectory;
+
+    ParameterInstaller(File paramsDirectory) {
+        this.paramsDirectory = paramsDirectory;
+    }
+
+    /**
+     * Moves the files of another parameters directory into this one - unless this one has them
+     * already. The other directory is removed if it is empty afterwards.
+     *
+     * @param otherDirectory the directory to migrate from - nothing is done if it does not exist
+     */
+    public void migrateFrom(File otherDirectory)
+            throws IOException {
+        File[] files = otherDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        if (!this.paramsDirectory.exists() && !this.paramsDirectory.mkdirs()) {
+            throw new IOException("Could not create the parameters directory " + this.paramsDirectory);
+        }
+
+        for (File file : files) {
+            File target = new File(this.paramsDirectory, file.getName());
+            if (file.isFile() && !target.exists()) {
+                // A rename within the file system - the verification stamps stay valid
+                moveFile(file, target);
+                System.out.println("Moved parameter file " + file + " to " + this.paramsDirectory);
+            }
+        }
+
+        String[] remaining = otherDirectory.list();
+        if ((remaining != null) && (remaining.length == 0) && otherDirectory.delete()) {
+            System.out.println("Removed the migrated parameters directory " + otherDirectory);
+        }
+    }
+
+    /**
+     * Installs a bundled file unless it is installed already.
+     *
+     * @param resourceName the name of the bundled resource, e.g. keys/sprout-verifying.key
+     * @param fileName     the name of the installed file
+     * @return true if the file has been written
+     */
+    public boolean install(String resourceName, String fileName)
+            throws IOException {
+        ClassLoader classLoader = ParameterInstaller.class.getClassLoader();
+        URL resource = classLoader.getResource(resourceName);
+        if (resource == null) {
+            throw new IOException("Missing bundled parameter file " + resourceName);
+        }
+
+        long expectedSize = resource.openConnection().getContentLengthLong();
+        String expectedDigest = readBundledDigest(resourceName);
+        byte[] data = null;
+        if (expectedDigest == null) {
+            // E.g. run from the sources, not from the built JAR - the digest is computed now
+            data = readResource(resource);
+            expectedSize = data.length;
+            expectedDigest = sha256(data);
+        }
+
+        // The installed file is read only if it has the right size
+        File target = new File(this.paramsDirectory, fileName);
+        if (target.isFile() && (target.length() == expectedSize) &&
+                    expectedDigest.equalsIgnoreCase(sha256(Files.readAllBytes(target.toPath())))) {
+            return false;
+        }
+
+        if (data == null) {
+            data = readResource(resource);
+            if (!expectedDigest.equalsIgnoreCase(sha256(data))) {
+                throw new IOException("The bundled parameter file " + resourceName + " is damaged");
+            }
+        }
+
+        File newFile = new File(this.paramsDirectory, fileName + ".tmp");
+        try (FileChannel channel = FileChannel.open(newFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        moveFile(newFile, target);
+
+        System.out.println("Installed parameter file " + target);
+        return true;
+    }
+
+    // The digest computed by the build - null if there is none (not built with Ant)
+    private static String readBundledDigest(String resourceName)
+            throws IOException {
+        try (InputStream is = ParameterInstaller.class.getClassLoader().getResourceAsStream(resourceName + ".sha256")) {
+            if (is == null) {
+                return null;
+            }
+            // The file may also hold the file name after the digest
+            String text = new String(readFully(is), StandardCharsets.US_ASCII).trim();
+            int end = 0;
+            while ((end < text.length()) && (Character.digit(text.charAt(end), 16) >= 0)) {
+                end++;
+            }
+            return (end == 64) ? text.substring(0, end) : null;
+        }
+    }
+
+    private static byte[] readResource(URL resource)
+            throws IOException {
+        try (InputStream is = resource.openStream()) {
+            return readFully(is);
+        }
+    }
+
+    private static byte[] readFully(InputStream is)
+            throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+            data.write(buffer, 0, read);
+        }
+        return data.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexCodec.encode(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException impossible) {
+            throw new RuntimeException(impossible);
+        }
+    }
+
+    private static void moveFile(File source, File target)
+            throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
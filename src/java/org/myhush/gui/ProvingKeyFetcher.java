@@ -5,13 +5,13 @@
 package org.myhush.gui;
 
 import javax.swing.*;
-import javax.xml.bind.DatatypeConverter;
 import java.awt.*;
 import java.io.*;
 import java.net.URL;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Fetches the proving key
@@ -22,36 +22,34 @@ class ProvingKeyFetcher {
 
     private static final int PROVING_KEY_SIZE = 910173851;
     private static final String SHA256 = "8bc20a7f013b2b58970cddd2e7ea028975c88ae7ceb9259a5344a16bc2c0eef7";
-    private static final String pathURL = "https://zcash.dl.mercerweiss.com/sprout-proving.key";
-    // TODO: add backups
-
-    private static void copy(InputStream is, OutputStream os) throws IOException {
-        byte[] buf = new byte[0x1 << 13];
-        int read;
-        while ((read = is.read(buf)) > -0) {
-            os.write(buf, 0, read);
-        }
-        os.flush();
-    }
+    // Tried in this order - a part of the key failing on one server is downloaded from the next one
+    private static final String[] MIRROR_URLS = {
+            "https://zcash.dl.mercerweiss.com/sprout-proving.key",
+            "https://z.cash/downloads/sprout-proving.key"
+    };
+    // Number of parallel connections of the download
+    private static final int DOWNLOAD_CONNECTIONS = 4;
+    // Set to true to verify a key trusted by its stamp once more in the background
+    private static final String REVERIFY_PROPERTY = "hush.provingkey.reverify";
 
+    // Hashes the whole key with a progress monitor - cancelling throws InterruptedIOException
     private static boolean checkSHA256(File provingKey, Component parent) throws IOException {
-        MessageDigest sha256;
-        try {
-            sha256 = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException impossible) {
-            throw new RuntimeException(impossible);
-        }
-        try (InputStream is = new BufferedInputStream(new FileInputStream(provingKey))) {
-            ProgressMonitorInputStream pmis = new ProgressMonitorInputStream(parent, "Verifying proving key", is);
-            pmis.getProgressMonitor().setMaximum(PROVING_KEY_SIZE);
-            pmis.getProgressMonitor().setMillisToPopup(10);
-            DigestInputStream dis = new DigestInputStream(pmis, sha256);
-            byte[] temp = new byte[0x1 << 13];
-            while (dis.read(temp) >= 0) {
-                /* do the thing */
+        final ProgressMonitor progressMonitor = new ProgressMonitor(parent, "Verifying proving key", null, 0, 1000);
+        progressMonitor.setMillisToPopup(10);
+
+        final FileDigester digester = new FileDigester(provingKey, PROVING_KEY_SIZE);
+        digester.setProgressListener(hashed -> SwingUtilities.invokeLater(() -> {
+            if (progressMonitor.isCanceled()) {
+                digester.cancel();
+            } else {
+                progressMonitor.setProgress((int) (hashed * 1000 / PROVING_KEY_SIZE));
             }
-            byte[] digest = sha256.digest();
-            return SHA256.equalsIgnoreCase(DatatypeConverter.printHexBinary(digest));
+        }));
+
+        try {
+            return SHA256.equalsIgnoreCase(HexCodec.encode(digester.digest()));
+        } finally {
+            SwingUtilities.invokeLater(progressMonitor::close);
         }
     }
 
@@ -64,8 +62,9 @@ class ProvingKeyFetcher {
         }
     }
 
-    // BRX-TODO: Automatically move ZcashParams over to HushParams if it exists
     private void verifyOrFetch(StartupProgressDialog parent) throws IOException {
+        // hushd reads the parameters from ZcashParams (as zcashd does) - files placed into a HushParams
+        // directory are moved over to it, so that e.g. a proving key there is not downloaded again
         File zCashParams = new File(System.getenv("APPDATA") + "/ZcashParams");
         zCashParams = zCashParams.getCanonicalFile();
 
@@ -75,63 +74,145 @@ class ProvingKeyFetcher {
             zCashParams.mkdirs();
         }
 
-        // verifying key is small, always copy it
-        File verifyingKeyFile = new File(zCashParams, "sprout-verifying.key");
-        FileOutputStream fos = new FileOutputStream(verifyingKeyFile);
-        InputStream is = ProvingKeyFetcher.class.getClassLoader().getResourceAsStream("keys/sprout-verifying.key");
-        copy(is, fos);
-        fos.close();
-        is = null;
+        ParameterInstaller installer = new ParameterInstaller(zCashParams);
+        installer.migrateFrom(new File(System.getenv("APPDATA") + "/HushParams").getCanonicalFile());
+
+        // The verifying key is small - it is written only if it differs from the bundled one
+        installer.install("keys/sprout-verifying.key", "sprout-verifying.key");
 
         File provingKeyFile = new File(zCashParams, "sprout-proving.key");
         provingKeyFile = provingKeyFile.getCanonicalFile();
+        // Written once the key has been verified - while it matches the key, the key is not hashed again
+        File stampFile = new File(zCashParams, "sprout-proving.key.verified");
         if (!provingKeyFile.exists()) {
             needsFetch = true;
         } else if (provingKeyFile.length() != PROVING_KEY_SIZE) {
             needsFetch = true;
-        }
-        /*
-         * We skip proving key verification every start - this is impractical.
-         * If the proving key exists and is the correct size, then it should be OK.
-        else
-        {
+        } else if (VerificationStamp.isVerified(provingKeyFile, stampFile, SHA256)) {
+            if (Boolean.getBoolean(REVERIFY_PROPERTY)) {
+                reverifyInBackground(provingKeyFile, stampFile, parent);
+            }
+        } else {
+            // E.g. a key downloaded by an older version - verified once
             parent.setProgressText("Verifying proving key...");
-            needsFetch = !checkSHA256(provingKeyFile,parent);
-        }*/
+            needsFetch = !checkSHA256(provingKeyFile, parent);
+            if (!needsFetch) {
+                VerificationStamp.of(provingKeyFile, SHA256).write(stampFile);
+            }
+        }
 
         if (!needsFetch) {
             return;
         }
 
+        // The key is downloaded into another file - a partial download must never pass the size check
+        File downloadFile = new File(zCashParams, "sprout-proving.key.download");
+        boolean resuming = new File(downloadFile.getPath() + ".parts").exists();
+
         JOptionPane.showMessageDialog(
                 parent,
-                "The wallet needs to download the Z cryptographic proving key (approx. 900 MB).\n" +
+                (resuming ?
+                         "The wallet needs to finish the download of the Z cryptographic proving key (approx. 900 MB).\n" :
+                         "The wallet needs to download the Z cryptographic proving key (approx. 900 MB).\n") +
                         "This will be done only once. Please be patient... Press OK to continue");
 
         parent.setProgressText("Downloading proving key...");
-        provingKeyFile.delete();
-        OutputStream os = new BufferedOutputStream(new FileOutputStream(provingKeyFile));
-        URL keyURL = new URL(pathURL);
-        try {
-            is = keyURL.openStream();
-            ProgressMonitorInputStream pmis = new ProgressMonitorInputStream(parent, "Downloading proving key", is);
-            pmis.getProgressMonitor().setMaximum(PROVING_KEY_SIZE);
-            pmis.getProgressMonitor().setMillisToPopup(10);
+        stampFile.delete();
+        String digest = download(downloadFile, parent);
 
-            copy(pmis, os);
-            os.close();
-        } finally {
+        if (!SHA256.equalsIgnoreCase(digest)) {
+            // Corrupt - the next attempt starts anew
+            downloadFile.delete();
+            JOptionPane.showMessageDialog(parent, "Failed to download proving key properly. Cannot continue!");
+            System.exit(-4);
+        }
+
+        Files.move(downloadFile.toPath(), provingKeyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        VerificationStamp.of(provingKeyFile, digest).write(stampFile);
+    }
+
+    // Hashes a key trusted by its stamp once more - the stamp is removed if the key has been damaged
+    private static void reverifyInBackground(final File provingKeyFile, final File stampFile, final Component parent) {
+        Thread thread = new Thread(() -> {
             try {
-                if (is != null) {
-                    is.close();
+                String digest = HexCodec.encode(new FileDigester(provingKeyFile, PROVING_KEY_SIZE).digest());
+                if (SHA256.equalsIgnoreCase(digest)) {
+                    System.out.println("Proving key verified again successfully.");
+                    return;
                 }
-            } catch (IOException ignore) {
+
+                System.out.println("Proving key is damaged - SHA-256: " + digest);
+                stampFile.delete();
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+                        parent,
+                        "The proving key " + provingKeyFile.getAbsolutePath() + " is damaged.\n" +
+                                "It will be verified and downloaded again on the next start of the wallet.",
+                        "Damaged proving key", JOptionPane.WARNING_MESSAGE));
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
             }
+        }, "Proving key verification");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Downloads the key with a progress monitor - an interrupted download is resumed. The key is
+     * hashed while it is being downloaded, as far as its beginning is complete.
+     *
+     * @return the hex SHA-256 digest of the downloaded key
+     */
+    private static String download(File downloadFile, Component parent)
+            throws IOException {
+        List<URL> mirrors = new ArrayList<>();
+        for (String mirrorURL : MIRROR_URLS) {
+            mirrors.add(new URL(mirrorURL));
         }
-        parent.setProgressText("Verifying downloaded proving key...");
-        if (!checkSHA256(provingKeyFile, parent)) {
-            JOptionPane.showMessageDialog(parent, "Failed to download proving key properly. Cannot continue!");
-            System.exit(-4);
+
+        final ProgressMonitor progressMonitor = new ProgressMonitor(parent, "Downloading proving key", null, 0, 1000);
+        progressMonitor.setMillisToDecideToPopup(10);
+        progressMonitor.setMillisToPopup(10);
+
+        final RangedDownloader[] downloader = new RangedDownloader[1];
+        downloader[0] = new RangedDownloader(mirrors, downloadFile, PROVING_KEY_SIZE, DOWNLOAD_CONNECTIONS,
+                (downloaded, total) -> SwingUtilities.invokeLater(() -> {
+                    // Cancelling stops the download - it is resumed on the next start
+                    if (progressMonitor.isCanceled()) {
+                        downloader[0].cancel();
+                    } else {
+                        progressMonitor.setProgress((int) (downloaded * 1000 / total));
+                        progressMonitor.setNote((downloaded / (1024 * 1024)) + " of " + (total / (1024 * 1024)) + " MB");
+                    }
+                }));
+
+        // The digest thread reads what has just been written - mostly still in the file system cache
+        final FileDigester digester = new FileDigester(downloadFile, PROVING_KEY_SIZE);
+        digester.setAvailableLength(downloader[0]::getContiguousLength);
+        final Object[] digestResult = new Object[1];
+        Thread digestThread = new Thread(() -> {
+            try {
+                digestResult[0] = digester.digest();
+            } catch (IOException ioe) {
+                digestResult[0] = ioe;
+            }
+        }, "Proving key hashing");
+        digestThread.start();
+
+        try {
+            downloader[0].download();
+            SwingUtilities.invokeLater(() -> progressMonitor.setNote("Verifying..."));
+            digestThread.join();
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException("Verification of the proving key interrupted");
+        } finally {
+            digester.cancel();
+            SwingUtilities.invokeLater(progressMonitor::close);
+        }
+
+        if (digestResult[0] instanceof IOException) {
+            throw (IOException) digestResult[0];
         }
+        return HexCodec.encode((byte[]) digestResult[0]);
     }
 }
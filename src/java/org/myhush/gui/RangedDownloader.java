@@ -0,0 +1,387 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a big file of known size with HTTP Range requests. The file is split into segments
+ * which several connections download in parallel, each writing at its own position of the
+ * preallocated file. The position reached in every segment is kept in a segment map file next to
+ * the file (name.parts), so a download interrupted by a crash or by the user resumes where it has
+ * stopped. A segment failing on one server is retried on the next one of the mirrors.
+ * <p>
+ * {@link #download()} blocks - it is to be called in a background thread.
+ */
+class RangedDownloader {
+    // Size of the segments the file is split into - the unit of work of a connection
+    private static final long SEGMENT_SIZE = 32L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // The segment map is saved at most this often - the data is forced to disk before
+    private static final long SAVE_INTERVAL = 2000;
+    // Attempts per segment on each mirror
+    private static final int ATTEMPTS_PER_MIRROR = 3;
+    private static final int CONNECT_TIMEOUT = 30000;
+    private static final int READ_TIMEOUT = 60000;
+
+    private static final String MAP_HEADER = "RangedDownload";
+
+    private final List<URL> mirrors;
+    private final File file;
+    private final File mapFile;
+    private final long size;
+    private final int connections;
+    private final ProgressListener listener;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final AtomicLong downloaded = new AtomicLong(0);
+    private FileChannel channel;
+    private long lastSave;
+    private int nextSegment;
+    private volatile boolean cancelled = false;
+    private IOException failure;
+    // Mirror of the last successful request - the segments start with it
+    private volatile int workingMirror = 0;
+
+    /**
+     * @param mirrors     the URLs of the file - tried in this order
+     * @param file        the file to download into
+     * @param size        size of the file in bytes
+     * @param connections number of parallel connections
+     * @param listener    notified of the progress in the downloading threads - may be null
+     */
+    RangedDownloader(List<URL> mirrors, File file, long size, int connections, ProgressListener listener) {
+        this.mirrors = mirrors;
+        this.file = file;
+        this.mapFile = new File(file.getPath() + ".parts");
+        this.size = size;
+        this.connections = connections;
+        this.listener = listener;
+    }
+
+    /**
+     * Downloads the file - resuming a previous download if there is a segment map for it.
+     *
+     * @throws InterruptedIOException if the download has been cancelled - it may be resumed later
+     * @throws IOException            if a segment could not be downloaded from any of the mirrors
+     */
+    public void download()
+            throws IOException {
+        long start = System.currentTimeMillis();
+        List<Segment> loadedSegments = this.loadSegmentMap();
+        boolean resumed = (loadedSegments != null);
+        List<Segment> newSegments = resumed ? loadedSegments : this.createSegments();
+        // Published under the lock - a reader of the contiguous length may be running already
+        synchronized (this) {
+            this.segments.clear();
+            this.segments.addAll(newSegments);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            // Preallocated - the segments are written at their positions in any order
+            if (raf.length() != this.size) {
+                raf.setLength(this.size);
+            }
+            this.channel = raf.getChannel();
+            this.saveSegmentMap(true);
+
+            long alreadyDownloaded = this.downloaded.get();
+            System.out.println("Downloading " + this.file.getName() + ": " + this.segments.size() + " segments, " +
+                                       (resumed ? "resuming at " + alreadyDownloaded + " bytes" : "starting anew"));
+            if (this.listener != null) {
+                this.listener.progress(alreadyDownloaded, this.size);
+            }
+
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < this.connections; i++) {
+                Thread worker = new Thread(this::downloadSegments, "Download of " + this.file.getName() + " " + i);
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                while (worker.isAlive()) {
+                    try {
+                        worker.join();
+                    } catch (InterruptedException ie) {
+                        // The workers stop after their current read - they still write into the file
+                        this.cancel();
+                    }
+                }
+            }
+
+            this.saveSegmentMap(true);
+            this.channel = null;
+
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            if (this.cancelled) {
+                throw new InterruptedIOException("Download of " + this.file.getName() + " cancelled");
+            }
+
+            System.out.println("Downloaded " + (this.size - alreadyDownloaded) + " bytes of " + this.file.getName() +
+                                       " in " + (System.currentTimeMillis() - start) + "ms.");
+        }
+
+        // Complete - the map is not needed any more
+        if (!this.mapFile.delete()) {
+            System.out.println("Could not delete segment map: " + this.mapFile.getAbsolutePath());
+        }
+    }
+
+    // Stops the download - the segment map is kept so that it may be resumed
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public long getDownloaded() {
+        return this.downloaded.get();
+    }
+
+    /**
+     * Obtains the length of the beginning of the file that is completely downloaded - the data up to
+     * it may be read (e.g. hashed) while the rest is still being downloaded.
+     *
+     * @return the length of the downloaded beginning of the file
+     */
+    public synchronized long getContiguousLength() {
+        for (Segment segment : this.segments) {
+            if (!segment.isComplete()) {
+                return segment.position;
+            }
+        }
+        return this.segments.isEmpty() ? 0 : this.size;
+    }
+
+    // The work of one connection - takes unfinished segments until there are none
+    private void downloadSegments() {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        Segment segment;
+        while ((!this.cancelled) && ((segment = this.takeSegment()) != null)) {
+            try {
+                this.downloadSegment(segment, buffer);
+            } catch (IOException ioe) {
+                synchronized (this) {
+                    if (this.failure == null) {
+                        this.failure = ioe;
+                    }
+                }
+                // The other connections stop as well - the download fails as a whole
+                this.cancelled = true;
+            }
+        }
+    }
+
+    private synchronized Segment takeSegment() {
+        while (this.nextSegment < this.segments.size()) {
+            Segment segment = this.segments.get(this.nextSegment++);
+            if (!segment.isComplete()) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    // Tries the mirrors in turn until the segment is complete
+    private void downloadSegment(Segment segment, ByteBuffer buffer)
+            throws IOException {
+        IOException lastError = null;
+        int firstMirror = this.workingMirror;
+        for (int attempt = 0; attempt < this.mirrors.size() * ATTEMPTS_PER_MIRROR; attempt++) {
+            // Each mirror is tried ATTEMPTS_PER_MIRROR times in a row
+            int mirror = (firstMirror + attempt / ATTEMPTS_PER_MIRROR) % this.mirrors.size();
+            URL url = this.mirrors.get(mirror);
+            try {
+                this.downloadRange(url, segment, buffer);
+                this.workingMirror = mirror;
+                return;
+            } catch (IOException ioe) {
+                if (this.cancelled) {
+                    return;
+                }
+                System.out.println("Download of bytes " + segment.position + "-" + segment.end + " from " + url +
+                                           " failed: " + ioe.getMessage());
+                lastError = ioe;
+            }
+        }
+
+        throw new IOException("Could not download " + this.file.getName() + " from any of the servers: " +
+                                      ((lastError != null) ? lastError.getMessage() : ""), lastError);
+    }
+
+    // Downloads the rest of the segment with one request
+    private void downloadRange(URL url, Segment segment, ByteBuffer buffer)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestProperty("Range", "bytes=" + segment.position + "-" + segment.end);
+
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                // A full response (200) would have to be read from the beginning for every segment
+                throw new IOException("Unexpected HTTP response " + responseCode + " to a range request");
+            }
+
+            try (InputStream is = connection.getInputStream()) {
+                byte[] array = buffer.array();
+                while ((!segment.isComplete()) && (!this.cancelled)) {
+                    int maxRead = (int) Math.min(array.length, segment.end + 1 - segment.position);
+                    int read = is.read(array, 0, maxRead);
+                    if (read < 0) {
+                        throw new IOException("Connection closed at byte " + segment.position);
+                    }
+
+                    buffer.clear();
+                    buffer.limit(read);
+                    long position = segment.position;
+                    while (buffer.hasRemaining()) {
+                        position += this.channel.write(buffer, position);
+                    }
+
+                    this.segmentProgress(segment, read);
+                }
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void segmentProgress(Segment segment, int bytes)
+            throws IOException {
+        synchronized (this) {
+            segment.position += bytes;
+        }
+        long total = this.downloaded.addAndGet(bytes);
+        if (this.listener != null) {
+            this.listener.progress(total, this.size);
+        }
+        this.saveSegmentMap(segment.isComplete());
+    }
+
+    // The segments whose data is in the file are recorded only after it has been forced to disk
+    private synchronized void saveSegmentMap(boolean always)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        if ((!always) && (now - this.lastSave < SAVE_INTERVAL)) {
+            return;
+        }
+        this.lastSave = now;
+
+        if (this.channel != null) {
+            this.channel.force(false);
+        }
+
+        File newMapFile = new File(this.mapFile.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(newMapFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(MAP_HEADER + "," + this.size + "," + this.segments.size() + "\n");
+            for (Segment segment : this.segments) {
+                writer.write(segment.start + "," + segment.end + "," + segment.position + "\n");
+            }
+        }
+
+        try {
+            Files.move(newMapFile.toPath(), this.mapFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(newMapFile.toPath(), this.mapFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Loads the map of an interrupted download - null if there is none usable
+    private List<Segment> loadSegmentMap()
+            throws IOException {
+        this.downloaded.set(0);
+        if ((!this.mapFile.exists()) || (!this.file.exists()) || (this.file.length() != this.size)) {
+            return null;
+        }
+
+        List<Segment> loadedSegments = new ArrayList<>();
+        long loadedBytes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(this.mapFile.toPath(), StandardCharsets.UTF_8)) {
+            String[] header = reader.readLine().split(",");
+            if ((!MAP_HEADER.equals(header[0])) || (Long.parseLong(header[1]) != this.size)) {
+                throw new IOException("The segment map is not of this download");
+            }
+
+            int count = Integer.parseInt(header[2]);
+            long expectedStart = 0;
+            for (int i = 0; i < count; i++) {
+                String[] values = reader.readLine().split(",");
+                Segment segment = new Segment(Long.parseLong(values[0]), Long.parseLong(values[1]));
+                segment.position = Long.parseLong(values[2]);
+                if ((segment.start != expectedStart) || (segment.end < segment.start) ||
+                            (segment.position < segment.start) || (segment.position > segment.end + 1)) {
+                    throw new IOException("Inconsistent segment: " + segment.start + "-" + segment.end);
+                }
+                expectedStart = segment.end + 1;
+                loadedSegments.add(segment);
+                loadedBytes += segment.position - segment.start;
+            }
+            if (expectedStart != this.size) {
+                throw new IOException("The segments do not cover the file");
+            }
+        } catch (IOException | RuntimeException e) {
+            // E.g. a map truncated by a crash of an old version - the download starts anew
+            System.out.println("Ignoring segment map " + this.mapFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+
+        this.downloaded.set(loadedBytes);
+        return loadedSegments;
+    }
+
+    private List<Segment> createSegments() {
+        List<Segment> newSegments = new ArrayList<>();
+        for (long start = 0; start < this.size; start += SEGMENT_SIZE) {
+            newSegments.add(new Segment(start, Math.min(start + SEGMENT_SIZE, this.size) - 1));
+        }
+        return newSegments;
+    }
+
+
+    // A range of the file: [start, end] - downloaded up to position (exclusive)
+    private static class Segment {
+        final long start;
+        final long end;
+        long position;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+
+        boolean isComplete() {
+            return this.position > this.end;
+        }
+    }
+
+
+    /**
+     * Notified in the downloading threads.
+     */
+    interface ProgressListener {
+        void progress(long downloaded, long total);
+    }
+}
@@ -0,0 +1,141 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Follows the progress of a blockchain rescan by tailing the debug.log of the daemon. While the
+ * wallet rescans it does not answer wallet calls, but it logs a line about once a minute:
+ * <pre>
+ * Still rescanning. At block 123456. Progress=0.634121
+ * </pre>
+ * Only the part of the log written after {@link #start()} is read. The listener is notified on the
+ * EDT.
+ */
+class RescanProgressMonitor {
+    private static final Pattern RESCAN_LINE = Pattern.compile("Still rescanning\\. At block (\\d+)\\.");
+
+    private static final int POLL_INTERVAL = 2000;
+    // The log may be big - never more than this is read at once
+    private static final int MAX_READ = 256 * 1024;
+
+    private final File logFile;
+    private final int startHeight;
+    private final int endHeight;
+    private final ProgressListener listener;
+
+    private Thread pollingThread;
+    private volatile boolean stopped = false;
+    private long logPosition;
+    private int lastReportedBlock = -1;
+
+    /**
+     * @param startHeight block height the rescan starts from
+     * @param endHeight   block height of the chain tip - the rescan ends there
+     * @param listener    notified on the EDT
+     */
+    RescanProgressMonitor(int startHeight, int endHeight, ProgressListener listener)
+            throws IOException {
+        this.logFile = new File(OSUtil.getBlockchainDirectory(), "debug.log");
+        this.startHeight = startHeight;
+        this.endHeight = endHeight;
+        this.listener = listener;
+    }
+
+    public void start() {
+        // Earlier rescans are of no interest
+        this.logPosition = this.logFile.length();
+        this.pollingThread = new Thread(this::poll, "Rescan progress monitor");
+        this.pollingThread.setDaemon(true);
+        this.pollingThread.start();
+    }
+
+    public void stop() {
+        this.stopped = true;
+        if (this.pollingThread != null) {
+            this.pollingThread.interrupt();
+        }
+    }
+
+    private void poll() {
+        while (!this.stopped) {
+            try {
+                Thread.sleep(POLL_INTERVAL);
+                this.readNewLogLines();
+            } catch (InterruptedException ie) {
+                // Stopped
+                return;
+            } catch (IOException ioe) {
+                // The log may be missing (e.g. a remote daemon) - there is just no progress then
+                System.out.println("Rescan progress monitor: cannot read " + this.logFile + ": " + ioe.getMessage());
+            }
+        }
+    }
+
+    private void readNewLogLines()
+            throws IOException {
+        if (!this.logFile.exists()) {
+            return;
+        }
+
+        try (RandomAccessFile log = new RandomAccessFile(this.logFile, "r")) {
+            long length = log.length();
+            if (length < this.logPosition) {
+                // The log has been truncated (shrinkdebugfile) - start over
+                this.logPosition = 0;
+            }
+            if (length - this.logPosition > MAX_READ) {
+                this.logPosition = length - MAX_READ;
+            }
+
+            byte[] data = new byte[(int) (length - this.logPosition)];
+            log.seek(this.logPosition);
+            log.readFully(data);
+
+            // An incomplete last line is read again next time
+            int end = data.length;
+            while ((end > 0) && (data[end - 1] != '\n')) {
+                end--;
+            }
+            this.logPosition += end;
+
+            int block = -1;
+            Matcher matcher = RESCAN_LINE.matcher(new String(data, 0, end, StandardCharsets.UTF_8));
+            while (matcher.find()) {
+                block = Integer.parseInt(matcher.group(1));
+            }
+
+            if ((block >= 0) && (block != this.lastReportedBlock)) {
+                this.lastReportedBlock = block;
+                this.report(block);
+            }
+        }
+    }
+
+    private void report(final int block) {
+        int total = Math.max(1, this.endHeight - this.startHeight);
+        final int percent = Math.max(0, Math.min(100, (int) (100L * (block - this.startHeight) / total)));
+        SwingUtilities.invokeLater(() -> {
+            if (!RescanProgressMonitor.this.stopped) {
+                RescanProgressMonitor.this.listener.rescanProgress(block, RescanProgressMonitor.this.endHeight, percent);
+            }
+        });
+    }
+
+
+    /**
+     * Notified on the EDT whenever the daemon reports a new position.
+     */
+    interface ProgressListener {
+        void rescanProgress(int block, int endHeight, int percent);
+    }
+}
@@ -7,26 +7,35 @@ package org.myhush.gui;
 
 import javax.swing.*;
 import javax.swing.border.EtchedBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 class SendCashPanel extends WalletTabPanel {
+    // Contacts are offered once this many characters of the destination have been typed
+    private static final int MIN_COMPLETION_LENGTH = 2;
+    private static final int MAX_COMPLETIONS = 8;
+
     private final HushCommandLineBridge clientCaller;
     private final StatusUpdateErrorReporter errorReporter;
 
     private JComboBox balanceAddressCombo;
     private JPanel comboBoxParentPanel;
     private String[][] lastAddressBalanceData = null;
-    private DataGatheringThread<String[][]> addressBalanceGatheringThread;
+    private final AddressBalanceService balanceService;
+    private final SendQueue sendQueue;
+    private final AddressBookStore addressBook;
 
     private JTextField destinationAddressField;
     private JTextField destinationAmountField;
@@ -34,18 +43,26 @@ class SendCashPanel extends WalletTabPanel {
     private JTextField transactionFeeField;
 
     private JButton sendButton;
+    private JButton batchSendButton;
 
     private JLabel operationStatusLabel;
     private JProgressBar operationStatusProhgressBar;
-    private Timer operationStatusTimer = null;
-    private String operationStatusID = null;
-    private int operationStatusCounter = 0;
+    private DefaultTableModel pendingSendsModel;
+
+    // Contacts matching the typed destination
+    private final JPopupMenu completionPopup = new JPopupMenu();
+    // Set while the destination is filled in by the program - no completion is offered then
+    private boolean settingDestination = false;
 
-    SendCashPanel(HushCommandLineBridge clientCaller, StatusUpdateErrorReporter errorReporter) {
+    SendCashPanel(HushCommandLineBridge clientCaller, AddressBalanceService balanceService,
+                  SendQueue sendQueue, AddressBookStore addressBook, StatusUpdateErrorReporter errorReporter) {
         this.timers = new ArrayList<>();
         this.threads = new ArrayList<>();
 
         this.clientCaller = clientCaller;
+        this.balanceService = balanceService;
+        this.sendQueue = sendQueue;
+        this.addressBook = addressBook;
         this.errorReporter = errorReporter;
 
         // Build content
@@ -81,6 +98,7 @@ class SendCashPanel extends WalletTabPanel {
         tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
         tempPanel.add(destinationAddressField);
         sendCashPanel.add(tempPanel);
+        this.installDestinationCompletion();
 
         dividerLabel = new JLabel("   ");
         dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 3));
@@ -132,6 +150,8 @@ class SendCashPanel extends WalletTabPanel {
 
         tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
         tempPanel.add(sendButton = new JButton("Send   \u27A4\u27A4\u27A4"));
+        tempPanel.add(new JLabel("   "));
+        tempPanel.add(batchSendButton = new JButton("Batch send from CSV..."));
         sendCashPanel.add(tempPanel);
 
         dividerLabel = new JLabel("   ");
@@ -179,6 +199,29 @@ class SendCashPanel extends WalletTabPanel {
         dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 13));
         operationStatusPanel.add(dividerLabel);
 
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(new JLabel("Pending operations:"));
+        operationStatusPanel.add(tempPanel);
+
+        // Live list of queued, executing and recently finished sends
+        pendingSendsModel = new DefaultTableModel(
+                new String[]{ "Destination", "Amount", "Status", "Operation ID" }, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable pendingSendsTable = new JTable(pendingSendsModel);
+        pendingSendsTable.getColumnModel().getColumn(0).setPreferredWidth(380);
+        pendingSendsTable.getColumnModel().getColumn(1).setPreferredWidth(100);
+        pendingSendsTable.getColumnModel().getColumn(2).setPreferredWidth(200);
+        pendingSendsTable.getColumnModel().getColumn(3).setPreferredWidth(300);
+        this.add(new JScrollPane(pendingSendsTable), BorderLayout.CENTER);
+
+        this.sendQueue.addChangeListener(SendCashPanel.this::updatePendingSends);
+        // Batch operations may wait for hours - the password is asked for only when one needs it
+        this.sendQueue.setPasswordProvider(SendCashPanel.this::askBatchPassword);
+
         // Wire the buttons
         sendButton.addActionListener(actionEvent -> {
             try {
@@ -202,19 +245,9 @@ class SendCashPanel extends WalletTabPanel {
             }
         });
 
-        // Update the balances via timer and data gathering thread
-        this.addressBalanceGatheringThread = new DataGatheringThread<>(
-                () -> {
-                    long start = System.currentTimeMillis();
-                    String[][] data = SendCashPanel.this.getAddressPositiveBalanceDataFromWallet();
-                    long end = System.currentTimeMillis();
-                    System.out.println("Gathering of address/balance table data done in " + (end - start) + "ms.");
-
-                    return data;
-                },
-                this.errorReporter, 10000, true);
-        this.threads.add(addressBalanceGatheringThread);
+        batchSendButton.addActionListener(actionEvent -> SendCashPanel.this.batchSend());
 
+        // Update the balances via timer - the data is gathered by the balance service
         ActionListener alBalancesUpdater = actionEvent -> {
             try {
                 // TODO: if the user has opened the combo box - this closes it (maybe fix)
@@ -224,7 +257,7 @@ class SendCashPanel extends WalletTabPanel {
                 SendCashPanel.this.errorReporter.reportError(ex);
             }
         };
-        Timer timerBalancesUpdater = new Timer(15000, alBalancesUpdater);
+        Timer timerBalancesUpdater = new Timer(15000, WalletMetrics.getInstance().timedEdtUpdate("send cash balances", alBalancesUpdater));
         timerBalancesUpdater.setInitialDelay(3000);
         timerBalancesUpdater.start();
         this.timers.add(timerBalancesUpdater);
@@ -238,7 +271,7 @@ class SendCashPanel extends WalletTabPanel {
                 String address = (String) Toolkit.getDefaultToolkit().getSystemClipboard().
                                                                                                   getData(DataFlavor.stringFlavor);
                 if ((address != null) && (address.trim().length() > 0)) {
-                    SendCashPanel.this.destinationAddressField.setText(address);
+                    SendCashPanel.this.setDestination(address);
                 }
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -268,6 +301,10 @@ class SendCashPanel extends WalletTabPanel {
 
     private void sendCash()
             throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        if (WalletImportJob.refuseWhileImporting(SendCashPanel.this.getRootPane().getParent(), this.clientCaller)) {
+            return;
+        }
+
         if (balanceAddressCombo.getItemCount() <= 0) {
             JOptionPane.showMessageDialog(
                     SendCashPanel.this.getRootPane().getParent(),
@@ -314,7 +351,7 @@ class SendCashPanel extends WalletTabPanel {
             errorMessage = "Amount to send is invalid; it is missing.";
         } else {
             try {
-                Double.valueOf(amount);
+                HushAmount.parse(amount);
             } catch (NumberFormatException nfe) {
                 errorMessage = "Amount to send is invalid; it is not a number.";
             }
@@ -324,7 +361,9 @@ class SendCashPanel extends WalletTabPanel {
             errorMessage = "Transaction fee is invalid; it is missing.";
         } else {
             try {
-                Double.valueOf(fee);
+                if (HushAmount.parse(fee).isNegative()) {
+                    errorMessage = "Transaction fee is invalid; it is negative.";
+                }
             } catch (NumberFormatException nfe) {
                 errorMessage = "Transaction fee is invalid; it is not a number.";
             }
@@ -339,123 +378,254 @@ class SendCashPanel extends WalletTabPanel {
             return;
         }
 
-        // Check for encrypted wallet
-        final boolean bEncryptedWallet = this.clientCaller.isWalletEncrypted();
-        if (bEncryptedWallet) {
+        SendManyRecipients recipients = new SendManyRecipients();
+        try {
+            recipients.add(destinationAddress.trim(), HushAmount.parse(amount), memo);
+        } catch (IllegalArgumentException iae) {
+            JOptionPane.showMessageDialog(
+                    SendCashPanel.this.getRootPane().getParent(),
+                    iae.getMessage(), "Sending parameters are incorrect", JOptionPane.ERROR_MESSAGE
+                                         );
+            return;
+        }
+
+        // The password is needed only if the wallet is encrypted and not unlocked for earlier sends
+        String password = null;
+        if (this.sendQueue.isPasswordNeeded()) {
             PasswordDialog pd = new PasswordDialog((JFrame) (SendCashPanel.this.getRootPane().getParent()));
             pd.setVisible(true);
 
             if (!pd.isOKPressed()) {
                 return;
             }
-            this.clientCaller.unlockWallet(pd.getPassword());
+            password = pd.getPassword();
         }
 
-        // Call the wallet send method
-        operationStatusID = this.clientCaller.sendCash(sourceAddress, destinationAddress, amount, memo, fee);
+        // Queue the send - further sends may be entered while this one is in progress
+        // Notifications see the current state, so a finished send may be reported more than once
+        final boolean[] reported = { false };
+        this.sendQueue.enqueue(sourceAddress, recipients, HushAmount.parse(fee), password, send -> {
+            if ((!send.isFinished()) || reported[0]) {
+                return;
+            }
+            reported[0] = true;
 
-        // Disable controls after send
-        sendButton.setEnabled(false);
-        balanceAddressCombo.setEnabled(false);
-        destinationAddressField.setEnabled(false);
-        destinationAmountField.setEnabled(false);
-        destinationMemoField.setEnabled(false);
-        transactionFeeField.setEnabled(false);
+            if (send.state == SendQueue.State.SUCCESSFUL) {
+                operationStatusLabel.setText(
+                        "<html><span style=\"color:green;font-weight:bold\">SUCCESSFUL</span></html>");
+            } else {
+                operationStatusLabel.setText(
+                        "<html><span style=\"color:red;font-weight:bold\">ERROR: " + send.errorMessage + "</span></html>");
 
-        // Start a timer to update the progress of the operation
-        operationStatusCounter = 0;
-        operationStatusTimer = new Timer(2000, e -> {
-            try {
-                // TODO: Handle errors in case of restarted server while wallet is sending ...
-                if (clientCaller.isSendingOperationComplete(operationStatusID)) {
-                    if (clientCaller.isCompletedOperationSuccessful(operationStatusID)) {
-                        operationStatusLabel.setText(
-                                "<html><span style=\"color:green;font-weight:bold\">SUCCESSFUL</span></html>");
-                        JOptionPane.showMessageDialog(
-                                SendCashPanel.this.getRootPane().getParent(),
-                                "Succesfully sent " + amount + " HUSH from address: \n" +
-                                        sourceAddress + "\n" +
-                                        "to address: \n" +
-                                        destinationAddress + "\n",
-                                "Cash sent successfully", JOptionPane.INFORMATION_MESSAGE
-                                                     );
-                    } else {
-                        String errorMessage1 = clientCaller.getOperationFinalErrorMessage(operationStatusID);
-                        operationStatusLabel.setText(
-                                "<html><span style=\"color:red;font-weight:bold\">ERROR: " + errorMessage1 + "</span></html>");
-
-                        JOptionPane.showMessageDialog(
-                                SendCashPanel.this.getRootPane().getParent(),
-                                "An error occurred when sending cash. Error message is:\n" +
-                                        errorMessage1 + "\n\n" +
-                                        "Please ensure that sending parameters are correct. You may try again later...\n",
-                                "Error in sending cash", JOptionPane.ERROR_MESSAGE
-                                                     );
-                    }
-
-                    // Lock the wallet again
-                    if (bEncryptedWallet) {
-                        SendCashPanel.this.clientCaller.lockWallet();
-                    }
-
-                    // Restore controls etc.
-                    operationStatusCounter = 0;
-                    operationStatusID = null;
-                    operationStatusTimer.stop();
-                    operationStatusTimer = null;
-                    operationStatusProhgressBar.setValue(0);
-
-                    sendButton.setEnabled(true);
-                    balanceAddressCombo.setEnabled(true);
-                    destinationAddressField.setEnabled(true);
-                    destinationAmountField.setEnabled(true);
-                    transactionFeeField.setEnabled(true);
-                    destinationMemoField.setEnabled(true);
-                } else {
-                    // Update the progress
-                    operationStatusLabel.setText(
-                            "<html><span style=\"color:orange;font-weight:bold\">IN PROGRESS</span></html>");
-                    operationStatusCounter += 2;
-                    int progress;
-                    if (operationStatusCounter <= 100) {
-                        progress = operationStatusCounter;
-                    } else {
-                        progress = 100 + (((operationStatusCounter - 100) * 6) / 10);
-                    }
-                    operationStatusProhgressBar.setValue(progress);
-                }
-                SendCashPanel.this.repaint();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                SendCashPanel.this.errorReporter.reportError(ex);
+                JOptionPane.showMessageDialog(
+                        SendCashPanel.this.getRootPane().getParent(),
+                        "An error occurred when sending " + amount + " HUSH to address:\n" +
+                                destinationAddress + "\n" +
+                                "Error message is:\n" +
+                                send.errorMessage + "\n\n" +
+                                "Please ensure that sending parameters are correct. You may try again later...\n",
+                        "Error in sending cash", JOptionPane.ERROR_MESSAGE
+                                             );
             }
         });
-        operationStatusTimer.setInitialDelay(0);
-        operationStatusTimer.start();
+
+        // Clear the payment fields for the next send
+        destinationAddressField.setText("");
+        destinationAmountField.setText("");
+        destinationMemoField.setText("");
+    }
+
+
+    // Asks for the password of the locked wallet for a batch operation - called in the sending thread
+    private String askBatchPassword(final SendQueue.PendingSend send)
+            throws InterruptedException {
+        final String[] password = { null };
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                PasswordDialog pd = new PasswordDialog((JFrame) (SendCashPanel.this.getRootPane().getParent()));
+                pd.upperLabel.setText(
+                        "<html>The next operation of a batch payment from " + send.from + " (" +
+                                send.recipients.getTotal() + " HUSH to " + send.getDestinationDescription() +
+                                ") is ready to be sent, but the wallet is locked. Please enter the password to " +
+                                "unlock it temporarily.</html>");
+                pd.setVisible(true);
+
+                if (pd.isOKPressed()) {
+                    password[0] = pd.getPassword();
+                }
+            });
+        } catch (InvocationTargetException ite) {
+            ite.printStackTrace();
+        }
+        return password[0];
+    }
+
+
+    // Shows the queued, executing and recently finished sends - called on the EDT
+    private void updatePendingSends() {
+        List<SendQueue.PendingSend> sends = this.sendQueue.getSends();
+
+        this.pendingSendsModel.setRowCount(0);
+        for (int i = sends.size() - 1; i >= 0; i--) {
+            SendQueue.PendingSend send = sends.get(i);
+            String status;
+            switch (send.state) {
+                case WAITING:
+                    status = "<html><span style=\"color:orange;font-weight:bold\">WAITING FOR CONFIRMED FUNDS</span></html>";
+                    break;
+                case QUEUED:
+                    status = "<html><span style=\"color:orange;font-weight:bold\">QUEUED</span></html>";
+                    break;
+                case SUBMITTED:
+                    status = "<html><span style=\"color:orange;font-weight:bold\">IN PROGRESS</span></html>";
+                    break;
+                case SUCCESSFUL:
+                    status = "<html><span style=\"color:green;font-weight:bold\">SUCCESSFUL</span></html>";
+                    break;
+                default:
+                    status = "<html><span style=\"color:red;font-weight:bold\">ERROR: " + send.errorMessage + "</span></html>";
+            }
+
+            this.pendingSendsModel.addRow(new Object[]{
+                    send.getDestinationDescription(),
+                    send.recipients.getTotal().toDisplayString(),
+                    status,
+                    (send.operationID != null) ? send.operationID : ""
+            });
+        }
+
+        int activeCount = this.sendQueue.getActiveCount();
+        this.operationStatusProhgressBar.setIndeterminate(activeCount > 0);
+        if (activeCount > 0) {
+            this.operationStatusLabel.setText(
+                    "<html><span style=\"color:orange;font-weight:bold\">IN PROGRESS (" + activeCount + ")</span></html>");
+        }
+    }
+
+
+    private void batchSend() {
+        if (WalletImportJob.refuseWhileImporting(SendCashPanel.this.getRootPane().getParent(), this.clientCaller)) {
+            return;
+        }
+
+        if (balanceAddressCombo.getItemCount() <= 0) {
+            JOptionPane.showMessageDialog(
+                    SendCashPanel.this.getRootPane().getParent(),
+                    "There are no addresses with a positive balance to send\n" +
+                            "cash from!",
+                    "No funds available", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (this.balanceAddressCombo.getSelectedIndex() < 0) {
+            JOptionPane.showMessageDialog(
+                    SendCashPanel.this.getRootPane().getParent(),
+                    "Please select a source address with a current positive\n" +
+                            "balance to send cash from!",
+                    "Please select source address", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        final String[] sourceData = this.lastAddressBalanceData[this.balanceAddressCombo.getSelectedIndex()];
+        BatchSendDialog batchSendDialog = new BatchSendDialog(
+                (JFrame) (SendCashPanel.this.getRootPane().getParent()),
+                this.sendQueue, sourceData[1], HushAmount.parse(sourceData[0]));
+        batchSendDialog.setVisible(true);
     }
 
 
     public void prepareForSending(String address) {
-        destinationAddressField.setText(address);
+        this.setDestination(address);
+    }
+
+
+    private void setDestination(String address) {
+        this.settingDestination = true;
+        try {
+            this.destinationAddressField.setText(address);
+        } finally {
+            this.settingDestination = false;
+        }
+        this.completionPopup.setVisible(false);
+    }
+
+
+    // Offers the matching address book contacts while a destination is typed
+    private void installDestinationCompletion() {
+        this.completionPopup.setFocusable(false);
+
+        this.destinationAddressField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                SendCashPanel.this.updateCompletion();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                SendCashPanel.this.updateCompletion();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                SendCashPanel.this.updateCompletion();
+            }
+        });
+
+        this.destinationAddressField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    SendCashPanel.this.completionPopup.setVisible(false);
+                }
+            }
+        });
+    }
+
+
+    private void updateCompletion() {
+        if (this.settingDestination || (!this.destinationAddressField.isShowing())) {
+            return;
+        }
+
+        String text = this.destinationAddressField.getText().trim();
+        List<AddressBookStore.Contact> matches = (text.length() >= MIN_COMPLETION_LENGTH) ?
+                                                         this.addressBook.search(text, MAX_COMPLETIONS) :
+                                                         new ArrayList<>();
+        // Nothing to complete if an address has been entered in full
+        if ((matches.size() == 1) && matches.get(0).address.equals(text)) {
+            matches.clear();
+        }
+
+        this.completionPopup.setVisible(false);
+        this.completionPopup.removeAll();
+        if (matches.isEmpty()) {
+            return;
+        }
+
+        for (final AddressBookStore.Contact contact : matches) {
+            JMenuItem item = new JMenuItem(contact.name + "  \u2013  " + contact.address);
+            item.addActionListener(e -> SendCashPanel.this.setDestination(contact.address));
+            this.completionPopup.add(item);
+        }
+        this.completionPopup.pack();
+        this.completionPopup.show(this.destinationAddressField, 0, this.destinationAddressField.getHeight());
+        this.destinationAddressField.requestFocusInWindow();
     }
 
 
     private void updateWalletAddressPositiveBalanceComboBox() {
-        String[][] newAddressBalanceData = this.addressBalanceGatheringThread.getLastData();
+        AddressBalanceService.AddressBalanceSnapshot snapshot = this.balanceService.getLastSnapshot();
 
         // The data may be null if nothing is yet obtained
-        if (newAddressBalanceData == null) {
+        if (snapshot == null) {
             return;
         }
 
-        lastAddressBalanceData = newAddressBalanceData;
+        lastAddressBalanceData = this.getAddressPositiveBalanceData(snapshot);
 
         final String[] comboBoxItems = new String[lastAddressBalanceData.length];
         for (int i = 0; i < lastAddressBalanceData.length; i++) {
-            // Do numeric formatting or else we may get 1.1111E-5
-            comboBoxItems[i] =
-                    new DecimalFormat("########0.00######").format(Double.valueOf(lastAddressBalanceData[i][0])) +
-                            " - " + lastAddressBalanceData[i][1];
+            comboBoxItems[i] = lastAddressBalanceData[i][0] + " - " + lastAddressBalanceData[i][1];
         }
 
         int selectedIndex = balanceAddressCombo.getSelectedIndex();
@@ -475,53 +645,19 @@ class SendCashPanel extends WalletTabPanel {
     }
 
 
-    private String[][] getAddressPositiveBalanceDataFromWallet()
-            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
-        // Z Addresses - they are OK
-        String[] zAddresses = clientCaller.getWalletZAddresses();
-
-        // T Addresses created inside wallet that may be empty
-        String[] tAddresses = this.clientCaller.getWalletAllPublicAddresses();
-        Set<String> tStoredAddressSet = new HashSet<>();
-        Collections.addAll(tStoredAddressSet, tAddresses);
-
-        // T addresses with unspent outputs (even if not GUI created)...
-        String[] tAddressesWithUnspentOuts = this.clientCaller.getWalletPublicAddressesWithUnspentOutputs();
-        Set<String> tAddressSetWithUnspentOuts = new HashSet<>();
-        Collections.addAll(tAddressSetWithUnspentOuts, tAddressesWithUnspentOuts);
-
-        // Combine all known T addresses
-        Set<String> tAddressesCombined = new HashSet<>();
-        tAddressesCombined.addAll(tStoredAddressSet);
-        tAddressesCombined.addAll(tAddressSetWithUnspentOuts);
-
-        String[][] tempAddressBalances = new String[zAddresses.length + tAddressesCombined.size()][];
-
-        int count = 0;
-
-        for (String address : tAddressesCombined) {
-            String balance = this.clientCaller.getBalanceForAddress(address);
-            if (Double.valueOf(balance) > 0) {
-                tempAddressBalances[count++] = new String[]
-                                                       {
-                                                               balance, address
-                                                       };
-            }
-        }
+    private String[][] getAddressPositiveBalanceData(AddressBalanceService.AddressBalanceSnapshot snapshot) {
+        List<AddressBalanceService.AddressBalance> balances = snapshot.getPositiveBalances();
+        String[][] addressBalances = new String[balances.size()][];
 
-        for (String address : zAddresses) {
-            String balance = this.clientCaller.getBalanceForAddress(address);
-            if (Double.valueOf(balance) > 0) {
-                tempAddressBalances[count++] = new String[]
-                                                       {
-                                                               balance, address
-                                                       };
-            }
+        int i = 0;
+        for (AddressBalanceService.AddressBalance balance : balances) {
+            addressBalances[i++] = new String[]
+                                           {
+                                                   balance.confirmedBalance.toDisplayString(),
+                                                   balance.address
+                                           };
         }
 
-        String[][] addressBalances = new String[count][];
-        System.arraycopy(tempAddressBalances, 0, addressBalances, 0, count);
-
         return addressBalances;
     }
 
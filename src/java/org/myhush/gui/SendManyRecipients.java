@@ -0,0 +1,126 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The list of recipients (amounts) argument of z_sendmany. Amounts are written as exact JSON decimal
+ * numbers with 8 decimal places, e.g. [{"address":"zc...","amount":1.50000000,"memo":"f6..."}].
+ */
+class SendManyRecipients {
+    // A memo is at most 512 bytes long
+    static final int MAX_MEMO_BYTES = 512;
+
+    private final List<Recipient> recipients = new ArrayList<>();
+    private HushAmount total = HushAmount.ZERO;
+
+    /**
+     * Adds a recipient.
+     *
+     * @param address destination T or Z address
+     * @param amount  amount to send - must be positive
+     * @param memo    memo text - may be null or empty, only allowed for Z addresses
+     * @throws IllegalArgumentException if the amount is not positive or the memo is too long
+     */
+    public SendManyRecipients add(String address, HushAmount amount, String memo) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount to send must be positive: " + amount);
+        }
+
+        String hexMemo = null;
+        if ((memo != null) && (memo.length() > 0)) {
+            byte[] memoBytes = memo.getBytes(StandardCharsets.UTF_8);
+            if (memoBytes.length > MAX_MEMO_BYTES) {
+                throw new IllegalArgumentException(
+                        "Memo is too long: " + memoBytes.length + " bytes, at most " + MAX_MEMO_BYTES + " are allowed");
+            }
+            hexMemo = HexCodec.encode(memoBytes);
+        }
+
+        this.recipients.add(new Recipient(address, amount, hexMemo));
+        this.total = this.total.add(amount);
+
+        return this;
+    }
+
+    public List<Recipient> getRecipients() {
+        return Collections.unmodifiableList(this.recipients);
+    }
+
+    public int size() {
+        return this.recipients.size();
+    }
+
+    // Sum of all amounts
+    public HushAmount getTotal() {
+        return this.total;
+    }
+
+    // The JSON array to be passed to z_sendmany
+    public String toJson() {
+        StringBuilder json = new StringBuilder(this.recipients.size() * 128 + 2);
+        json.append('[');
+        for (int i = 0; i < this.recipients.size(); i++) {
+            Recipient recipient = this.recipients.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+
+            json.append("{\"address\":");
+            appendJsonString(json, recipient.address);
+            json.append(",\"amount\":").append(recipient.amount.toPlainString());
+            if (recipient.hexMemo != null) {
+                json.append(",\"memo\":\"").append(recipient.hexMemo).append('"');
+            }
+            json.append('}');
+        }
+        json.append(']');
+
+        return json.toString();
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+
+    /**
+     * One destination of z_sendmany - immutable.
+     */
+    static class Recipient {
+        final String address;
+        final HushAmount amount;
+        // Hex encoded memo - null if there is none
+        final String hexMemo;
+
+        Recipient(String address, HushAmount amount, String hexMemo) {
+            this.address = address;
+            this.amount = amount;
+            this.hexMemo = hexMemo;
+        }
+    }
+}
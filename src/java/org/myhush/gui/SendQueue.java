@@ -0,0 +1,402 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of payments submitted one after another by a single background thread. Further payments
+ * may be queued while earlier ones are still in flight. For an encrypted wallet one bounded unlock
+ * window (walletpassphrase with a timeout) is shared by all queued payments and the wallet is locked
+ * again as soon as no payment is queued or executing.
+ * <p>
+ * The operations of a batch payment spend from the same address, so each one waits until the previous
+ * one has succeeded and its change is confirmed. They keep going when the batch dialog is closed; if
+ * the wallet has been locked meanwhile, the password is asked for through the {@link PasswordProvider}.
+ */
+class SendQueue {
+    // Length of the unlock window in seconds - the wallet locks itself afterwards in any case
+    static final int UNLOCK_WINDOW_SECONDS = 600;
+    // A payment is not started with less than this time left in the unlock window
+    private static final long UNLOCK_MARGIN_MS = 60 * 1000;
+    // Number of finished payments kept in the list
+    private static final int MAX_FINISHED_SENDS = 100;
+    // Interval of checking the confirmed balance for the waiting operations of batches
+    private static final long FUNDS_CHECK_INTERVAL_MS = 20 * 1000;
+
+    private final HushCommandLineBridge clientCaller;
+    private final OperationTracker operationTracker;
+
+    private final BlockingQueue<PendingSend> queue = new LinkedBlockingQueue<>();
+    // All payments in submission order - queued, executing and recently finished
+    private final List<PendingSend> sends = new ArrayList<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final Thread sendingThread;
+
+    // True if the current unlock window was opened by the queue - only then the queue locks the wallet
+    private volatile boolean ownsUnlockWindow = false;
+    private volatile boolean stopped = false;
+    private volatile PasswordProvider passwordProvider = null;
+    // Only accessed by the sending thread
+    private long lastFundsCheck = 0;
+
+    SendQueue(HushCommandLineBridge clientCaller, OperationTracker operationTracker) {
+        this.clientCaller = clientCaller;
+        this.operationTracker = operationTracker;
+
+        this.sendingThread = new Thread(this::processQueue, "Send queue");
+        this.sendingThread.setDaemon(true);
+        this.sendingThread.start();
+    }
+
+    /**
+     * Checks if the user needs to enter the wallet password for a new payment - i.e. the wallet is
+     * encrypted and there is no unlock window that is going to be open long enough.
+     *
+     * @return true if the password is required
+     */
+    public boolean isPasswordNeeded()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        return this.clientCaller.isWalletEncrypted() &&
+                       (!this.clientCaller.getSecurityState().isUnlockedFor(UNLOCK_MARGIN_MS));
+    }
+
+    /**
+     * Queues a payment.
+     *
+     * @param from           source address
+     * @param recipients     recipients of the payment
+     * @param transactionFee transaction fee
+     * @param password       wallet password - needed only if {@link #isPasswordNeeded()}, otherwise may be null
+     * @param listener       notified on the EDT when the state of the payment changes - may be null
+     * @return the queued payment
+     */
+    public PendingSend enqueue(String from, SendManyRecipients recipients, HushAmount transactionFee,
+                               String password, SendListener listener) {
+        PendingSend send = new PendingSend(from, recipients, transactionFee, password, listener, null);
+        synchronized (this) {
+            this.sends.add(send);
+        }
+        this.queue.add(send);
+        this.fireChange(send);
+
+        return send;
+    }
+
+    /**
+     * Queues the operations of a batch payment. The first one is queued at once, every further one
+     * waits until the previous one has succeeded and the confirmed balance of the source address
+     * covers it. If an operation fails, the later ones are not sent.
+     *
+     * @param from           source address
+     * @param operations     recipients of each operation
+     * @param transactionFee transaction fee per operation
+     * @param password       wallet password for the first operation - needed only if
+     *                       {@link #isPasswordNeeded()}, otherwise may be null
+     * @param listener       notified on the EDT when the state of an operation changes - may be null
+     * @return the queued operations in the order given
+     */
+    public List<PendingSend> enqueueBatch(String from, List<SendManyRecipients> operations,
+                                          HushAmount transactionFee, String password, SendListener listener) {
+        List<PendingSend> batch = new ArrayList<>();
+        PendingSend previous = null;
+        for (SendManyRecipients recipients : operations) {
+            previous = new PendingSend(from, recipients, transactionFee,
+                    (previous == null) ? password : null, listener, previous);
+            batch.add(previous);
+        }
+
+        synchronized (this) {
+            this.sends.addAll(batch);
+        }
+        for (PendingSend send : batch) {
+            if (send.state == State.QUEUED) {
+                this.queue.add(send);
+            }
+            this.fireChange(send);
+        }
+
+        return batch;
+    }
+
+    /**
+     * Sets the provider asked for the wallet password when a waiting operation of a batch is to be
+     * sent and the wallet is locked.
+     *
+     * @param passwordProvider the provider - null to let such operations fail
+     */
+    public void setPasswordProvider(PasswordProvider passwordProvider) {
+        this.passwordProvider = passwordProvider;
+    }
+
+    // Snapshot of all queued, executing and recently finished payments
+    public synchronized List<PendingSend> getSends() {
+        return new ArrayList<>(this.sends);
+    }
+
+    public synchronized int getActiveCount() {
+        int count = 0;
+        for (PendingSend send : this.sends) {
+            if (!send.isFinished()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // The listener is notified on the EDT of every change in the list
+    public void addChangeListener(Runnable listener) {
+        this.changeListeners.add(listener);
+    }
+
+    public void stop() {
+        this.stopped = true;
+        this.sendingThread.interrupt();
+    }
+
+    private void processQueue() {
+        while (!this.stopped) {
+            try {
+                PendingSend send = this.queue.poll(1, TimeUnit.SECONDS);
+                if (send != null) {
+                    this.submit(send);
+                } else {
+                    this.lockWalletIfIdle();
+                }
+                this.releaseWaitingSends();
+            } catch (InterruptedException ie) {
+                // Stopped
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void submit(final PendingSend send) {
+        try {
+            this.ensureUnlocked(send);
+
+            String operationID = this.clientCaller.sendMany(send.from, send.recipients, send.transactionFee);
+            synchronized (this) {
+                send.operationID = operationID;
+                send.state = State.SUBMITTED;
+            }
+
+            this.operationTracker.track(operationID, status -> {
+                synchronized (SendQueue.this) {
+                    send.state = status.successful ? State.SUCCESSFUL : State.FAILED;
+                    send.errorMessage = status.errorMessage;
+                }
+                SendQueue.this.fireChange(send);
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            synchronized (this) {
+                send.state = State.FAILED;
+                send.errorMessage = e.getMessage();
+            }
+        } finally {
+            send.password = null;
+        }
+
+        this.fireChange(send);
+    }
+
+    // Opens the unlock window if the wallet is encrypted and the window is closed or about to close
+    private void ensureUnlocked(PendingSend send)
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        if ((!this.clientCaller.isWalletEncrypted()) ||
+                    this.clientCaller.getSecurityState().isUnlockedFor(UNLOCK_MARGIN_MS)) {
+            return;
+        }
+
+        // A waiting operation of a batch has no password - the user is asked only now that it is needed
+        String password = send.password;
+        PasswordProvider provider = this.passwordProvider;
+        if ((password == null) && (send.predecessor != null) && (provider != null)) {
+            password = provider.getPassword(send);
+        }
+        if (password == null) {
+            throw new HushCommandLineBridge.WalletCallException(
+                    "The wallet is locked. Please send again and enter the wallet password.");
+        }
+
+        this.clientCaller.unlockWallet(password, UNLOCK_WINDOW_SECONDS);
+        this.ownsUnlockWindow = true;
+    }
+
+    // Closes the unlock window as soon as no payment is queued or executing
+    private void lockWalletIfIdle()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        if (!this.ownsUnlockWindow) {
+            return;
+        }
+
+        if (this.clientCaller.getSecurityState().getUnlockedUntil() == 0) {
+            // The wallet has locked itself or was locked elsewhere
+            this.ownsUnlockWindow = false;
+            return;
+        }
+
+        if (this.queue.isEmpty() && (this.getSubmittingCount() == 0)) {
+            this.clientCaller.lockWallet();
+            this.ownsUnlockWindow = false;
+        }
+    }
+
+    // Queued and executing payments - not those of a batch waiting for funds
+    private synchronized int getSubmittingCount() {
+        int count = 0;
+        for (PendingSend send : this.sends) {
+            if ((send.state == State.QUEUED) || (send.state == State.SUBMITTED)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Queues the waiting operations of batches whose previous operation has succeeded and whose funds
+    // are confirmed - those whose previous operation has failed fail as well
+    private void releaseWaitingSends()
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        boolean checkFunds = ((System.currentTimeMillis() - this.lastFundsCheck) >= FUNDS_CHECK_INTERVAL_MS) &&
+                                     // The daemon does not answer until the rescan of an import is done
+                                     (!this.clientCaller.isWalletImportRunning());
+        if (checkFunds) {
+            this.lastFundsCheck = System.currentTimeMillis();
+        }
+
+        for (PendingSend send : this.getSends()) {
+            if (send.state != State.WAITING) {
+                continue;
+            }
+
+            if (send.predecessor.state == State.FAILED) {
+                synchronized (this) {
+                    send.state = State.FAILED;
+                    send.errorMessage = "Not sent - an earlier operation of the batch has failed";
+                }
+                this.fireChange(send);
+            } else if ((send.predecessor.state == State.SUCCESSFUL) && checkFunds) {
+                // z_getbalance counts confirmed funds only - as z_sendmany spends them by default
+                HushAmount required = send.recipients.getTotal().add(send.transactionFee);
+                if (HushAmount.parse(this.clientCaller.getBalanceForAddress(send.from)).compareTo(required) >= 0) {
+                    synchronized (this) {
+                        send.state = State.QUEUED;
+                    }
+                    this.queue.add(send);
+                    this.fireChange(send);
+                }
+            }
+        }
+    }
+
+    private void fireChange(final PendingSend send) {
+        synchronized (this) {
+            // Drop the oldest finished payments
+            int finished = 0;
+            for (PendingSend s : this.sends) {
+                if (s.isFinished()) {
+                    finished++;
+                }
+            }
+            for (int i = 0; (i < this.sends.size()) && (finished > MAX_FINISHED_SENDS); ) {
+                if (this.sends.get(i).isFinished()) {
+                    this.sends.remove(i);
+                    finished--;
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            if (send.listener != null) {
+                send.listener.sendUpdated(send);
+            }
+            for (Runnable listener : SendQueue.this.changeListeners) {
+                listener.run();
+            }
+        });
+    }
+
+
+    enum State {
+        // An operation of a batch waiting for the previous one and its confirmed change
+        WAITING,
+        QUEUED,
+        SUBMITTED,
+        SUCCESSFUL,
+        FAILED
+    }
+
+
+    /**
+     * One payment in the queue. The state fields are updated by the queue.
+     */
+    static class PendingSend {
+        final String from;
+        final SendManyRecipients recipients;
+        final HushAmount transactionFee;
+        final SendListener listener;
+        // The previous operation of a batch - null for a single payment or the first operation
+        final PendingSend predecessor;
+
+        // Cleared as soon as the payment is submitted
+        private String password;
+
+        volatile State state;
+        volatile String operationID = null;
+        volatile String errorMessage = null;
+
+        PendingSend(String from, SendManyRecipients recipients, HushAmount transactionFee,
+                    String password, SendListener listener, PendingSend predecessor) {
+            this.from = from;
+            this.recipients = recipients;
+            this.transactionFee = transactionFee;
+            this.password = password;
+            this.listener = listener;
+            this.predecessor = predecessor;
+            this.state = (predecessor != null) ? State.WAITING : State.QUEUED;
+        }
+
+        boolean isFinished() {
+            return (this.state == State.SUCCESSFUL) || (this.state == State.FAILED);
+        }
+
+        // Destination address - or the number of recipients for a payment to many
+        String getDestinationDescription() {
+            return (this.recipients.size() == 1) ?
+                           this.recipients.getRecipients().get(0).address :
+                           this.recipients.size() + " recipients";
+        }
+    }
+
+
+    /**
+     * Notified on the EDT when the state of a payment changes.
+     */
+    interface SendListener {
+        void sendUpdated(PendingSend send);
+    }
+
+
+    /**
+     * Asked in the sending thread for the wallet password when a waiting operation of a batch is to be
+     * sent and the wallet is locked.
+     */
+    interface PasswordProvider {
+        // The password - null if the user does not give it, then the operation fails
+        String getPassword(PendingSend send)
+                throws InterruptedException;
+    }
+}
@@ -13,8 +13,8 @@ import java.awt.*;
  */
 class SingleKeyImportDialog extends JDialog {
     private final JTextField keyField;
-    private final JProgressBar progress;
 
+    private final JFrame parent;
     private final HushCommandLineBridge caller;
 
     private final JButton okButton;
@@ -22,6 +22,7 @@ class SingleKeyImportDialog extends JDialog {
 
     SingleKeyImportDialog(JFrame parent, HushCommandLineBridge caller) {
         super(parent);
+        this.parent = parent;
         this.caller = caller;
 
         this.setTitle("Enter private key...");
@@ -54,8 +55,8 @@ class SingleKeyImportDialog extends JDialog {
         tempPanel.add(new JLabel(
                         "<html><span style=\"font-weight:bold\">" +
                                 "Warning:</span> Private key import is a slow operation that " +
-                                "requires blockchain rescanning (may take many minutes). The GUI " +
-                                "will not be usable for other functions during this time</html>"
+                                "requires blockchain rescanning (may take many minutes). It runs in the " +
+                                "background - the wallet shows the data from before the import meanwhile.</html>"
                 ),
                 BorderLayout.CENTER
                      );
@@ -65,10 +66,6 @@ class SingleKeyImportDialog extends JDialog {
         dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
         controlsPanel.add(dividerLabel);
 
-        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
-        tempPanel.add(progress = new JProgressBar());
-        controlsPanel.add(tempPanel);
-
         this.getContentPane().setLayout(new BorderLayout(0, 0));
         this.getContentPane().add(controlsPanel, BorderLayout.NORTH);
 
@@ -106,41 +103,16 @@ class SingleKeyImportDialog extends JDialog {
             return;
         }
 
-        // Start import
-        this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
-        this.progress.setIndeterminate(true);
-        this.progress.setValue(1);
-
-        this.okButton.setEnabled(false);
-        this.cancelButon.setEnabled(false);
-
-        SingleKeyImportDialog.this.keyField.setEditable(false);
-
-        new Thread(() -> {
-            try {
-                SingleKeyImportDialog.this.caller.importPrivateKey(key);
-
-                JOptionPane.showMessageDialog(
-                        SingleKeyImportDialog.this,
-                        "The private key:\n" +
-                                key + "\n" +
-                                "has been imported successfully.",
-                        "Private key imported successfully...",
-                        JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception e) {
-                e.printStackTrace();
-
-                JOptionPane.showMessageDialog(
-                        SingleKeyImportDialog.this.getRootPane().getParent(),
-                        "An error occurred when importing private key. Error message is:\n" +
-                                e.getClass().getName() + ":\n" + e.getMessage() + "\n\n" +
-                                "Please ensure that hushd is running and the key is in the correct \n" +
-                                "form. You may try again later...\n",
-                        "Error in importing private key", JOptionPane.ERROR_MESSAGE);
-            } finally {
-                SingleKeyImportDialog.this.setVisible(false);
-                SingleKeyImportDialog.this.dispose();
-            }
-        }).start();
+        // The import goes on in the background - its progress is shown in a window of its own
+        this.setVisible(false);
+        this.dispose();
+
+        new WalletImportJob(
+                this.parent, this.caller, "Private key import",
+                "The private key:\n" +
+                        key + "\n" +
+                        "has been imported successfully.",
+                0, () -> SingleKeyImportDialog.this.caller.importPrivateKey(key)
+        ).start();
     }
 }
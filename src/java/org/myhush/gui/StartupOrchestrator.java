@@ -0,0 +1,147 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the stages of the wallet startup - stages not depending on each other at the same time - and
+ * records how long each of them has taken. A stage waits for the stages it depends on by
+ * {@link #await(CompletableFuture)}, which also passes on their exceptions as they were thrown, so
+ * the startup error handling does not have to know which thread a stage ran in.
+ */
+class StartupOrchestrator {
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicInteger threadNumber = new AtomicInteger(0);
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Startup stage " + StartupOrchestrator.this.threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<StageTiming> timings = new ArrayList<>();
+
+    /**
+     * Starts a stage in a background thread.
+     *
+     * @param name  name of the stage in the timings
+     * @param stage the work - may wait for other stages
+     * @return the result of the stage
+     */
+    public <T> CompletableFuture<T> supply(final String name, final Stage<T> stage) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        this.executor.execute(() -> {
+            try {
+                result.complete(StartupOrchestrator.this.measure(name, stage));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    // Starts a stage without a result in a background thread
+    public CompletableFuture<Void> run(String name, Action action) {
+        return this.supply(name, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Runs a stage in the current thread - e.g. one that has to create the GUI
+    public <T> T measure(String name, Stage<T> stage)
+            throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            return stage.run();
+        } finally {
+            long end = System.currentTimeMillis();
+            synchronized (this.timings) {
+                this.timings.add(new StageTiming(name, Thread.currentThread().getName(),
+                        start - this.startTime, end - start));
+            }
+        }
+    }
+
+    /**
+     * Waits for a stage to complete.
+     *
+     * @return the result of the stage
+     * @throws Exception the exception the stage has thrown
+     */
+    public <T> T await(CompletableFuture<T> stage)
+            throws Exception {
+        try {
+            return stage.get();
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    // Logs the timings - called once the main window is shown
+    public void finish() {
+        this.executor.shutdown();
+        System.out.println("Startup done in " + (System.currentTimeMillis() - this.startTime) + "ms. Stages:");
+        for (StageTiming timing : this.getTimings()) {
+            System.out.println(String.format("    %-28s start +%6dms  took %6dms  (%s)",
+                    timing.name, timing.startOffset, timing.duration, timing.threadName));
+            // Also shown by the diagnostics
+            WalletMetrics.getInstance().gauge(WalletMetrics.STARTUP_STAGE_MILLIS, "stage", timing.name, () -> timing.duration);
+        }
+    }
+
+    // In the order of the stage start
+    public List<StageTiming> getTimings() {
+        List<StageTiming> sorted;
+        synchronized (this.timings) {
+            sorted = new ArrayList<>(this.timings);
+        }
+        sorted.sort((t1, t2) -> Long.compare(t1.startOffset, t2.startOffset));
+        return sorted;
+    }
+
+
+    /**
+     * How long a stage has taken - the start is relative to the creation of the orchestrator.
+     */
+    static class StageTiming {
+        final String name;
+        final String threadName;
+        final long startOffset;
+        final long duration;
+
+        StageTiming(String name, String threadName, long startOffset, long duration) {
+            this.name = name;
+            this.threadName = threadName;
+            this.startOffset = startOffset;
+            this.duration = duration;
+        }
+    }
+
+
+    interface Stage<T> {
+        T run()
+                throws Exception;
+    }
+
+
+    interface Action {
+        void run()
+                throws Exception;
+    }
+}
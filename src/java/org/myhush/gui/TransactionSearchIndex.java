@@ -0,0 +1,266 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * In-memory search index over the wallet transactions - txid, address, amount, date and memo text.
+ * It is updated incrementally: only transactions not seen before are indexed on each refresh.
+ * <p>
+ * A query is a list of space separated terms which all need to match:
+ * min:AMOUNT, max:AMOUNT, from:yyyy-MM-dd, to:yyyy-MM-dd (inclusive) and plain text, which is
+ * searched for (case insensitive) in the txid, address and memo.
+ */
+class TransactionSearchIndex {
+    // Index of the row key in the transaction rows
+    static final int KEY_INDEX = 7;
+
+    private final MemoStore memoStore;
+
+    // Row key -> indexed transaction
+    private final Map<String, IndexedTransaction> transactions = new HashMap<>();
+    // Time (seconds) -> row keys, for date ranges. Transactions with no time are not in it.
+    private final NavigableMap<Long, Set<String>> keysByTime = new TreeMap<>();
+
+    TransactionSearchIndex(MemoStore memoStore) {
+        this.memoStore = memoStore;
+    }
+
+    /**
+     * Computes the key identifying a transaction row - one transaction may have several rows
+     * (e.g. several outputs).
+     *
+     * @param row raw transaction row as returned by the bridge (type, category, confirmations,
+     *            amount, time, address, txid)
+     * @return the key
+     */
+    static String rowKey(String[] row) {
+        return stripQuotes(row[6]) + '/' + row[1] + '/' + row[5] + '/' + row[3];
+    }
+
+    /**
+     * Brings the index up to date with the current transactions. Only the transactions not seen
+     * before are indexed, the ones that have disappeared (e.g. dropped unconfirmed) are removed.
+     *
+     * @param rows raw transaction rows with the row key at {@link #KEY_INDEX}
+     */
+    public synchronized void update(String[][] rows) {
+        Set<String> currentKeys = new HashSet<>(rows.length * 2);
+        int added = 0;
+        for (String[] row : rows) {
+            String key = row[KEY_INDEX];
+            currentKeys.add(key);
+            if (!this.transactions.containsKey(key)) {
+                this.add(key, row);
+                added++;
+            }
+        }
+
+        int removed = 0;
+        if (currentKeys.size() < this.transactions.size()) {
+            Iterator<IndexedTransaction> iterator = this.transactions.values().iterator();
+            while (iterator.hasNext()) {
+                IndexedTransaction transaction = iterator.next();
+                if (!currentKeys.contains(transaction.key)) {
+                    iterator.remove();
+                    this.removeFromTimeIndex(transaction);
+                    removed++;
+                }
+            }
+        }
+
+        if ((added > 0) || (removed > 0)) {
+            System.out.println("Transaction search index: " + added + " added, " + removed + " removed, " +
+                                       this.transactions.size() + " in total.");
+        }
+    }
+
+    /**
+     * Finds the transactions matching a query.
+     *
+     * @param query the query - see the class description
+     * @return the keys of the matching rows
+     * @throws IllegalArgumentException if the query has an invalid amount or date
+     */
+    public Set<String> search(String query) {
+        Query parsedQuery = Query.parse(query);
+
+        Set<String> result = new HashSet<>();
+        synchronized (this) {
+            Collection<String> candidates;
+            if ((parsedQuery.fromTime != Long.MIN_VALUE) || (parsedQuery.toTime != Long.MAX_VALUE)) {
+                candidates = new ArrayList<>();
+                for (Set<String> keys : this.keysByTime.subMap(
+                        parsedQuery.fromTime, true, parsedQuery.toTime, false).values()) {
+                    candidates.addAll(keys);
+                }
+            } else {
+                candidates = this.transactions.keySet();
+            }
+
+            for (String key : candidates) {
+                if (parsedQuery.matches(this.transactions.get(key))) {
+                    result.add(key);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public synchronized int size() {
+        return this.transactions.size();
+    }
+
+    private void add(String key, String[] row) {
+        String txID = stripQuotes(row[6]);
+        String address = row[5];
+
+        long zatoshis;
+        try {
+            zatoshis = Math.abs(HushAmount.parseZatoshis(row[3]));
+        } catch (NumberFormatException e) {
+            zatoshis = -1;
+        }
+
+        long time = Long.MIN_VALUE;
+        if (!row[4].equals("N/A")) {
+            try {
+                time = Long.parseLong(row[4].trim());
+            } catch (NumberFormatException nfe) {
+                // Not searchable by date
+            }
+        }
+
+        StringBuilder text = new StringBuilder(txID).append(' ').append(address);
+        String memo = this.memoStore.getMemo(txID, address);
+        if (memo != null) {
+            text.append(' ').append(memo);
+        }
+
+        IndexedTransaction transaction = new IndexedTransaction(
+                key, zatoshis, time, text.toString().toLowerCase(Locale.ROOT));
+        this.transactions.put(key, transaction);
+        if (time != Long.MIN_VALUE) {
+            this.keysByTime.computeIfAbsent(time, t -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void removeFromTimeIndex(IndexedTransaction transaction) {
+        if (transaction.time == Long.MIN_VALUE) {
+            return;
+        }
+
+        Set<String> keys = this.keysByTime.get(transaction.time);
+        if (keys != null) {
+            keys.remove(transaction.key);
+            if (keys.isEmpty()) {
+                this.keysByTime.remove(transaction.time);
+            }
+        }
+    }
+
+    private static String stripQuotes(String value) {
+        return value.replace("\"", "");
+    }
+
+
+    /**
+     * The searchable data of one transaction row - immutable.
+     */
+    private static class IndexedTransaction {
+        final String key;
+        // Absolute amount - -1 if unknown
+        final long zatoshis;
+        // Seconds since the epoch - Long.MIN_VALUE if unknown
+        final long time;
+        // Lower case txid, address and memo
+        final String text;
+
+        IndexedTransaction(String key, long zatoshis, long time, String text) {
+            this.key = key;
+            this.zatoshis = zatoshis;
+            this.time = time;
+            this.text = text;
+        }
+    }
+
+
+    /**
+     * A parsed query - immutable.
+     */
+    private static class Query {
+        final long minZatoshis;
+        final long maxZatoshis;
+        // Inclusive start and exclusive end in seconds
+        final long fromTime;
+        final long toTime;
+        final List<String> terms;
+
+        private Query(long minZatoshis, long maxZatoshis, long fromTime, long toTime, List<String> terms) {
+            this.minZatoshis = minZatoshis;
+            this.maxZatoshis = maxZatoshis;
+            this.fromTime = fromTime;
+            this.toTime = toTime;
+            this.terms = terms;
+        }
+
+        static Query parse(String query) {
+            long minZatoshis = Long.MIN_VALUE;
+            long maxZatoshis = Long.MAX_VALUE;
+            long fromTime = Long.MIN_VALUE;
+            long toTime = Long.MAX_VALUE;
+            List<String> terms = new ArrayList<>();
+
+            for (String token : query.trim().split("\\s+")) {
+                String lowerCaseToken = token.toLowerCase(Locale.ROOT);
+                try {
+                    if (lowerCaseToken.startsWith("min:")) {
+                        minZatoshis = HushAmount.parseZatoshis(token.substring(4));
+                    } else if (lowerCaseToken.startsWith("max:")) {
+                        maxZatoshis = HushAmount.parseZatoshis(token.substring(4));
+                    } else if (lowerCaseToken.startsWith("from:")) {
+                        fromTime = startOfDay(LocalDate.parse(token.substring(5)));
+                    } else if (lowerCaseToken.startsWith("to:")) {
+                        toTime = startOfDay(LocalDate.parse(token.substring(3)).plusDays(1));
+                    } else if (token.length() > 0) {
+                        terms.add(lowerCaseToken);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid amount in: " + token);
+                } catch (DateTimeParseException dtpe) {
+                    throw new IllegalArgumentException("Invalid date (expected yyyy-MM-dd) in: " + token);
+                }
+            }
+
+            return new Query(minZatoshis, maxZatoshis, fromTime, toTime, terms);
+        }
+
+        private static long startOfDay(LocalDate date) {
+            return date.atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+        }
+
+        boolean matches(IndexedTransaction transaction) {
+            if ((this.minZatoshis != Long.MIN_VALUE) || (this.maxZatoshis != Long.MAX_VALUE)) {
+                if ((transaction.zatoshis < 0) ||
+                            (transaction.zatoshis < this.minZatoshis) || (transaction.zatoshis > this.maxZatoshis)) {
+                    return false;
+                }
+            }
+
+            for (String term : this.terms) {
+                if (!transaction.text.contains(term)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -30,9 +30,13 @@ class TransactionTable extends DataTable {
         popupMenu.add(showDetails);
 
         showDetails.addActionListener(e -> {
+            if (WalletImportJob.refuseWhileImporting(parent, caller)) {
+                return;
+            }
+
             if ((lastRow >= 0) && (lastColumn >= 0)) {
                 try {
-                    String txID = TransactionTable.this.getModel().getValueAt(lastRow, 6).toString();
+                    String txID = TransactionTable.this.getModel().getValueAt(TransactionTable.this.convertRowIndexToModel(lastRow), 6).toString();
                     txID = txID.replaceAll("\"", ""); // In case it has quotes
 
                     System.out.println("Transaction ID for detail dialog is: " + txID);
@@ -58,7 +62,7 @@ class TransactionTable extends DataTable {
         showInExplorer.addActionListener(e -> {
             if ((lastRow >= 0) && (lastColumn >= 0)) {
                 try {
-                    String txID = TransactionTable.this.getModel().getValueAt(lastRow, 6).toString();
+                    String txID = TransactionTable.this.getModel().getValueAt(TransactionTable.this.convertRowIndexToModel(lastRow), 6).toString();
                     txID = txID.replaceAll("\"", ""); // In case it has quotes
 
                     System.out.println("Transaction ID for block explorer is: " + txID);
@@ -78,13 +82,17 @@ class TransactionTable extends DataTable {
         popupMenu.add(showMemoField);
 
         showMemoField.addActionListener(e -> {
+            if (WalletImportJob.refuseWhileImporting(parent, caller)) {
+                return;
+            }
+
             if ((lastRow >= 0) && (lastColumn >= 0)) {
                 Cursor oldCursor = parent.getCursor();
                 try {
-                    String txID = TransactionTable.this.getModel().getValueAt(lastRow, 6).toString();
+                    String txID = TransactionTable.this.getModel().getValueAt(TransactionTable.this.convertRowIndexToModel(lastRow), 6).toString();
                     txID = txID.replaceAll("\"", ""); // In case it has quotes
 
-                    String acc = TransactionTable.this.getModel().getValueAt(lastRow, 5).toString();
+                    String acc = TransactionTable.this.getModel().getValueAt(TransactionTable.this.convertRowIndexToModel(lastRow), 5).toString();
                     acc = acc.replaceAll("\"", ""); // In case it has quotes
 
                     // TODO: We need a much more precise criterion to distinguish T/Z adresses;
@@ -0,0 +1,67 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds per-address confirmed/unconfirmed balances from the result of a single
+ * listunspent 0 (T) or z_listunspent 0 (Z) call. Amounts are summed exactly as zatoshis.
+ */
+class UnspentOutputAggregator {
+    private UnspentOutputAggregator() {
+    }
+
+    /**
+     * Aggregates the unspent outputs/notes by address in one pass. Outputs that are not spendable
+     * (e.g. watch-only) are skipped - the same as z_getbalance does.
+     *
+     * @param unspentOutputs array of outputs as returned by listunspent/z_listunspent with minconf 0
+     * @return address to totals
+     */
+    static Map<String, AddressTotals> aggregate(JsonArray unspentOutputs) {
+        Map<String, AddressTotals> totals = new HashMap<>();
+
+        for (JsonValue value : unspentOutputs) {
+            JsonObject output = value.asObject();
+            if (!output.getBoolean("spendable", true)) {
+                continue;
+            }
+
+            String address = output.getString("address", null);
+            JsonValue amount = output.get("amount");
+            if ((address == null) || (amount == null)) {
+                continue;
+            }
+
+            AddressTotals addressTotals = totals.get(address);
+            if (addressTotals == null) {
+                addressTotals = new AddressTotals();
+                totals.put(address, addressTotals);
+            }
+
+            long zatoshis = HushAmount.zatoshisFromJson(amount);
+            addressTotals.unconfirmedZatoshis += zatoshis;
+            if (output.getInt("confirmations", 0) >= 1) {
+                addressTotals.confirmedZatoshis += zatoshis;
+            }
+        }
+
+        return totals;
+    }
+
+    /**
+     * Balance totals of one address in zatoshis.
+     */
+    static class AddressTotals {
+        long confirmedZatoshis;
+        long unconfirmedZatoshis;
+    }
+}
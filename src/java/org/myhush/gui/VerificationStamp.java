@@ -0,0 +1,109 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+
+/**
+ * Records that a file has been verified against its digest - with the size, modification time and
+ * identity (inode where the file system has one) of the file at that time. While they are the same
+ * the file is trusted without being read again, so the check costs O(1) instead of hashing the
+ * whole file.
+ */
+class VerificationStamp {
+    private final long size;
+    private final long lastModified;
+    // E.g. (dev=803,ino=1234) - null if the file system has no such identity
+    private final String fileKey;
+    private final String digest;
+
+    private VerificationStamp(long size, long lastModified, String fileKey, String digest) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+        this.digest = digest;
+    }
+
+    /**
+     * Creates the stamp of a file that has just been verified.
+     *
+     * @param file   the file
+     * @param digest the hex digest of the file
+     */
+    static VerificationStamp of(File file, String digest)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        return new VerificationStamp(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                (fileKey != null) ? fileKey.toString() : null, digest);
+    }
+
+    /**
+     * Tells if a file is still the one verified when the stamp was written.
+     *
+     * @param file           the file
+     * @param stampFile      the stamp of the file - may be missing
+     * @param expectedDigest the hex digest the file must have
+     * @return true if the file may be trusted without verifying it again
+     */
+    static boolean isVerified(File file, File stampFile, String expectedDigest) {
+        if ((!file.exists()) || (!stampFile.exists())) {
+            return false;
+        }
+
+        try {
+            VerificationStamp stamp = read(stampFile);
+            VerificationStamp current = of(file, stamp.digest);
+            return stamp.digest.equalsIgnoreCase(expectedDigest) &&
+                           (stamp.size == current.size) &&
+                           (stamp.lastModified == current.lastModified) &&
+                           ((stamp.fileKey == null) ? (current.fileKey == null) : stamp.fileKey.equals(current.fileKey));
+        } catch (IOException | RuntimeException e) {
+            // A damaged stamp only means the file is verified again
+            System.out.println("Ignoring verification stamp " + stampFile.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public void write(File stampFile)
+            throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("size", String.valueOf(this.size));
+        properties.setProperty("lastModified", String.valueOf(this.lastModified));
+        if (this.fileKey != null) {
+            properties.setProperty("fileKey", this.fileKey);
+        }
+        properties.setProperty("sha256", this.digest);
+
+        try (Writer writer = Files.newBufferedWriter(stampFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.store(writer, "Verified file - do not edit");
+        }
+    }
+
+    private static VerificationStamp read(File stampFile)
+            throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(stampFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        String digest = properties.getProperty("sha256");
+        if (digest == null) {
+            throw new IOException("No digest in the stamp");
+        }
+        return new VerificationStamp(
+                Long.parseLong(properties.getProperty("size")),
+                Long.parseLong(properties.getProperty("lastModified")),
+                properties.getProperty("fileKey"),
+                digest);
+    }
+}
@@ -0,0 +1,276 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exports the complete transaction history of the wallet - not only the transactions shown on the
+ * dashboard. Public transactions are read page by page (listtransactions with an offset) and the
+ * received Z outputs one address at a time, and every row is written to the file right away, so the
+ * memory used does not grow with the size of the wallet. Runs in a background thread and may be
+ * cancelled - the partial file is deleted then.
+ */
+class WalletHistoryExporter {
+    // Number of public transactions requested from the wallet at once
+    private static final int PAGE_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] FIELD_NAMES = {
+            "type", "category", "txid", "address", "amount", "fee", "confirmations", "time", "date", "memo"
+    };
+    private static final String[] COLUMN_NAMES = {
+            "Type", "Category", "Transaction ID", "Address", "Amount", "Fee", "Confirmations", "Time",
+            "Date (UTC)", "Memo"
+    };
+
+    enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    private final Component parent;
+    private final HushCommandLineBridge clientCaller;
+    private final File file;
+    private final Format format;
+
+    private final ProgressMonitor progressMonitor;
+    private volatile boolean cancelled = false;
+
+    WalletHistoryExporter(Component parent, HushCommandLineBridge clientCaller, File file, Format format) {
+        this.parent = parent;
+        this.clientCaller = clientCaller;
+        this.file = file;
+        this.format = format;
+
+        // The number of Z addresses is not known yet - the maximum is set when it is
+        this.progressMonitor = new ProgressMonitor(
+                parent, "Exporting the transaction history to " + file.getName() + "...", " ", 0, 1);
+        this.progressMonitor.setMillisToDecideToPopup(300);
+    }
+
+    // Starts the export - called on the EDT
+    public void start() {
+        new Thread(this::export, "Transaction history export").start();
+    }
+
+    private void export() {
+        long start = System.currentTimeMillis();
+        int rowCount = 0;
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(this.file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                if (this.format == Format.CSV) {
+                    writer.write('\uFEFF');
+                    this.writeCsvRow(writer, COLUMN_NAMES);
+                }
+
+                rowCount += this.exportPublicTransactions(writer);
+                if (!this.cancelled) {
+                    rowCount += this.exportZReceivedOutputs(writer, rowCount);
+                }
+            }
+        } catch (final Exception e) {
+            e.printStackTrace();
+            this.deletePartialFile();
+            SwingUtilities.invokeLater(() -> {
+                WalletHistoryExporter.this.progressMonitor.close();
+                JOptionPane.showMessageDialog(
+                        WalletHistoryExporter.this.parent,
+                        "An unexpected error occurred when exporting the transaction history.\n" +
+                                "\n" +
+                                e.getMessage(),
+                        "Error in transaction history export", JOptionPane.ERROR_MESSAGE);
+            });
+            return;
+        }
+
+        if (this.cancelled) {
+            System.out.println("Transaction history export cancelled.");
+            this.deletePartialFile();
+            SwingUtilities.invokeLater(this.progressMonitor::close);
+            return;
+        }
+
+        System.out.println("Exported " + rowCount + " transaction history rows in " +
+                                   (System.currentTimeMillis() - start) + "ms.");
+        final int exportedRows = rowCount;
+        SwingUtilities.invokeLater(() -> {
+            WalletHistoryExporter.this.progressMonitor.close();
+            JOptionPane.showMessageDialog(
+                    WalletHistoryExporter.this.parent,
+                    "The transaction history (" + exportedRows + " entries) has been exported successfully to:\n" +
+                            WalletHistoryExporter.this.file.getAbsolutePath(),
+                    "Export successful...", JOptionPane.INFORMATION_MESSAGE);
+        });
+    }
+
+    // Pages through listtransactions from the newest transactions to the oldest ones
+    private int exportPublicTransactions(Writer writer)
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        int rowCount = 0;
+        // Keys of the previous page - a transaction arriving meanwhile shifts the offsets, so the
+        // first transactions of a page may have been in the previous one already
+        Set<String> previousPageKeys = new HashSet<>();
+
+        for (int from = 0; !this.cancelled; from += PAGE_SIZE) {
+            JsonArray page = this.clientCaller.getWalletPublicTransactionsPage(PAGE_SIZE, from);
+            Set<String> pageKeys = new HashSet<>();
+
+            for (JsonValue value : page) {
+                JsonObject trans = value.asObject();
+                String txID = trans.getString("txid", "");
+                String category = trans.getString("category", "");
+                String key = txID + '/' + category + '/' + trans.get("vout") + '/' + trans.getString("address", "");
+                pageKeys.add(key);
+                if (previousPageKeys.contains(key)) {
+                    continue;
+                }
+
+                long time = trans.getLong("time", -1);
+                this.writeRow(writer, new String[] {
+                        "T (Public)",
+                        category,
+                        txID,
+                        trans.getString("address", ""),
+                        numberText(trans.get("amount")),
+                        numberText(trans.get("fee")),
+                        numberText(trans.get("confirmations")),
+                        (time >= 0) ? String.valueOf(time) : "",
+                        formatTime(time),
+                        ""
+                });
+                rowCount++;
+            }
+
+            this.reportProgress(0, "Public transactions: " + rowCount);
+
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            previousPageKeys = pageKeys;
+        }
+
+        return rowCount;
+    }
+
+    // Exports the outputs received by each Z address - the wallet returns them all at once per address
+    private int exportZReceivedOutputs(Writer writer, int previousRowCount)
+            throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException {
+        final String[] zAddresses = this.clientCaller.getWalletZAddresses();
+        SwingUtilities.invokeLater(() -> WalletHistoryExporter.this.progressMonitor.setMaximum(zAddresses.length + 1));
+
+        int rowCount = 0;
+        for (int i = 0; (i < zAddresses.length) && (!this.cancelled); i++) {
+            String zAddress = zAddresses[i];
+            JsonArray outputs = this.clientCaller.getWalletZReceivedOutputs(zAddress);
+            // One transaction may have several outputs to the same address
+            Map<String, JsonObject> transactions = new HashMap<>();
+
+            for (JsonValue value : outputs) {
+                JsonObject output = value.asObject();
+                String txID = output.getString("txid", "");
+
+                JsonObject trans = transactions.get(txID);
+                if (trans == null) {
+                    trans = this.clientCaller.getWalletTransaction(txID);
+                    transactions.put(txID, trans);
+                }
+
+                long time = trans.getLong("time", -1);
+                String memo = MemoStore.decodeMemo(output.getString("memo", null));
+                this.writeRow(writer, new String[] {
+                        "Z (Private)",
+                        "receive",
+                        txID,
+                        zAddress,
+                        numberText(output.get("amount")),
+                        "",
+                        numberText(trans.get("confirmations")),
+                        (time >= 0) ? String.valueOf(time) : "",
+                        formatTime(time),
+                        (memo != null) ? memo : ""
+                });
+                rowCount++;
+            }
+
+            this.reportProgress(i + 1, "Public transactions: " + previousRowCount +
+                                               ", private (Z) receipts: " + rowCount);
+        }
+
+        return rowCount;
+    }
+
+    private void writeRow(Writer writer, String[] values)
+            throws IOException {
+        if (this.format == Format.CSV) {
+            this.writeCsvRow(writer, values);
+        } else {
+            JsonObject object = Json.object();
+            for (int i = 0; i < values.length; i++) {
+                object.add(FIELD_NAMES[i], values[i]);
+            }
+            object.writeTo(writer);
+            writer.write('\n');
+        }
+    }
+
+    private void writeCsvRow(Writer writer, String[] values)
+            throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            CsvExporter.writeField(writer, values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    // The progress monitor may only be used on the EDT - it tells back if the user has cancelled
+    private void reportProgress(final int progress, final String note) {
+        SwingUtilities.invokeLater(() -> {
+            if (WalletHistoryExporter.this.progressMonitor.isCanceled()) {
+                WalletHistoryExporter.this.cancelled = true;
+            } else {
+                WalletHistoryExporter.this.progressMonitor.setProgress(progress);
+                WalletHistoryExporter.this.progressMonitor.setNote(note);
+            }
+        });
+    }
+
+    private void deletePartialFile() {
+        if (this.file.exists() && !this.file.delete()) {
+            System.out.println("Could not delete partial export: " + this.file.getAbsolutePath());
+        }
+    }
+
+    // Numbers keep the exact text the wallet has sent
+    private static String numberText(JsonValue value) {
+        return ((value != null) && !value.isNull()) ? value.toString() : "";
+    }
+
+    private static String formatTime(long time) {
+        return (time >= 0) ? DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochSecond(time)) : "";
+    }
+}
@@ -0,0 +1,181 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+
+/**
+ * Runs a key or wallet import in the background. The import makes the wallet rescan the blockchain,
+ * which may take many minutes - a small window that does not block the rest of the GUI shows the
+ * progress of the rescan meanwhile (see {@link RescanProgressMonitor}). The window may be hidden;
+ * the outcome is shown when the import is done.
+ */
+class WalletImportJob {
+    private final JFrame parent;
+    private final HushCommandLineBridge clientCaller;
+    private final String title;
+    private final String successMessage;
+    private final int rescanStartHeight;
+    private final Import importCall;
+
+    private final JDialog progressDialog;
+    private final JProgressBar progress;
+    private final JLabel statusLabel;
+
+    /**
+     * @param title             shown as the title of the progress window and the messages
+     * @param successMessage    shown when the import has succeeded
+     * @param rescanStartHeight block height the wallet rescans from
+     * @param importCall        the import itself - runs in a background thread
+     */
+    WalletImportJob(JFrame parent, HushCommandLineBridge clientCaller, String title, String successMessage,
+                    int rescanStartHeight, Import importCall) {
+        this.parent = parent;
+        this.clientCaller = clientCaller;
+        this.title = title;
+        this.successMessage = successMessage;
+        this.rescanStartHeight = rescanStartHeight;
+        this.importCall = importCall;
+
+        this.progressDialog = new JDialog(parent, title, false);
+        this.progressDialog.setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
+
+        JPanel controlsPanel = new JPanel();
+        controlsPanel.setLayout(new BoxLayout(controlsPanel, BoxLayout.Y_AXIS));
+        controlsPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JPanel tempPanel = new JPanel(new BorderLayout(0, 0));
+        tempPanel.add(new JLabel(
+                        "<html>The wallet is rescanning the blockchain for the transactions of the imported keys. " +
+                                "This may take many minutes. Meanwhile the wallet shows the data from before the " +
+                                "import. This window may be hidden - the import goes on.</html>"),
+                BorderLayout.CENTER);
+        controlsPanel.add(tempPanel);
+
+        JLabel dividerLabel = new JLabel("   ");
+        dividerLabel.setFont(new Font("Helvetica", Font.PLAIN, 8));
+        controlsPanel.add(dividerLabel);
+
+        tempPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tempPanel.add(this.progress = new JProgressBar(0, 100));
+        this.progress.setIndeterminate(true);
+        tempPanel.add(new JLabel("  "));
+        tempPanel.add(this.statusLabel = new JLabel("Starting the rescan..."));
+        controlsPanel.add(tempPanel);
+
+        this.progressDialog.getContentPane().setLayout(new BorderLayout(0, 0));
+        this.progressDialog.getContentPane().add(controlsPanel, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setLayout(new FlowLayout(FlowLayout.CENTER, 3, 3));
+        JButton hideButton = new JButton("Hide");
+        buttonPanel.add(hideButton);
+        this.progressDialog.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+
+        hideButton.addActionListener(e -> WalletImportJob.this.progressDialog.setVisible(false));
+
+        this.progressDialog.setSize(520, 200);
+        this.progressDialog.setLocation(parent.getLocation().x + 50, parent.getLocation().y + 50);
+    }
+
+    // Starts the import - called on the EDT
+    public void start() {
+        // Marked as running already before the thread gets to the import
+        this.clientCaller.beginWalletImport();
+        this.progressDialog.setVisible(true);
+        new Thread(this::runImport, "Wallet import").start();
+    }
+
+    private void runImport() {
+        RescanProgressMonitor monitor = startProgressMonitor(this.clientCaller, this.rescanStartHeight,
+                (block, endHeight, percent) -> {
+                    WalletImportJob.this.progress.setIndeterminate(false);
+                    WalletImportJob.this.progress.setValue(percent);
+                    WalletImportJob.this.statusLabel.setText(
+                            "Rescanning - at block " + block + " of " + endHeight + " (" + percent + "%)");
+                });
+
+        long start = System.currentTimeMillis();
+        try {
+            this.importCall.run();
+        } catch (final Exception e) {
+            e.printStackTrace();
+            SwingUtilities.invokeLater(() -> {
+                WalletImportJob.this.progressDialog.dispose();
+                JOptionPane.showMessageDialog(
+                        WalletImportJob.this.parent,
+                        "An error occurred when importing. Error message is:\n" +
+                                e.getClass().getName() + ":\n" + String.valueOf(e.getMessage()).replace(",", ",\n") + "\n\n" +
+                                "Please ensure that hushd is running. You may try again later...\n",
+                        "Error in " + WalletImportJob.this.title, JOptionPane.ERROR_MESSAGE);
+            });
+            return;
+        } finally {
+            if (monitor != null) {
+                monitor.stop();
+            }
+            this.clientCaller.endWalletImport();
+        }
+
+        System.out.println(this.title + " done in " + (System.currentTimeMillis() - start) + "ms.");
+        SwingUtilities.invokeLater(() -> {
+            WalletImportJob.this.progressDialog.dispose();
+            JOptionPane.showMessageDialog(
+                    WalletImportJob.this.parent,
+                    WalletImportJob.this.successMessage,
+                    WalletImportJob.this.title, JOptionPane.INFORMATION_MESSAGE);
+        });
+    }
+
+    /**
+     * Checks before an action calling the wallet on the EDT if an import is running - the daemon does
+     * not answer until the rescan is done, so the GUI would freeze. The user is asked to wait then.
+     *
+     * @return true if an import is running and the action is not to be done
+     */
+    static boolean refuseWhileImporting(Component parent, HushCommandLineBridge clientCaller) {
+        if (!clientCaller.isWalletImportRunning()) {
+            return false;
+        }
+
+        JOptionPane.showMessageDialog(
+                parent,
+                "The wallet is rescanning the blockchain for imported keys and cannot\n" +
+                        "do this meanwhile. Please try again when the import is done.",
+                "Import running...", JOptionPane.INFORMATION_MESSAGE);
+        return true;
+    }
+
+    /**
+     * Starts following the rescan of an import that is about to begin - called in the importing
+     * thread before the import.
+     *
+     * @return the running monitor or null if the chain height is not known
+     */
+    static RescanProgressMonitor startProgressMonitor(HushCommandLineBridge clientCaller, int rescanStartHeight,
+                                                      RescanProgressMonitor.ProgressListener listener) {
+        try {
+            RescanProgressMonitor monitor = new RescanProgressMonitor(
+                    rescanStartHeight, clientCaller.getBlockCount(), listener);
+            monitor.start();
+            return monitor;
+        } catch (Exception e) {
+            // Only the progress is not shown then
+            System.out.println("Rescan progress is not available: " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * The import call - blocks until the wallet is done.
+     */
+    interface Import {
+        void run()
+                throws HushCommandLineBridge.WalletCallException, IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,257 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.awt.event.ActionListener;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the metrics of the wallet - counters, gauges and latency histograms. A metric is
+ * created the first time it is asked for, so the code measuring something does not have to
+ * register it anywhere. There is one registry for the whole wallet, shown by the diagnostics
+ * dialog and exposed through JMX.
+ */
+class WalletMetrics implements WalletMetricsMXBean {
+    // Metric families - with the label telling the metrics of a family apart
+    static final String RPC_DURATION = "rpc_duration";
+    static final String RPC_ERRORS = "rpc_errors";
+    static final String PROCESS_SPAWNS = "process_spawns";
+    static final String GATHERER_DURATION = "gatherer_duration";
+    static final String EDT_UPDATE_DURATION = "edt_update_duration";
+    static final String CACHE_HITS = "cache_hits";
+    static final String CACHE_MISSES = "cache_misses";
+    static final String STARTUP_STAGE_MILLIS = "startup_stage_millis";
+
+    private static final WalletMetrics INSTANCE = new WalletMetrics();
+
+    private final Map<MetricName, Counter> counters = new ConcurrentSkipListMap<>();
+    private final Map<MetricName, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<MetricName, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    private WalletMetrics() {
+        Runtime runtime = Runtime.getRuntime();
+        this.gauge("jvm_heap_used_bytes", null, null, () -> runtime.totalMemory() - runtime.freeMemory());
+        this.gauge("jvm_threads", null, null, () -> Thread.activeCount());
+    }
+
+    static WalletMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String family, String labelName, String labelValue) {
+        return this.counters.computeIfAbsent(new MetricName(family, labelName, labelValue), name -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String family, String labelName, String labelValue) {
+        return this.histograms.computeIfAbsent(
+                new MetricName(family, labelName, labelValue), name -> new LatencyHistogram());
+    }
+
+    // Replaces a gauge of the same name
+    public void gauge(String family, String labelName, String labelValue, DoubleSupplier value) {
+        this.gauges.put(new MetricName(family, labelName, labelValue), value);
+    }
+
+    // Duration of a hush-cli call
+    public LatencyHistogram rpcDuration(String command) {
+        return this.histogram(RPC_DURATION, "command", command);
+    }
+
+    // hush-cli calls that have failed
+    public Counter rpcErrors(String command) {
+        return this.counter(RPC_ERRORS, "command", command);
+    }
+
+    // Child processes started - hush-cli calls and others
+    public Counter processSpawns(String program) {
+        return this.counter(PROCESS_SPAWNS, "program", program);
+    }
+
+    // Duration of one run of a data gathering thread
+    public LatencyHistogram gathererDuration(String gatherer) {
+        return this.histogram(GATHERER_DURATION, "gatherer", gatherer);
+    }
+
+    // Duration of an update of the GUI in the event dispatch thread
+    public LatencyHistogram edtUpdateDuration(String update) {
+        return this.histogram(EDT_UPDATE_DURATION, "update", update);
+    }
+
+    public void cacheHit(String cache) {
+        this.counter(CACHE_HITS, "cache", cache).increment();
+    }
+
+    public void cacheMiss(String cache) {
+        this.counter(CACHE_MISSES, "cache", cache).increment();
+    }
+
+    // Wraps the listener of a timer updating the GUI so that its duration is recorded
+    public ActionListener timedEdtUpdate(String update, ActionListener listener) {
+        final LatencyHistogram histogram = this.edtUpdateDuration(update);
+        return e -> {
+            long start = System.nanoTime();
+            try {
+                listener.actionPerformed(e);
+            } finally {
+                histogram.recordNanos(System.nanoTime() - start);
+            }
+        };
+    }
+
+    // Sorted by name
+    public Map<MetricName, Counter> counters() {
+        return this.counters;
+    }
+
+    public Map<MetricName, DoubleSupplier> gauges() {
+        return this.gauges;
+    }
+
+    public Map<MetricName, LatencyHistogram> histograms() {
+        return this.histograms;
+    }
+
+    public void registerMBean()
+            throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(
+                this, new ObjectName("org.myhush.gui:type=WalletMetrics"));
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<MetricName, Counter> entry : this.counters.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getGauges() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<MetricName, DoubleSupplier> entry : this.gauges.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().getAsDouble());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<MetricName, LatencyHistogram> entry : this.histograms.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().snapshot().count);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getCallsPerMinute() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<MetricName, LatencyHistogram> entry : this.histograms.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().snapshot().lastMinuteCount);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getP50LatencyMillis() {
+        return this.getLatencyMillis(50.0);
+    }
+
+    @Override
+    public Map<String, Double> getP99LatencyMillis() {
+        return this.getLatencyMillis(99.0);
+    }
+
+    @Override
+    public Map<String, Double> getMaxLatencyMillis() {
+        return this.getLatencyMillis(100.0);
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRates() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<MetricName, Counter> entry : this.counters.entrySet()) {
+            MetricName name = entry.getKey();
+            if (name.family.equals(CACHE_HITS)) {
+                result.put(name.labelValue, this.getCacheHitRate(name.labelValue));
+            }
+        }
+        return result;
+    }
+
+    // Between 0 and 1 - 0 if the cache has not been used
+    public double getCacheHitRate(String cache) {
+        long hits = this.counter(CACHE_HITS, "cache", cache).get();
+        long misses = this.counter(CACHE_MISSES, "cache", cache).get();
+        return ((hits + misses) > 0) ? ((double) hits / (hits + misses)) : 0.0;
+    }
+
+    private Map<String, Double> getLatencyMillis(double percentile) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<MetricName, LatencyHistogram> entry : this.histograms.entrySet()) {
+            result.put(entry.getKey().toString(), entry.getValue().snapshot().getPercentile(percentile) / 1000.0);
+        }
+        return result;
+    }
+
+
+    static class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            this.value.incrementAndGet();
+        }
+
+        public long get() {
+            return this.value.get();
+        }
+    }
+
+
+    /**
+     * Name of a metric - a family (e.g. rpc_duration) and optionally one label (e.g. command=getinfo)
+     * telling the metrics of the family apart.
+     */
+    static final class MetricName implements Comparable<MetricName> {
+        final String family;
+        // Both null for a metric without a label
+        final String labelName;
+        final String labelValue;
+
+        MetricName(String family, String labelName, String labelValue) {
+            this.family = family;
+            this.labelName = labelName;
+            this.labelValue = labelValue;
+        }
+
+        @Override
+        public int compareTo(MetricName other) {
+            return this.toString().compareTo(other.toString());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof MetricName) && this.toString().equals(other.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.toString().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return (this.labelName != null) ? (this.family + "{" + this.labelName + "=" + this.labelValue + "}") : this.family;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+import java.util.Map;
+
+/**
+ * The wallet metrics as seen through JMX - registered as org.myhush.gui:type=WalletMetrics. The
+ * keys of the maps are the metric names, e.g. rpc_duration{command=getinfo}.
+ * <p>
+ * JMX requires the interface to be public.
+ */
+public interface WalletMetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Double> getGauges();
+
+    // Calls (values recorded) of each latency histogram since the start
+    Map<String, Long> getCallCounts();
+
+    Map<String, Long> getCallsPerMinute();
+
+    Map<String, Double> getP50LatencyMillis();
+
+    Map<String, Double> getP99LatencyMillis();
+
+    Map<String, Double> getMaxLatencyMillis();
+
+    // Hits / (hits + misses) of each cache
+    Map<String, Double> getCacheHitRates();
+}
@@ -8,11 +8,13 @@ package org.myhush.gui;
 import org.myhush.gui.HushCommandLineBridge.WalletCallException;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
 import java.io.File;
 import java.io.IOException;
+import java.util.Locale;
 
 /**
  * Provides miscellaneous operations for the wallet file.
@@ -48,6 +50,10 @@ class WalletOperations {
 
 
     public void encryptWallet() {
+        if (WalletImportJob.refuseWhileImporting(this.parent, this.clientCaller)) {
+            return;
+        }
+
         try {
             if (this.clientCaller.isWalletEncrypted()) {
                 JOptionPane.showMessageDialog(
@@ -109,6 +115,10 @@ class WalletOperations {
 
 
     public void backupWallet() {
+        if (WalletImportJob.refuseWhileImporting(this.parent, this.clientCaller)) {
+            return;
+        }
+
         try {
             this.issueBackupDirectoryWarning();
 
@@ -158,6 +168,9 @@ class WalletOperations {
 
     public void exportWalletPrivateKeys() {
         // TODO: Will need corrections once encryption is reenabled!!!
+        if (WalletImportJob.refuseWhileImporting(this.parent, this.clientCaller)) {
+            return;
+        }
 
         try {
             this.issueBackupDirectoryWarning();
@@ -209,13 +222,53 @@ class WalletOperations {
     }
 
 
+    public void exportTransactionHistory() {
+        try {
+            FileNameExtensionFilter csvFilter = new FileNameExtensionFilter("CSV Files (*.csv)", "csv");
+            FileNameExtensionFilter jsonLinesFilter = new FileNameExtensionFilter("JSON Lines Files (*.jsonl)", "jsonl");
+
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Export the full transaction history to file...");
+            fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fileChooser.setCurrentDirectory(OSUtil.getUserHomeDirectory());
+            fileChooser.setAcceptAllFileFilterUsed(false);
+            fileChooser.addChoosableFileFilter(csvFilter);
+            fileChooser.addChoosableFileFilter(jsonLinesFilter);
+            fileChooser.setFileFilter(csvFilter);
+
+            int result = fileChooser.showSaveDialog(this.parent);
+
+            if (result != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+
+            boolean isJsonLines = (fileChooser.getFileFilter() == jsonLinesFilter);
+            File f = fileChooser.getSelectedFile();
+            String extension = isJsonLines ? ".jsonl" : ".csv";
+            if (!f.getName().toLowerCase(Locale.ROOT).endsWith(extension)) {
+                f = new File(f.getParentFile(), f.getName() + extension);
+            }
+
+            new WalletHistoryExporter(
+                    this.parent, this.clientCaller, f,
+                    isJsonLines ? WalletHistoryExporter.Format.JSON_LINES : WalletHistoryExporter.Format.CSV).start();
+        } catch (Exception e) {
+            this.errorReporter.reportError(e, false);
+        }
+    }
+
+
     public void importWalletPrivateKeys() {
         // TODO: Will need corrections once encryption is re-enabled!!!
+        if (this.isWalletImportRunning()) {
+            return;
+        }
 
         int option = JOptionPane.showConfirmDialog(
                 this.parent,
                 "Private key import is a potentially slow operation. It may take\n" +
-                        "several minutes during which the GUI will be non-responsive.\n" +
+                        "several minutes during which the wallet shows the data from\n" +
+                        "before the import. The import runs in the background.\n" +
                         "The data to import must be in the format used by the option:\n" +
                         "\"Export private keys...\"\n\n" +
                         "Are you sure you wish to import private keys?",
@@ -236,33 +289,12 @@ class WalletOperations {
                 return;
             }
 
-            File f = fileChooser.getSelectedFile();
-
-            Cursor oldCursor = this.parent.getCursor();
-            try {
-                this.parent.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-
-                this.clientCaller.importWallet(f.getCanonicalPath());
-
-                this.parent.setCursor(oldCursor);
-            } catch (WalletCallException wce) {
-                this.parent.setCursor(oldCursor);
-                wce.printStackTrace();
-
-                JOptionPane.showMessageDialog(
-                        this.parent,
-                        "An unexpected error occurred while importing wallet private keys!" +
-                                "\n" + wce.getMessage().replace(",", ",\n"),
-                        "Error in importing wallet private keys...", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            JOptionPane.showMessageDialog(
-                    this.parent,
-                    "Wallet private keys have been imported successfully from location:\n" +
-                            f.getCanonicalPath() + "\n\n",
-                    "Wallet private key import...", JOptionPane.INFORMATION_MESSAGE);
-
+            final String path = fileChooser.getSelectedFile().getCanonicalPath();
+            new WalletImportJob(
+                    this.parent, this.clientCaller, "Wallet private key import",
+                    "Wallet private keys have been imported successfully from location:\n" + path + "\n\n",
+                    0, () -> WalletOperations.this.clientCaller.importWallet(path)
+            ).start();
         } catch (Exception e) {
             this.errorReporter.reportError(e, false);
         }
@@ -270,6 +302,10 @@ class WalletOperations {
 
 
     public void showPrivateKey() {
+        if (WalletImportJob.refuseWhileImporting(this.parent, this.clientCaller)) {
+            return;
+        }
+
         if (this.tabs.getSelectedIndex() != 1) {
             JOptionPane.showMessageDialog(
                     this.parent,
@@ -292,9 +328,10 @@ class WalletOperations {
         }
 
         try {
-            // Check for encrypted wallet
-            final boolean bEncryptedWallet = this.clientCaller.isWalletEncrypted();
-            if (bEncryptedWallet) {
+            // Check for encrypted wallet - no password is needed while it is unlocked anyway (e.g. for queued sends)
+            final boolean bUnlockWallet = this.clientCaller.isWalletEncrypted() &&
+                                          (!this.clientCaller.getSecurityState().isUnlockedFor(WalletSecurityState.SHORT_OPERATION_MS));
+            if (bUnlockWallet) {
                 final PasswordDialog pd = new PasswordDialog(this.parent);
                 pd.setVisible(true);
 
@@ -312,7 +349,7 @@ class WalletOperations {
                                         this.clientCaller.getZPrivateKey(address) : this.clientCaller.getTPrivateKey(address);
 
             // Lock the wallet again
-            if (bEncryptedWallet) {
+            if (bUnlockWallet) {
                 this.clientCaller.lockWallet();
             }
 
@@ -334,6 +371,10 @@ class WalletOperations {
 
 
     public void importSinglePrivateKey() {
+        if (this.isWalletImportRunning()) {
+            return;
+        }
+
         try {
             SingleKeyImportDialog kd = new SingleKeyImportDialog(this.parent, this.clientCaller);
             kd.setVisible(true);
@@ -344,6 +385,35 @@ class WalletOperations {
     }
 
 
+    public void importPrivateKeysInBulk() {
+        if (this.isWalletImportRunning()) {
+            return;
+        }
+
+        try {
+            BulkKeyImportDialog kd = new BulkKeyImportDialog(this.parent, this.clientCaller);
+            kd.setVisible(true);
+
+        } catch (Exception ex) {
+            this.errorReporter.reportError(ex, false);
+        }
+    }
+
+
+    // Only one import at a time - the wallet is busy rescanning until it is done
+    private boolean isWalletImportRunning() {
+        if (!this.clientCaller.isWalletImportRunning()) {
+            return false;
+        }
+
+        JOptionPane.showMessageDialog(
+                this.parent,
+                "A private key import is already running. Please wait until it is done.",
+                "Import running...", JOptionPane.INFORMATION_MESSAGE);
+        return true;
+    }
+
+
     private void issueBackupDirectoryWarning()
             throws IOException {
         String userDir = OSUtil.getSettingsDirectory();
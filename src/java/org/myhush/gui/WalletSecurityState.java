@@ -0,0 +1,57 @@
+// Copyright (c) 2018 The Hush Developers <contact@myhush.org>
+//
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+package org.myhush.gui;
+
+/**
+ * Cached encryption status and unlock expiry of the wallet. The status changes only through
+ * encryptwallet, walletpassphrase, walletlock or a daemon restart - all of these go through the
+ * bridge which keeps this state current, so checking it costs no wallet call.
+ */
+class WalletSecurityState {
+    // A short wallet operation (new address, key export) needs the wallet unlocked for at most this long
+    static final long SHORT_OPERATION_MS = 30 * 1000;
+
+    // Null if not yet known
+    private Boolean encrypted = null;
+    // Time (ms) when the current unlock expires - 0 if the wallet is locked
+    private long unlockedUntil = 0;
+
+    // Null if not yet known - the wallet needs to be asked then
+    public synchronized Boolean getEncrypted() {
+        return this.encrypted;
+    }
+
+    public synchronized void setEncrypted(boolean encrypted) {
+        this.encrypted = encrypted;
+        if (!encrypted) {
+            this.unlockedUntil = 0;
+        }
+    }
+
+    public synchronized void walletUnlocked(int timeoutSeconds) {
+        this.encrypted = true;
+        this.unlockedUntil = System.currentTimeMillis() + timeoutSeconds * 1000L;
+    }
+
+    public synchronized void walletLocked() {
+        this.unlockedUntil = 0;
+    }
+
+    // Forgets everything - e.g. after the daemon is (re)started or the wallet is encrypted
+    public synchronized void invalidate() {
+        this.encrypted = null;
+        this.unlockedUntil = 0;
+    }
+
+    // 0 if the wallet is locked
+    public synchronized long getUnlockedUntil() {
+        return (System.currentTimeMillis() < this.unlockedUntil) ? this.unlockedUntil : 0;
+    }
+
+    // True if the wallet is going to stay unlocked for at least the given time
+    public synchronized boolean isUnlockedFor(long millis) {
+        return System.currentTimeMillis() + millis < this.unlockedUntil;
+    }
+}